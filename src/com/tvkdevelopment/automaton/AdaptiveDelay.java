@@ -0,0 +1,77 @@
+package com.tvkdevelopment.automaton;
+
+/**
+ * Learns how long the device takes to acknowledge a type of input event. The estimate is a smoothed mean plus a margin
+ * for its variation, like TCP's retransmission timeout. A fixed fallback delay is used until enough samples are in,
+ * after which the estimate may grow past it up to a sanity ceiling so that slow devices get the time they need.
+ */
+public class AdaptiveDelay {
+
+    /** The weight of a new sample in the smoothed mean */
+    private static final double MEAN_GAIN = 0.125;
+    /** The weight of a new sample in the smoothed deviation */
+    private static final double DEVIATION_GAIN = 0.25;
+    /** The amount of deviations added to the mean as a safety margin */
+    private static final int DEVIATION_MARGIN = 4;
+    /** The amount of samples needed before the learned delay is used */
+    private static final int MIN_SAMPLES = 5;
+    /** The factor of the fallback delay that the learned delay can't exceed */
+    private static final int CEILING_FACTOR = 10;
+
+    /** The name of the event type, used when reporting */
+    private final String mName;
+    /** The fixed delay used until enough samples are in, in milliseconds */
+    private final long mFallback;
+
+    /** The smoothed latency in milliseconds */
+    private double mMean;
+    /** The smoothed deviation of the latency in milliseconds */
+    private double mDeviation;
+    /** The amount of samples recorded */
+    private int mSamples;
+
+    /**
+     * Creates a delay estimate for a type of event.
+     *
+     * @param name
+     *            The name of the event type, used when reporting
+     * @param fallback
+     *            The fixed delay used until enough samples are in, in milliseconds
+     */
+    public AdaptiveDelay(final String name, final long fallback) {
+        mName = name;
+        mFallback = fallback;
+    }
+
+    /**
+     * Records the time it took for an event to be acknowledged and reports the new estimate to the
+     * {@link TimeMonitor}.
+     *
+     * @param latency
+     *            The time until the acknowledgement in milliseconds
+     */
+    public synchronized void record(final long latency) {
+        if (mSamples == 0) {
+            mMean = latency;
+            mDeviation = latency / 2.0;
+        } else {
+            mDeviation += DEVIATION_GAIN * (Math.abs(latency - mMean) - mDeviation);
+            mMean += MEAN_GAIN * (latency - mMean);
+        }
+        ++mSamples;
+
+        TimeMonitor.setMeasurement("Learned " + mName + " delay (ms)", getDelay());
+    }
+
+    /**
+     * @return The learned delay in milliseconds, at most ten times the fallback, or the fallback if not enough samples
+     *         were recorded
+     */
+    public synchronized long getDelay() {
+        if (mSamples < MIN_SAMPLES) {
+            return mFallback;
+        }
+        return Math.min(mFallback * CEILING_FACTOR, Math.round(mMean + DEVIATION_MARGIN * mDeviation));
+    }
+
+}
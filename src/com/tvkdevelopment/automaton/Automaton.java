@@ -1,39 +1,49 @@
 package com.tvkdevelopment.automaton;
 
 import java.awt.Color;
-import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStreamReader;
+import java.util.List;
 
-import javax.imageio.ImageIO;
+import com.tvkdevelopment.automaton.transport.DeviceTransport;
+import com.tvkdevelopment.automaton.transport.DeviceTransports;
 
 /**
- * The base class for automatons that input events onto an Android device to execute tasks.
+ * The base class for automatons that input events onto an Android device to execute tasks. The device is reached
+ * through a {@link DeviceTransport}, which is chosen through configuration as described in {@link DeviceTransports}.
+ * All methods act on the {@link Device} selected for the current thread, which allows one JVM to drive several
+ * devices at once.
  */
 public class Automaton {
 
-    /** The last read screenshot, stored for quick access */
-    private static BufferedImage mLastScreenShot;
+    /** The device used by threads that didn't select their own, created upon first use */
+    private static Device sDefaultDevice;
+    /** The device selected by each thread */
+    private static final ThreadLocal<Device> sCurrentDevice = new ThreadLocal<>();
 
     /**
-     * Inputs a single tap event through ADB and waits a moment for it to finish processing.
+     * Inputs a single tap event and waits for the device to acknowledge it.
      *
      * @param target
      *            The target coordinate for the tap
      */
     public static void tap(final ScreenCoord target) {
-        try {
-            new ProcessBuilder("cmd", "/C", "adb shell input tap " + target.x + " " + target.y).start();
-            Thread.sleep(180);
-        } catch (final IOException | InterruptedException ex) {
-            ex.printStackTrace();
-        }
+        getDevice().tap(target);
+    }
+
+    /**
+     * Inputs a sequence of tap events as a single batch and waits for all of them to finish processing. This saves a
+     * round trip to the device for every tap but the first.
+     *
+     * @param targets
+     *            The target coordinates for the taps, in the order to tap them
+     * @param gapMs
+     *            The time between consecutive taps in milliseconds
+     */
+    public static void tapAll(final List<ScreenCoord> targets, final int gapMs) {
+        getDevice().tapAll(targets, gapMs);
     }
 
     /**
-     * Inputs a swipe tap event through ADB and waits a moment for it to finish processing.
+     * Inputs a swipe tap event and waits for the device to acknowledge it.
      *
      * @param from
      *            The coordinate for the start of the swipe
@@ -41,13 +51,7 @@ public class Automaton {
      *            The coordinate for the end of the swipe
      */
     public static void swipe(final ScreenCoord from, final ScreenCoord to) {
-        try {
-            new ProcessBuilder("cmd", "/C",
-                    "adb shell input touchscreen swipe " + from.x + " " + from.y + " " + to.x + " " + to.y).start();
-            Thread.sleep(500);
-        } catch (final IOException | InterruptedException ex) {
-            ex.printStackTrace();
-        }
+        getDevice().swipe(from, to);
     }
 
     /**
@@ -66,17 +70,25 @@ public class Automaton {
     }
 
     /**
-     * Stores a screenshot of the Android device on local storage pulls it to the executeable's direction to load it
-     * into memory.
+     * Captures a screenshot of the Android device and stores it in memory.
      */
     public static void dumpScreen() {
-        executeAndWait("adb shell screencap -p /storage/emulated/0/screen.png");
-        executeAndWait("adb pull /storage/emulated/0/screen.png screen.png");
-        try {
-            mLastScreenShot = ImageIO.read(new File("screen.png"));
-        } catch (final IOException ex) {
-            throw new RuntimeException(ex);
-        }
+        getDevice().dumpScreen();
+    }
+
+    /**
+     * Captures a band of rows of the Android device's screen and stores it in memory, telling the listener about the
+     * rows as soon as they arrive. Rows outside of the band may hold the contents of an earlier capture.
+     *
+     * @param top
+     *            The first row to capture
+     * @param bottom
+     *            The row after the last row to capture
+     * @param listener
+     *            The listener told about captured rows or null if there is none
+     */
+    public static void dumpScreen(final int top, final int bottom, final RowListener listener) {
+        getDevice().dumpScreen(top, bottom, listener);
     }
 
     /**
@@ -89,32 +101,63 @@ public class Automaton {
      * @return The colour of the targeted pixel
      */
     public static Color getColour(final ScreenCoord coord) {
-        return new Color(mLastScreenShot.getRGB(coord.x, coord.y));
+        return getDevice().getColour(coord);
     }
 
     /**
-     * Executes a shell command and waits for it to complete.
+     * Retrieves the last dumped screenshot for reading pixels without allocating, and thus relies on
+     * {@link #dumpScreen()} to be called first.
+     *
+     * @return The frame holding the last dumped screenshot
+     */
+    public static Frame getFrame() {
+        return getDevice().getFrame();
+    }
+
+    /**
+     * Executes a shell command on the device and waits for it to complete.
      *
      * @param command
      *            The command to execute
+     *
+     * @return The lines of output that the command produced
      */
-    private static void executeAndWait(final String command) {
-        try {
-            final ProcessBuilder pb = new ProcessBuilder("cmd", "/C", command);
-            pb.redirectErrorStream(true);
+    public static List<String> shell(final String command) {
+        return getDevice().shell(command);
+    }
 
-            final Process p = pb.start();
-            final BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()));
+    /**
+     * @return The transport used to talk to the current thread's device
+     */
+    public static DeviceTransport getTransport() {
+        return getDevice().getTransport();
+    }
 
-            while (reader.readLine() != null) {
-                // Eat line
+    /**
+     * @return The device selected for the current thread or the default device if none was selected
+     */
+    public static Device getDevice() {
+        final Device device = sCurrentDevice.get();
+        if (device != null) {
+            return device;
+        }
+        synchronized (Automaton.class) {
+            if (sDefaultDevice == null) {
+                sDefaultDevice = Device.fromConfig(System.getProperty(DeviceTransports.SERIAL_PROPERTY));
             }
-
-            p.waitFor();
-        } catch (final IOException | InterruptedException ex) {
-            throw new RuntimeException(ex);
+            return sDefaultDevice;
         }
+    }
 
+    /**
+     * Selects the device that the current thread acts on, and reports the thread's timings to that device's monitor.
+     *
+     * @param device
+     *            The device to act on
+     */
+    public static void setDevice(final Device device) {
+        sCurrentDevice.set(device);
+        TimeMonitor.setCurrent(device.getTimeMonitor());
     }
 
 }
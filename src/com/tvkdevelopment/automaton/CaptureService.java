@@ -0,0 +1,374 @@
+package com.tvkdevelopment.automaton;
+
+import java.awt.Rectangle;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+
+import com.tvkdevelopment.automaton.transport.DeviceTransport;
+
+/**
+ * Captures the screen continuously on a background thread and keeps a small ring of the most recent frames. Each frame
+ * is compared to the one before it on a grid of cells, so callers can wait for the next frame in which a region of the
+ * screen changed instead of capturing and comparing themselves. Because capturing happens speculatively, the latest
+ * frame is usually at most one capture old when it's needed.
+ */
+public class CaptureService implements AutoCloseable {
+
+    /** The size of the square cells that changes are tracked in, in pixels */
+    public static final int DEFAULT_CELL_SIZE = 60;
+    /** The amount of recent frames kept */
+    public static final int DEFAULT_RING_SIZE = 4;
+    /** The distance between the pixels compared within a cell */
+    private static final int SAMPLE_STEP = 3;
+    /** The smallest difference of a channel for a pixel to be considered changed */
+    private static final int CHANGE_THRESHOLD = 24;
+    /** The time to wait before capturing again after a failed capture in milliseconds, doubling with every failure */
+    private static final int INITIAL_RETRY_DELAY = 50;
+    /** The longest time to wait before capturing again after a failed capture in milliseconds */
+    private static final int MAX_RETRY_DELAY = 2000;
+    /** The amount of captures in a row that may fail before the service stops capturing */
+    private static final int MAX_CONSECUTIVE_FAILURES = 10;
+
+    /**
+     * A frame captured by the service along with the cells that changed since the frame before it.
+     */
+    public static class Capture {
+
+        /** The number of the capture, counting up from 1 */
+        public final long sequence;
+        /** The time the capture completed in nanoseconds, as per {@link System#nanoTime()} */
+        public final long time;
+        /** The captured frame */
+        public final Frame frame;
+        /** The cells that changed since the previous capture */
+        private final BitSet mDirty;
+        /** The amount of cell columns */
+        private final int mColumns;
+        /** The size of the cells in pixels */
+        private final int mCellSize;
+
+        /**
+         * Stores a capture.
+         *
+         * @param sequence
+         *            The number of the capture
+         * @param time
+         *            The time the capture completed in nanoseconds
+         * @param frame
+         *            The captured frame
+         * @param dirty
+         *            The cells that changed since the previous capture
+         * @param columns
+         *            The amount of cell columns
+         * @param cellSize
+         *            The size of the cells in pixels
+         */
+        Capture(final long sequence, final long time, final Frame frame, final BitSet dirty, final int columns,
+                final int cellSize) {
+            this.sequence = sequence;
+            this.time = time;
+            this.frame = frame;
+            mDirty = dirty;
+            mColumns = columns;
+            mCellSize = cellSize;
+        }
+
+        /**
+         * Checks if any part of a region changed since the previous capture.
+         *
+         * @param region
+         *            The region of the screen to check
+         *
+         * @return True iff a cell overlapping the region changed
+         */
+        public boolean isDirty(final Rectangle region) {
+            final int rows = (frame.getHeight() + mCellSize - 1) / mCellSize;
+            final int left = Math.max(0, region.x / mCellSize);
+            final int top = Math.max(0, region.y / mCellSize);
+            final int right = Math.min(mColumns - 1, (region.x + region.width - 1) / mCellSize);
+            final int bottom = Math.min(rows - 1, (region.y + region.height - 1) / mCellSize);
+            for (int row = top; row <= bottom; ++row) {
+                final int next = mDirty.nextSetBit(row * mColumns + left);
+                if (next != -1 && next <= row * mColumns + right) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return The amount of cells that changed since the previous capture
+         */
+        public int getDirtyCount() {
+            return mDirty.cardinality();
+        }
+
+        /**
+         * Releases the caller's hold on the frame, after which it must not be used.
+         */
+        public void release() {
+            frame.release();
+        }
+
+    }
+
+    /** The transport that captures the screen */
+    private final DeviceTransport mTransport;
+    /** The size of the square cells that changes are tracked in, in pixels */
+    private final int mCellSize;
+    /** The amount of recent frames kept */
+    private final int mRingSize;
+    /** The pool that frames are leased from */
+    private final FramePool mFramePool = new FramePool();
+    /** The recent captures, oldest first */
+    private final Deque<Capture> mRing = new ArrayDeque<>();
+    /** The thread capturing in the background */
+    private final Thread mThread;
+    /** Whether or not the service is capturing */
+    private volatile boolean mRunning = true;
+    /** The number of the last capture */
+    private long mSequence;
+
+    /**
+     * Starts capturing with the default cell and ring sizes.
+     *
+     * @param transport
+     *            The transport that captures the screen, which must allow capturing alongside other calls
+     */
+    public CaptureService(final DeviceTransport transport) {
+        this(transport, DEFAULT_CELL_SIZE, DEFAULT_RING_SIZE);
+    }
+
+    /**
+     * Starts capturing.
+     *
+     * @param transport
+     *            The transport that captures the screen, which must allow capturing alongside other calls
+     * @param cellSize
+     *            The size of the square cells that changes are tracked in, in pixels
+     * @param ringSize
+     *            The amount of recent frames kept, at least two so that the previous frame can be compared to
+     */
+    public CaptureService(final DeviceTransport transport, final int cellSize, final int ringSize) {
+        mTransport = transport;
+        mCellSize = cellSize;
+        mRingSize = Math.max(2, ringSize);
+        mThread = new Thread(this::captureLoop, "CaptureService");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * Retrieves the most recent capture. The caller holds the capture's frame until calling
+     * {@link Capture#release()}.
+     *
+     * @return The most recent capture or null if nothing was captured yet
+     */
+    public synchronized Capture getLatest() {
+        final Capture capture = mRing.peekLast();
+        if (capture != null) {
+            capture.frame.retain();
+        }
+        return capture;
+    }
+
+    /**
+     * Waits for the first capture after this call in which a region of the screen changed. The caller holds the
+     * capture's frame until calling {@link Capture#release()}.
+     *
+     * @param region
+     *            The region of the screen to wait for
+     * @param timeoutMs
+     *            The maximum time to wait in milliseconds
+     *
+     * @return The capture in which the region changed or null if it didn't change in time
+     */
+    public synchronized Capture awaitChange(final Rectangle region, final long timeoutMs) {
+        final long deadline = System.nanoTime() + timeoutMs * 1000000;
+        long checked = mSequence;
+        try {
+            while (mRunning) {
+                for (final Capture capture : mRing) {
+                    if (capture.sequence > checked && capture.isDirty(region)) {
+                        capture.frame.retain();
+                        return capture;
+                    }
+                }
+                checked = mSequence;
+
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                wait(remaining / 1000000, (int) (remaining % 1000000));
+            }
+        } catch (final InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+        return null;
+    }
+
+    /**
+     * Waits for the first capture that starts after this call, so that it reflects everything done before it.
+     *
+     * @param timeoutMs
+     *            The maximum time to wait in milliseconds
+     *
+     * @return The capture or null if none completed in time
+     */
+    public synchronized Capture awaitFresh(final long timeoutMs) {
+        // The capture in progress may have started before this call, so wait for the one after it
+        final long sequence = mSequence + 2;
+        final long deadline = System.nanoTime() + timeoutMs * 1000000;
+        try {
+            while (mRunning && mSequence < sequence) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                wait(remaining / 1000000, (int) (remaining % 1000000));
+            }
+        } catch (final InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+        return mRunning ? getLatest() : null;
+    }
+
+    /**
+     * Stops capturing and releases the kept frames.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            // Wake the capturing thread if it's waiting to retry
+            mRunning = false;
+            notifyAll();
+        }
+        try {
+            mThread.join();
+        } catch (final InterruptedException ex) {
+            ex.printStackTrace();
+        }
+        synchronized (this) {
+            while (!mRing.isEmpty()) {
+                mRing.pollFirst().release();
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Captures frames until the service is closed or capturing keeps failing. Failed captures are retried after a
+     * delay that doubles with every failure in a row, so a lost connection isn't hammered. Runs on the service's
+     * thread.
+     */
+    private void captureLoop() {
+        Frame previous = null;
+        int failures = 0;
+        int retryDelay = INITIAL_RETRY_DELAY;
+        while (mRunning) {
+            final Frame target = previous != null ? mFramePool.lease(previous.getWidth(), previous.getHeight())
+                    : null;
+            final Frame frame;
+            try {
+                frame = mTransport.captureFrame(target);
+            } catch (final RuntimeException ex) {
+                if (target != null) {
+                    target.release();
+                }
+                ex.printStackTrace();
+                if (++failures >= MAX_CONSECUTIVE_FAILURES) {
+                    System.out.println("Capturing stopped after " + failures + " failed captures in a row");
+                    synchronized (this) {
+                        mRunning = false;
+                        notifyAll();
+                    }
+                    return;
+                }
+                awaitRetry(retryDelay);
+                retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY);
+                continue;
+            }
+            failures = 0;
+            retryDelay = INITIAL_RETRY_DELAY;
+            if (frame.getPool() == null) {
+                if (target != null) {
+                    target.release();
+                }
+                mFramePool.adopt(frame);
+            }
+
+            final int columns = (frame.getWidth() + mCellSize - 1) / mCellSize;
+            final BitSet dirty = findChanges(previous, frame, columns);
+
+            synchronized (this) {
+                mRing.addLast(new Capture(++mSequence, System.nanoTime(), frame, dirty, columns, mCellSize));
+                if (mRing.size() > mRingSize) {
+                    mRing.pollFirst().release();
+                }
+                notifyAll();
+            }
+            previous = frame;
+        }
+    }
+
+    /**
+     * Waits before retrying a failed capture, returning early when the service is closed.
+     *
+     * @param delayMs
+     *            The time to wait in milliseconds
+     */
+    private synchronized void awaitRetry(final int delayMs) {
+        try {
+            if (mRunning) {
+                wait(delayMs);
+            }
+        } catch (final InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Finds the cells that differ between two frames by comparing a grid of sampled pixels in each cell.
+     *
+     * @param previous
+     *            The previous frame or null if there is none
+     * @param frame
+     *            The new frame
+     * @param columns
+     *            The amount of cell columns
+     *
+     * @return The changed cells, indexed by row times columns plus column
+     */
+    private BitSet findChanges(final Frame previous, final Frame frame, final int columns) {
+        final int width = frame.getWidth();
+        final int height = frame.getHeight();
+        final int rows = (height + mCellSize - 1) / mCellSize;
+        final BitSet dirty = new BitSet(columns * rows);
+        if (previous == null || previous.getWidth() != width || previous.getHeight() != height) {
+            dirty.set(0, columns * rows);
+            return dirty;
+        }
+
+        final int[] before = previous.getPixels();
+        final int[] after = frame.getPixels();
+        for (int y = 0; y < height; y += SAMPLE_STEP) {
+            final int rowOffset = (y / mCellSize) * columns;
+            for (int x = 0; x < width; x += SAMPLE_STEP) {
+                final int cell = rowOffset + x / mCellSize;
+                if (dirty.get(cell)) {
+                    continue;
+                }
+                // Most pixels are unchanged between captures, so only those that aren't equal are compared per channel
+                final int a = before[y * width + x];
+                final int b = after[y * width + x];
+                if (a != b && ImageKernels.differs(a, b, CHANGE_THRESHOLD)) {
+                    dirty.set(cell);
+                }
+            }
+        }
+        return dirty;
+    }
+
+}
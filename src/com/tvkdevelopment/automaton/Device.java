@@ -0,0 +1,269 @@
+package com.tvkdevelopment.automaton;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.tvkdevelopment.automaton.adb.HostCommand;
+import com.tvkdevelopment.automaton.transport.DeviceTransport;
+import com.tvkdevelopment.automaton.transport.DeviceTransports;
+
+/**
+ * A session with a single Android device. Each session has its own transport, screenshot and timing context, so that
+ * several devices can be driven from one JVM. The static {@link Automaton} methods act on the session selected for the
+ * current thread.
+ */
+public class Device {
+
+    /** The serial of the device or null if it's the only connected device */
+    private final String mSerial;
+    /** The transport used to talk to the device */
+    private final DeviceTransport mTransport;
+    /** The monitor that timings of this device are reported to */
+    private final TimeMonitor mTimeMonitor = new TimeMonitor();
+    /** The learned time it takes the device to process a tap, falling back to the fixed tap delay */
+    private final AdaptiveDelay mTapDelay = new AdaptiveDelay("tap", 180);
+    /** The learned time it takes the device to process a swipe, falling back to the fixed swipe delay */
+    private final AdaptiveDelay mSwipeDelay = new AdaptiveDelay("swipe", 500);
+
+    /** The pool that captured frames are leased from */
+    private final FramePool mFramePool = new FramePool();
+    /** The last captured frame, held until the next capture replaces it */
+    private Frame mFrame;
+    /** The service capturing the screen in the background, started when first requested */
+    private CaptureService mCaptureService;
+    /** The last read screenshot, sharing the pixels of the last frame for quick access */
+    private BufferedImage mLastScreenShot;
+
+    /**
+     * Creates a session for a device.
+     *
+     * @param serial
+     *            The serial of the device or null if it's the only connected device
+     * @param transport
+     *            The transport used to talk to the device
+     */
+    public Device(final String serial, final DeviceTransport transport) {
+        mSerial = serial;
+        mTransport = transport;
+    }
+
+    /**
+     * Creates a session for a device using the configured transport, as described in {@link DeviceTransports}.
+     *
+     * @param serial
+     *            The serial of the device or null if it's the only connected device
+     *
+     * @return The device session
+     */
+    public static Device fromConfig(final String serial) {
+        return new Device(serial, DeviceTransports.fromConfig(serial));
+    }
+
+    /**
+     * Lists the serials of all devices connected to ADB.
+     *
+     * @return The serials of the connected devices
+     */
+    public static List<String> listSerials() {
+        final List<String> serials = new ArrayList<>();
+        for (final String line : HostCommand.run("adb devices")) {
+            final String[] parts = line.trim().split("\\s+");
+            if (parts.length == 2 && parts[1].equals("device")) {
+                serials.add(parts[0]);
+            }
+        }
+        return serials;
+    }
+
+    /**
+     * Inputs a single tap event and waits for the device to acknowledge it.
+     *
+     * @param target
+     *            The target coordinate for the tap
+     */
+    public void tap(final ScreenCoord target) {
+        inputAcknowledged(() -> mTransport.tap(target), mTapDelay, 1, 0);
+    }
+
+    /**
+     * Inputs a sequence of tap events as a single batch and waits for all of them to finish processing. The time the
+     * batch took beyond its gaps is learned as the tap delay, spread over the taps.
+     *
+     * @param targets
+     *            The target coordinates for the taps, in the order to tap them
+     * @param gapMs
+     *            The time between consecutive taps in milliseconds
+     */
+    public void tapAll(final List<ScreenCoord> targets, final int gapMs) {
+        if (!targets.isEmpty()) {
+            inputAcknowledged(() -> mTransport.tapAll(targets, gapMs), mTapDelay, targets.size(),
+                    (targets.size() - 1) * (long) gapMs);
+        }
+    }
+
+    /**
+     * Inputs a swipe event and waits for the device to acknowledge it.
+     *
+     * @param from
+     *            The coordinate for the start of the swipe
+     * @param to
+     *            The coordinate for the end of the swipe
+     */
+    public void swipe(final ScreenCoord from, final ScreenCoord to) {
+        inputAcknowledged(() -> mTransport.swipe(from, to), mSwipeDelay, 1, 0);
+    }
+
+    /**
+     * Captures a screenshot of the device and stores it in memory. The screenshot is decoded into a frame leased from
+     * the device's pool and the previous frame is released once the capture succeeded, so capturing repeatedly
+     * alternates between recycled buffers.
+     */
+    public void dumpScreen() {
+        dumpScreen(0, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * Captures a band of rows of the device's screen and stores it in memory, telling the listener about the rows as
+     * soon as they arrive. Rows outside of the band may hold the contents of an earlier capture.
+     *
+     * @param top
+     *            The first row to capture
+     * @param bottom
+     *            The row after the last row to capture
+     * @param listener
+     *            The listener told about captured rows or null if there is none
+     */
+    public void dumpScreen(final int top, final int bottom, final RowListener listener) {
+        final Frame previous = mFrame;
+        final Frame target = previous != null ? mFramePool.lease(previous.getWidth(), previous.getHeight()) : null;
+
+        final Frame frame;
+        try {
+            frame = mTransport.captureRows(target, top, bottom, listener);
+        } catch (final RuntimeException ex) {
+            if (target != null) {
+                target.release();
+            }
+            throw ex;
+        }
+        if (frame.getPool() == null) {
+            // The transport didn't capture into the leased frame
+            if (target != null) {
+                target.release();
+            }
+            mFramePool.adopt(frame);
+        }
+
+        mFrame = frame;
+        mLastScreenShot = frame.getImage();
+        if (previous != null) {
+            previous.release();
+        }
+    }
+
+    /**
+     * Gets the colour of a single pixel in the last dumped screenshot.
+     *
+     * @param coord
+     *            The coordinates for the pixel to find the colour of
+     *
+     * @return The colour of the targeted pixel
+     */
+    public Color getColour(final ScreenCoord coord) {
+        return new Color(mLastScreenShot.getRGB(coord.x, coord.y));
+    }
+
+    /**
+     * Executes a shell command on the device and waits for it to complete.
+     *
+     * @param command
+     *            The command to execute
+     *
+     * @return The lines of output that the command produced
+     */
+    public List<String> shell(final String command) {
+        return mTransport.shell(command);
+    }
+
+    /**
+     * @return The last captured frame or null if the screen wasn't captured yet, which is released by the next capture
+     *         unless retained
+     */
+    public Frame getFrame() {
+        return mFrame;
+    }
+
+    /**
+     * Retrieves the service capturing the device's screen in the background, starting it upon the first call. The
+     * service shares the device's transport.
+     *
+     * @return The capture service of the device
+     */
+    public synchronized CaptureService getCaptureService() {
+        if (mCaptureService == null) {
+            mCaptureService = new CaptureService(mTransport);
+        }
+        return mCaptureService;
+    }
+
+    /**
+     * @return The pool that captured frames are leased from
+     */
+    public FramePool getFramePool() {
+        return mFramePool;
+    }
+
+    /**
+     * @return The serial of the device or null if it's the only connected device
+     */
+    public String getSerial() {
+        return mSerial;
+    }
+
+    /**
+     * @return The transport used to talk to the device
+     */
+    public DeviceTransport getTransport() {
+        return mTransport;
+    }
+
+    /**
+     * @return The monitor that timings of this device are reported to
+     */
+    public TimeMonitor getTimeMonitor() {
+        return mTimeMonitor;
+    }
+
+    /**
+     * Inputs events and waits for the device to acknowledge them, learning how long that takes per event. If the events
+     * can't be acknowledged, it waits the learned delay instead so that the next event isn't sent too early.
+     *
+     * @param input
+     *            The action that sends the events and returns once they are acknowledged
+     * @param delay
+     *            The learned delay for the type of event
+     * @param events
+     *            The amount of events sent by the action
+     * @param pauseMs
+     *            The time the action deliberately waits between events in milliseconds, which isn't learned
+     */
+    private static void inputAcknowledged(final Runnable input, final AdaptiveDelay delay, final int events,
+            final long pauseMs) {
+        final long start = System.nanoTime();
+        try {
+            input.run();
+            final long latency = (System.nanoTime() - start) / 1000000 - pauseMs;
+            delay.record(Math.max(0, latency) / events);
+        } catch (final RuntimeException ex) {
+            ex.printStackTrace();
+            try {
+                Thread.sleep(delay.getDelay());
+            } catch (final InterruptedException interruptedEx) {
+                interruptedEx.printStackTrace();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,313 @@
+package com.tvkdevelopment.automaton;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A captured screen held as packed ARGB pixels in a plain <code>int[]</code>, row by row. The pixels are shared with a
+ * {@link BufferedImage} rather than copied, so the frame can be read through either without converting, and the
+ * buffer can be reused for the next capture of the same size.
+ *
+ * Frames from a {@link FramePool} are reference counted: whoever keeps a frame beyond the moment it was handed to
+ * them calls {@link #retain()} and later {@link #release()}, and the frame returns to its pool once the last reference
+ * is released. Frames outside a pool ignore the reference count and are left to the garbage collector.
+ */
+public class Frame {
+
+    /** The bit masks of the red, green, blue and alpha channels in a packed pixel */
+    private static final int[] MASKS = { 0xff0000, 0xff00, 0xff, 0xff000000 };
+    /** The colour model of packed ARGB pixels */
+    private static final DirectColorModel COLOR_MODEL = new DirectColorModel(32, MASKS[0], MASKS[1], MASKS[2],
+            MASKS[3]);
+
+    /** The width in pixels */
+    private final int mWidth;
+    /** The height in pixels */
+    private final int mHeight;
+    /** The packed ARGB pixels, row by row */
+    private final int[] mPixels;
+    /** The image sharing the pixels, created when first requested */
+    private BufferedImage mImage;
+    /** The pool that the frame returns to when released or null if it isn't pooled */
+    private FramePool mPool;
+    /** The amount of holders of the frame */
+    private final AtomicInteger mReferences = new AtomicInteger();
+
+    /**
+     * Creates a frame of opaque black pixels.
+     *
+     * @param width
+     *            The width in pixels
+     * @param height
+     *            The height in pixels
+     */
+    public Frame(final int width, final int height) {
+        mWidth = width;
+        mHeight = height;
+        mPixels = new int[width * height];
+    }
+
+    /**
+     * Returns a frame of the given size, reusing the given frame if it has that size. A pooled frame of another size is
+     * released and replaced by one leased from the same pool.
+     *
+     * @param reuse
+     *            The frame to reuse, whose reference is handed over, or null to always create one
+     * @param width
+     *            The width in pixels
+     * @param height
+     *            The height in pixels
+     *
+     * @return The reused frame or a new one
+     */
+    public static Frame ensure(final Frame reuse, final int width, final int height) {
+        if (reuse != null && reuse.mWidth == width && reuse.mHeight == height) {
+            return reuse;
+        }
+        if (reuse != null && reuse.mPool != null) {
+            final FramePool pool = reuse.mPool;
+            reuse.release();
+            return pool.lease(width, height);
+        }
+        return new Frame(width, height);
+    }
+
+    /**
+     * Copies an image into a frame.
+     *
+     * @param image
+     *            The image to copy
+     * @param reuse
+     *            The frame to copy into if it has the image's size or null to create one
+     *
+     * @return The frame holding the image's pixels
+     */
+    public static Frame fromImage(final BufferedImage image, final Frame reuse) {
+        final Frame frame = ensure(reuse, image.getWidth(), image.getHeight());
+        image.getRGB(0, 0, frame.mWidth, frame.mHeight, frame.mPixels, 0, frame.mWidth);
+        return frame;
+    }
+
+    /**
+     * @return The width in pixels
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return The height in pixels
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return The packed ARGB pixels, row by row, which may be written to directly
+     */
+    public int[] getPixels() {
+        return mPixels;
+    }
+
+    /**
+     * Reads a single pixel.
+     *
+     * @param x
+     *            The column of the pixel
+     * @param y
+     *            The row of the pixel
+     *
+     * @return The packed ARGB pixel
+     */
+    public int getPixel(final int x, final int y) {
+        return mPixels[y * mWidth + x];
+    }
+
+    /**
+     * Copies a span of a row into an array.
+     *
+     * @param x
+     *            The first column of the span
+     * @param y
+     *            The row to read
+     * @param length
+     *            The amount of pixels to copy
+     * @param dest
+     *            The array to copy into
+     * @param offset
+     *            The index in the array of the first copied pixel
+     *
+     * @return The given array
+     */
+    public int[] getRow(final int x, final int y, final int length, final int[] dest, final int offset) {
+        System.arraycopy(mPixels, y * mWidth + x, dest, offset, length);
+        return dest;
+    }
+
+    /**
+     * Copies a rectangle of pixels into an array, row by row.
+     *
+     * @param x
+     *            The left column of the rectangle
+     * @param y
+     *            The top row of the rectangle
+     * @param width
+     *            The width of the rectangle
+     * @param height
+     *            The height of the rectangle
+     * @param dest
+     *            The array to copy into, holding at least width times height pixels
+     *
+     * @return The given array
+     */
+    public int[] getRect(final int x, final int y, final int width, final int height, final int[] dest) {
+        for (int row = 0; row < height; ++row) {
+            System.arraycopy(mPixels, (y + row) * mWidth + x, dest, row * width, width);
+        }
+        return dest;
+    }
+
+    /**
+     * Finds the first pixel in a span of a row with a channel above a threshold.
+     *
+     * @param y
+     *            The row to search
+     * @param fromX
+     *            The first column to check
+     * @param toX
+     *            The column after the last one to check
+     * @param channel
+     *            The shift of the channel: {@link ImageKernels#RED}, {@link ImageKernels#GREEN} or
+     *            {@link ImageKernels#BLUE}
+     * @param threshold
+     *            The highest value of the channel that doesn't match
+     *
+     * @return The column of the first matching pixel or -1 if there is none
+     */
+    public int findInRow(final int y, final int fromX, final int toX, final int channel, final int threshold) {
+        final int offset = y * mWidth;
+        for (int x = fromX; x < toX; ++x) {
+            if (ImageKernels.exceeds(mPixels[offset + x], channel, threshold)) {
+                return x;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first pixel in a span of a column with a channel above a threshold.
+     *
+     * @param x
+     *            The column to search
+     * @param fromY
+     *            The first row to check
+     * @param toY
+     *            The row after the last one to check
+     * @param channel
+     *            The shift of the channel: {@link ImageKernels#RED}, {@link ImageKernels#GREEN} or
+     *            {@link ImageKernels#BLUE}
+     * @param threshold
+     *            The highest value of the channel that doesn't match
+     *
+     * @return The row of the first matching pixel or -1 if there is none
+     */
+    public int findInColumn(final int x, final int fromY, final int toY, final int channel, final int threshold) {
+        for (int y = fromY; y < toY; ++y) {
+            if (ImageKernels.exceeds(mPixels[y * mWidth + x], channel, threshold)) {
+                return y;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The red channel of a packed pixel
+     */
+    public static int red(final int pixel) {
+        return pixel >> 16 & 0xff;
+    }
+
+    /**
+     * @return The green channel of a packed pixel
+     */
+    public static int green(final int pixel) {
+        return pixel >> 8 & 0xff;
+    }
+
+    /**
+     * @return The blue channel of a packed pixel
+     */
+    public static int blue(final int pixel) {
+        return pixel & 0xff;
+    }
+
+    /**
+     * Adds a holder of the frame, which keeps it from returning to its pool until released.
+     *
+     * @return The current frame
+     */
+    public Frame retain() {
+        if (mReferences.getAndIncrement() <= 0 && mPool != null) {
+            throw new IllegalStateException("Frame retained after being released");
+        }
+        return this;
+    }
+
+    /**
+     * Removes a holder of the frame. The frame returns to its pool when the last holder releases it and must not be
+     * used by the releasing holder afterwards.
+     */
+    public void release() {
+        final int references = mReferences.decrementAndGet();
+        if (mPool == null) {
+            return;
+        }
+        if (references < 0) {
+            throw new IllegalStateException("Frame released more often than leased and retained");
+        }
+        if (references == 0) {
+            mPool.recycle(this);
+        }
+    }
+
+    /**
+     * Marks the frame as leased from its pool, holding a single reference.
+     */
+    void lease() {
+        mReferences.set(1);
+    }
+
+    /**
+     * Sets the pool that the frame returns to when released.
+     *
+     * @param pool
+     *            The pool of the frame
+     */
+    void setPool(final FramePool pool) {
+        mPool = pool;
+    }
+
+    /**
+     * @return The pool that the frame returns to when released or null if it isn't pooled
+     */
+    public FramePool getPool() {
+        return mPool;
+    }
+
+    /**
+     * @return An image backed by the frame's pixels, reflecting later changes to them
+     */
+    public BufferedImage getImage() {
+        if (mImage == null) {
+            final WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(mPixels, mPixels.length), mWidth,
+                    mHeight, mWidth, MASKS, null);
+            mImage = new BufferedImage(COLOR_MODEL, raster, false, null);
+        }
+        return mImage;
+    }
+
+}
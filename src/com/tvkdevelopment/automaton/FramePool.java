@@ -0,0 +1,92 @@
+package com.tvkdevelopment.automaton;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Recycles frame buffers so that capturing the screen over and over doesn't keep allocating multi-megabyte images.
+ * Frames are leased from the pool holding one reference and return to it once every holder has released its
+ * reference, after which the next lease of the same size reuses the buffer.
+ */
+public class FramePool {
+
+    /** The released frames that can be leased again */
+    private final Deque<Frame> mFree = new ArrayDeque<>();
+    /** The amount of frames allocated by the pool */
+    private long mAllocations;
+    /** The amount of bytes allocated for frames by the pool */
+    private long mAllocatedBytes;
+
+    /**
+     * Leases a frame of the given size, reusing a released frame when one is available. The caller holds the only
+     * reference to the frame and returns it by calling {@link Frame#release()}.
+     *
+     * @param width
+     *            The width in pixels
+     * @param height
+     *            The height in pixels
+     *
+     * @return The leased frame
+     */
+    public synchronized Frame lease(final int width, final int height) {
+        for (final Iterator<Frame> it = mFree.iterator(); it.hasNext();) {
+            final Frame frame = it.next();
+            if (frame.getWidth() == width && frame.getHeight() == height) {
+                it.remove();
+                frame.lease();
+                return frame;
+            }
+        }
+
+        final Frame frame = new Frame(width, height);
+        adopt(frame);
+        return frame;
+    }
+
+    /**
+     * Takes a frame that was allocated elsewhere into the pool, so that it's recycled once released. The caller holds
+     * the only reference to the frame.
+     *
+     * @param frame
+     *            The frame to take into the pool
+     */
+    public synchronized void adopt(final Frame frame) {
+        ++mAllocations;
+        mAllocatedBytes += frame.getPixels().length * 4L;
+        frame.setPool(this);
+        frame.lease();
+    }
+
+    /**
+     * Takes back a frame whose last reference was released.
+     *
+     * @param frame
+     *            The released frame
+     */
+    synchronized void recycle(final Frame frame) {
+        mFree.push(frame);
+    }
+
+    /**
+     * @return The amount of frames allocated by the pool
+     */
+    public synchronized long getAllocations() {
+        return mAllocations;
+    }
+
+    /**
+     * @return The amount of bytes allocated for frames by the pool
+     */
+    public synchronized long getAllocatedBytes() {
+        return mAllocatedBytes;
+    }
+
+    /**
+     * @return The amount of released frames waiting to be leased
+     */
+    public synchronized int getFreeCount() {
+        return mFree.size();
+    }
+
+}
@@ -0,0 +1,218 @@
+package com.tvkdevelopment.automaton;
+
+import java.awt.Rectangle;
+
+/**
+ * Loops over packed ARGB pixels for classifying, diffing and comparing frames, along with the tests of single pixels
+ * that they share with code checking a few pixels at a time. The loops are kept free of branches, only
+ * call methods small enough to be inlined and walk plain arrays by index, which is the shape that HotSpot's superword
+ * optimisation compiles to SIMD instructions where the CPU supports them, and to a tight scalar loop where it doesn't.
+ */
+public final class ImageKernels {
+
+    /** The shift of the red channel in a packed pixel */
+    public static final int RED = 16;
+    /** The shift of the green channel in a packed pixel */
+    public static final int GREEN = 8;
+    /** The shift of the blue channel in a packed pixel */
+    public static final int BLUE = 0;
+
+    private ImageKernels() {}
+
+    /**
+     * Extracts a channel from a span of packed pixels.
+     *
+     * @param pixels
+     *            The packed pixels
+     * @param offset
+     *            The index of the first pixel
+     * @param length
+     *            The amount of pixels
+     * @param channel
+     *            The shift of the channel: {@link #RED}, {@link #GREEN} or {@link #BLUE}
+     * @param dest
+     *            The array to store the channel values in, from index 0
+     *
+     * @return The given array
+     */
+    public static int[] extractChannel(final int[] pixels, final int offset, final int length, final int channel,
+            final int[] dest) {
+        for (int i = 0; i < length; ++i) {
+            dest[i] = pixels[offset + i] >> channel & 0xff;
+        }
+        return dest;
+    }
+
+    /**
+     * Checks if a channel of a packed pixel lies above a threshold.
+     *
+     * @param pixel
+     *            The pixel
+     * @param channel
+     *            The shift of the channel: {@link #RED}, {@link #GREEN} or {@link #BLUE}
+     * @param threshold
+     *            The highest value of the channel that isn't above the threshold
+     *
+     * @return True iff the channel lies above the threshold
+     */
+    public static boolean exceeds(final int pixel, final int channel, final int threshold) {
+        return above(pixel >> channel & 0xff, threshold) != 0;
+    }
+
+    /**
+     * Marks the values of a span that lie above a threshold.
+     *
+     * @param values
+     *            The values, such as those of a single channel
+     * @param offset
+     *            The index of the first value
+     * @param length
+     *            The amount of values
+     * @param threshold
+     *            The highest value that isn't marked
+     * @param mask
+     *            The array to store 1 for every marked value and 0 otherwise in, from index 0
+     *
+     * @return The amount of marked values
+     */
+    public static int threshold(final int[] values, final int offset, final int length, final int threshold,
+            final byte[] mask) {
+        int count = 0;
+        for (int i = 0; i < length; ++i) {
+            final int above = above(values[offset + i], threshold);
+            mask[i] = (byte) above;
+            count += above;
+        }
+        return count;
+    }
+
+    /**
+     * Compares a value to a threshold without branching, so that loops calling it can still be vectorised.
+     *
+     * @param value
+     *            The value
+     * @param threshold
+     *            The highest value that isn't above the threshold
+     *
+     * @return 1 if the value lies above the threshold and 0 otherwise
+     */
+    private static int above(final int value, final int threshold) {
+        return (threshold - value) >>> 31;
+    }
+
+    /**
+     * Checks if two packed pixels differ, ignoring alpha.
+     *
+     * @param a
+     *            The first pixel
+     * @param b
+     *            The second pixel
+     * @param tolerance
+     *            The largest difference of a channel for the pixels to be considered the same
+     *
+     * @return True iff a channel differs by more than the tolerance
+     */
+    public static boolean differs(final int a, final int b, final int tolerance) {
+        return excess(a, b, tolerance) != 0;
+    }
+
+    /**
+     * Counts the pixels of a span that differ between two arrays of packed pixels.
+     *
+     * @param a
+     *            The first pixels
+     * @param b
+     *            The second pixels
+     * @param offset
+     *            The index of the first pixel in both arrays
+     * @param length
+     *            The amount of pixels
+     * @param tolerance
+     *            The largest difference of a channel for a pixel to be considered unchanged
+     *
+     * @return The amount of pixels in which a channel differs by more than the tolerance
+     */
+    public static int countDifferences(final int[] a, final int[] b, final int offset, final int length,
+            final int tolerance) {
+        int count = 0;
+        for (int i = offset; i < offset + length; ++i) {
+            count += excess(a[i], b[i], tolerance);
+        }
+        return count;
+    }
+
+    /**
+     * Counts the pixels of a region that differ between two frames of the same size.
+     *
+     * @param a
+     *            The first frame
+     * @param b
+     *            The second frame
+     * @param region
+     *            The region of the frames to compare, which must lie within them
+     * @param tolerance
+     *            The largest difference of a channel for a pixel to be considered unchanged
+     *
+     * @return The amount of pixels in which a channel differs by more than the tolerance
+     */
+    public static int countDifferences(final Frame a, final Frame b, final Rectangle region, final int tolerance) {
+        int count = 0;
+        for (int y = region.y; y < region.y + region.height; ++y) {
+            count += countDifferences(a.getPixels(), b.getPixels(), y * a.getWidth() + region.x, region.width,
+                    tolerance);
+        }
+        return count;
+    }
+
+    /**
+     * Compares two packed pixels without branching, so that loops calling it can still be vectorised.
+     *
+     * @param a
+     *            The first pixel
+     * @param b
+     *            The second pixel
+     * @param tolerance
+     *            The largest difference of a channel for the pixels to be considered the same
+     *
+     * @return 1 if a channel differs by more than the tolerance and 0 otherwise
+     */
+    private static int excess(final int a, final int b, final int tolerance) {
+        final int red = (a >> 16 & 0xff) - (b >> 16 & 0xff);
+        final int green = (a >> 8 & 0xff) - (b >> 8 & 0xff);
+        final int blue = (a & 0xff) - (b & 0xff);
+
+        // Take absolute values through the sign, and a difference exceeds the tolerance when the tolerance minus it is
+        // negative
+        final int redExcess = tolerance - ((red ^ red >> 31) - (red >> 31));
+        final int greenExcess = tolerance - ((green ^ green >> 31) - (green >> 31));
+        final int blueExcess = tolerance - ((blue ^ blue >> 31) - (blue >> 31));
+        return (redExcess | greenExcess | blueExcess) >>> 31;
+    }
+
+    /**
+     * Sums the squared differences between two spans of values, such as a sampled image and a template.
+     *
+     * @param a
+     *            The first values
+     * @param aOffset
+     *            The index of the first value in the first array
+     * @param b
+     *            The second values
+     * @param bOffset
+     *            The index of the first value in the second array
+     * @param length
+     *            The amount of values
+     *
+     * @return The sum of the squared differences
+     */
+    public static long sumSquaredDifferences(final int[] a, final int aOffset, final int[] b, final int bOffset,
+            final int length) {
+        long sum = 0;
+        for (int i = 0; i < length; ++i) {
+            final int difference = a[aOffset + i] - b[bOffset + i];
+            sum += difference * difference;
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.tvkdevelopment.automaton;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.Random;
+
+/**
+ * Compares the {@link ImageKernels} to the equivalent loops over {@link Color} objects on a board-sized region of a
+ * 1080x1920 frame. The kernels are measured as HotSpot compiles them; running with <code>-XX:-UseSuperWord</code>
+ * shows them without SIMD instructions.
+ */
+public class KernelBenchmark {
+
+    /** The amount of warm-up runs per kernel */
+    private static final int WARMUP = 200;
+    /** The amount of measured runs per kernel */
+    private static final int ITERATIONS = 500;
+    /** The width of the frames */
+    private static final int WIDTH = 1080;
+    /** The height of the frames */
+    private static final int HEIGHT = 1920;
+    /** The compared region, the board of the reference layout */
+    private static final Rectangle REGION = new Rectangle(55, 505, 960, 960);
+    /** The threshold of the red channel, as used to recognise red tiles */
+    private static final int THRESHOLD = 150;
+    /** The tolerance of channel differences */
+    private static final int TOLERANCE = 24;
+
+    /** A sink for results, so the kernels aren't optimised away */
+    private static long sSink;
+
+    public static void main(final String[] args) {
+        final Random random = new Random(42);
+        final Frame before = new Frame(WIDTH, HEIGHT);
+        final Frame after = new Frame(WIDTH, HEIGHT);
+        for (int i = 0; i < before.getPixels().length; ++i) {
+            before.getPixels()[i] = 0xff000000 | random.nextInt(0x1000000);
+            after.getPixels()[i] = random.nextInt(10) == 0 ? 0xff000000 | random.nextInt(0x1000000)
+                    : before.getPixels()[i];
+        }
+        final int[] pixels = before.getPixels();
+        final int[] channel = new int[REGION.width];
+        final int[] template = new int[REGION.width];
+        final byte[] mask = new byte[REGION.width];
+        ImageKernels.extractChannel(after.getPixels(), REGION.y * WIDTH + REGION.x, REGION.width, ImageKernels.RED,
+                template);
+
+        System.out.println("Per " + REGION.width + "x" + REGION.height + " region:");
+        compare("Red channel", () -> {
+            long sum = 0;
+            for (int y = REGION.y; y < REGION.y + REGION.height; ++y) {
+                for (int x = 0; x < REGION.width; ++x) {
+                    channel[x] = new Color(pixels[y * WIDTH + REGION.x + x]).getRed();
+                }
+                sum += channel[y % REGION.width];
+            }
+            return sum;
+        }, () -> {
+            long sum = 0;
+            for (int y = REGION.y; y < REGION.y + REGION.height; ++y) {
+                ImageKernels.extractChannel(pixels, y * WIDTH + REGION.x, REGION.width, ImageKernels.RED, channel);
+                sum += channel[y % REGION.width];
+            }
+            return sum;
+        });
+        compare("Red threshold", () -> {
+            long count = 0;
+            for (int y = REGION.y; y < REGION.y + REGION.height; ++y) {
+                for (int x = 0; x < REGION.width; ++x) {
+                    if (new Color(pixels[y * WIDTH + REGION.x + x]).getRed() > THRESHOLD) {
+                        mask[x] = 1;
+                        ++count;
+                    } else {
+                        mask[x] = 0;
+                    }
+                }
+            }
+            return count;
+        }, () -> {
+            long count = 0;
+            for (int y = REGION.y; y < REGION.y + REGION.height; ++y) {
+                ImageKernels.extractChannel(pixels, y * WIDTH + REGION.x, REGION.width, ImageKernels.RED, channel);
+                count += ImageKernels.threshold(channel, 0, REGION.width, THRESHOLD, mask);
+            }
+            return count;
+        });
+        compare("Diff count", () -> {
+            long count = 0;
+            for (int y = REGION.y; y < REGION.y + REGION.height; ++y) {
+                for (int x = REGION.x; x < REGION.x + REGION.width; ++x) {
+                    final Color a = new Color(before.getPixels()[y * WIDTH + x]);
+                    final Color b = new Color(after.getPixels()[y * WIDTH + x]);
+                    if (Math.abs(a.getRed() - b.getRed()) > TOLERANCE
+                            || Math.abs(a.getGreen() - b.getGreen()) > TOLERANCE
+                            || Math.abs(a.getBlue() - b.getBlue()) > TOLERANCE) {
+                        ++count;
+                    }
+                }
+            }
+            return count;
+        }, () -> ImageKernels.countDifferences(before, after, REGION, TOLERANCE));
+        compare("Template SSD", () -> {
+            long sum = 0;
+            for (int y = REGION.y; y < REGION.y + REGION.height; ++y) {
+                for (int x = 0; x < REGION.width; ++x) {
+                    sum += Math.pow(new Color(pixels[y * WIDTH + REGION.x + x]).getRed() - template[x], 2);
+                }
+            }
+            return sum;
+        }, () -> {
+            long sum = 0;
+            for (int y = REGION.y; y < REGION.y + REGION.height; ++y) {
+                ImageKernels.extractChannel(pixels, y * WIDTH + REGION.x, REGION.width, ImageKernels.RED, channel);
+                sum += ImageKernels.sumSquaredDifferences(channel, 0, template, 0, REGION.width);
+            }
+            return sum;
+        });
+        System.out.println("Checksum " + sSink);
+    }
+
+    /**
+     * A kernel run that's measured.
+     */
+    private interface Run {
+
+        /**
+         * @return The result of the run
+         */
+        long run();
+
+    }
+
+    /**
+     * Measures a loop over colours and the equivalent kernel, checks that their results match and prints their
+     * average times.
+     *
+     * @param name
+     *            The name of the kernel
+     * @param colours
+     *            The loop over colours
+     * @param kernel
+     *            The kernel
+     */
+    private static void compare(final String name, final Run colours, final Run kernel) {
+        final long expected = colours.run();
+        final boolean same = kernel.run() == expected;
+        final double coloursUs = measure(colours);
+        final double kernelUs = measure(kernel);
+        System.out.format("%-14s %9.1fus with Color %9.1fus with kernels %6.1fx%s%n", name, coloursUs, kernelUs,
+                coloursUs / kernelUs, same ? "" : "  FAILED results differ");
+    }
+
+    /**
+     * Measures the average time of a run.
+     *
+     * @param run
+     *            The run to measure
+     *
+     * @return The average time in microseconds
+     */
+    private static double measure(final Run run) {
+        for (int i = 0; i < WARMUP; ++i) {
+            sSink += run.run();
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+            sSink += run.run();
+        }
+        return (System.nanoTime() - start) / 1e3 / ITERATIONS;
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.tvkdevelopment.automaton;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads the JVM's allocation and garbage collection statistics, to check that long-running automatons reach a steady
+ * state without allocation churn.
+ */
+public final class MemoryMonitor {
+
+    private MemoryMonitor() {}
+
+    /**
+     * Retrieves the total amount of memory allocated by the current thread. This relies on the HotSpot extension of the
+     * thread management bean.
+     *
+     * @return The amount of bytes allocated by the current thread or -1 if the JVM doesn't support measuring it
+     */
+    public static long getAllocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Retrieves the time spent collecting garbage since the JVM started.
+     *
+     * @return The total collection time of all collectors in milliseconds
+     */
+    public static long getGcTime() {
+        long total = 0;
+        for (final GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, bean.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Retrieves the average time spent collecting garbage per hour since the JVM started.
+     *
+     * @return The collection time per hour of uptime in milliseconds
+     */
+    public static long getGcTimePerHour() {
+        final long uptime = Math.max(1, ManagementFactory.getRuntimeMXBean().getUptime());
+        return getGcTime() * 3600000 / uptime;
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.tvkdevelopment.automaton;
+
+/**
+ * Receives the rows of a frame while it's being captured, so that they can be processed before the rest of the screen
+ * has arrived.
+ */
+public interface RowListener {
+
+    /**
+     * Handles newly completed rows. Rows are reported in order and each row exactly once.
+     *
+     * @param frame
+     *            The frame being captured
+     * @param fromRow
+     *            The first completed row
+     * @param toRow
+     *            The row after the last completed row
+     */
+    void onRows(Frame frame, int fromRow, int toRow);
+
+}
@@ -1,21 +1,47 @@
 package com.tvkdevelopment.automaton;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
 /**
- * A class for monitor how long certain actions take in a stopwatch-like fashion.
+ * A class for monitor how long certain actions take in a stopwatch-like fashion. Every thread reports to its current
+ * monitor, which is a shared default one unless the thread selected its own through {@link #setCurrent(TimeMonitor)}.
  */
 public class TimeMonitor {
 
+    /** The monitor used by threads that didn't select their own */
+    private static final TimeMonitor sDefault = new TimeMonitor();
+    /** The monitor selected by each thread */
+    private static final ThreadLocal<TimeMonitor> sCurrent = ThreadLocal.withInitial(() -> sDefault);
+
     /** The registered keys, stored in order for printing purposes */
-    private static final Set<String> sKeys = new LinkedHashSet<>();
+    private final Set<String> mKeys = new LinkedHashSet<>();
     /** The active monitor's start times for each key */
-    private static final Map<String, Long> sStartTimes = new HashMap<>();
+    private final Map<String, Long> mStartTimes = new HashMap<>();
     /** The elapsed times, stored upon stopping a key */
-    private static final Map<String, Long> sElapsed = new HashMap<>();
+    private final Map<String, Long> mElapsed = new HashMap<>();
+    /** Other measured values, stored in order for printing purposes */
+    private final Map<String, Long> mMeasurements = new LinkedHashMap<>();
+
+    /**
+     * Selects the monitor that the current thread reports to.
+     *
+     * @param monitor
+     *            The monitor to report to
+     */
+    public static void setCurrent(final TimeMonitor monitor) {
+        sCurrent.set(monitor);
+    }
+
+    /**
+     * @return The monitor that the current thread reports to
+     */
+    public static TimeMonitor getCurrent() {
+        return sCurrent.get();
+    }
 
     /**
      * Registers a key. Useful for defining the printing order.
@@ -24,7 +50,7 @@ public class TimeMonitor {
      *            The key to register
      */
     public static void register(final String key) {
-        sKeys.add(key);
+        getCurrent().mKeys.add(key);
     }
 
     /**
@@ -34,11 +60,12 @@ public class TimeMonitor {
      *            The key used to monitor time
      */
     public static void start(final String key) {
-        if (sStartTimes.containsKey(key)) {
+        final TimeMonitor monitor = getCurrent();
+        if (monitor.mStartTimes.containsKey(key)) {
             throw new RuntimeException("Key " + key + " already started");
         }
         register(key);
-        sStartTimes.put(key, System.currentTimeMillis());
+        monitor.mStartTimes.put(key, System.currentTimeMillis());
     }
 
     /**
@@ -51,14 +78,15 @@ public class TimeMonitor {
      */
     public static long stop(final String key) {
         final long endTime = System.currentTimeMillis();
+        final TimeMonitor monitor = getCurrent();
 
-        if (!sStartTimes.containsKey(key)) {
+        if (!monitor.mStartTimes.containsKey(key)) {
             throw new RuntimeException("Key " + key + " not started");
         }
 
-        final long elapsed = endTime - sStartTimes.get(key);
-        sElapsed.put(key, getElapsed(key) + elapsed);
-        sStartTimes.remove(key);
+        final long elapsed = endTime - monitor.mStartTimes.get(key);
+        monitor.mElapsed.put(key, getElapsed(key) + elapsed);
+        monitor.mStartTimes.remove(key);
         return elapsed;
     }
 
@@ -71,19 +99,78 @@ public class TimeMonitor {
      * @return The total amount of milliseconds elapsed
      */
     public static long getElapsed(final String key) {
-        return sElapsed.getOrDefault(key, 0L);
+        return getCurrent().mElapsed.getOrDefault(key, 0L);
+    }
+
+    /**
+     * Stores a measured value that isn't an elapsed time, such as a rate or a learned setting. It is printed along with
+     * the elapsed times, replacing any earlier value for the same key.
+     *
+     * @param key
+     *            The key describing the value
+     * @param value
+     *            The measured value
+     */
+    public static void setMeasurement(final String key, final long value) {
+        final TimeMonitor monitor = getCurrent();
+        synchronized (monitor) {
+            monitor.mMeasurements.put(key, value);
+        }
+    }
+
+    /**
+     * Retrieves a measured value.
+     *
+     * @param key
+     *            The key describing the value
+     *
+     * @return The measured value or 0 if none was stored
+     */
+    public static long getMeasurement(final String key) {
+        return getCurrent().getMeasurementOf(key);
+    }
+
+    /**
+     * Retrieves a measured value from this monitor, which may belong to another thread.
+     *
+     * @param key
+     *            The key describing the value
+     *
+     * @return The measured value or 0 if none was stored
+     */
+    public synchronized long getMeasurementOf(final String key) {
+        return mMeasurements.getOrDefault(key, 0L);
+    }
+
+    /**
+     * Adds the reports of a monitor that a finished helper thread reported to into the current monitor. Elapsed times
+     * are added up and measured values replace any earlier value for the same key.
+     *
+     * @param helper
+     *            The monitor to add, which no thread reports to anymore
+     */
+    public static void merge(final TimeMonitor helper) {
+        final TimeMonitor monitor = getCurrent();
+        for (final String key : helper.mKeys) {
+            register(key);
+            monitor.mElapsed.put(key, getElapsed(key) + helper.mElapsed.getOrDefault(key, 0L));
+        }
+        synchronized (monitor) {
+            monitor.mMeasurements.putAll(helper.mMeasurements);
+        }
     }
 
     /**
-     * Prints the total elapsed times for all monitored keys.
+     * Prints the total elapsed times for all monitored keys, followed by the measured values.
      */
     public static void printElapsed() {
+        final TimeMonitor monitor = getCurrent();
         System.out.println("--- Time elapsed ---");
 
-        final long totalElapsed = sElapsed.values().stream().mapToLong(e -> e.longValue()).sum();
+        final long totalElapsed = monitor.mElapsed.values().stream().mapToLong(e -> e.longValue()).sum();
 
-        final int longestKeyLength = sKeys.stream().mapToInt(k -> k.length()).max().getAsInt();
-        for (final String key : sKeys) {
+        final int longestKeyLength = monitor.mKeys.stream().mapToInt(k -> k.length()).max().getAsInt();
+        for (final String key : monitor.mKeys) {
             System.out.print(key);
             System.out.format("%" + (longestKeyLength - key.length() + 1) + "s", "");
 
@@ -98,6 +185,15 @@ public class TimeMonitor {
             System.out.print(percent + "%");
             System.out.println();
         }
+
+        synchronized (monitor) {
+            if (!monitor.mMeasurements.isEmpty()) {
+                System.out.println("--- Measurements ---");
+                for (final Map.Entry<String, Long> measurement : monitor.mMeasurements.entrySet()) {
+                    System.out.println(measurement.getKey() + " " + measurement.getValue());
+                }
+            }
+        }
     }
 
 }
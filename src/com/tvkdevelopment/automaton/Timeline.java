@@ -0,0 +1,237 @@
+package com.tvkdevelopment.automaton;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A script of actions scheduled at absolute offsets from the start of a run. Unlike a sequence of actions and waits,
+ * the time an action takes doesn't push back the actions after it: every action is started at its own deadline on a
+ * monotonic clock, so an action that starts late only shortens the gap to the next one. Actions scheduled at the same
+ * offset are independent and run concurrently, each reporting its timings to the thread running the timeline once they
+ * finish. Late starts are recorded and reported.
+ *
+ * Actions can be scheduled at explicit offsets or at a cursor, which allows writing scripts in the familiar style of
+ * actions separated by waits.
+ */
+public class Timeline {
+
+    /** The time before a deadline at which sleeping stops and the scheduler starts yielding, in nanoseconds */
+    private static final long SPIN_MARGIN = 2000000;
+    /** The lateness above which an action is reported as late, in milliseconds */
+    private static final double LATE_THRESHOLD = 5;
+
+    /**
+     * An action scheduled on the timeline.
+     */
+    private static class Entry {
+
+        /** The offset from the start of the run in milliseconds */
+        final long offset;
+        /** The description of the action, used when reporting */
+        final String label;
+        /** The action to run */
+        final Runnable action;
+        /** The time the action started later than its offset in nanoseconds, set when run */
+        long lateness;
+
+        /**
+         * Creates an entry.
+         *
+         * @param offset
+         *            The offset from the start of the run in milliseconds
+         * @param label
+         *            The description of the action
+         * @param action
+         *            The action to run
+         */
+        Entry(final long offset, final String label, final Runnable action) {
+            this.offset = offset;
+            this.label = label;
+            this.action = action;
+        }
+
+    }
+
+    /** The scheduled actions */
+    private final List<Entry> mEntries = new ArrayList<>();
+    /** The offset that {@link #then(String, Runnable, long)} schedules at in milliseconds */
+    private long mCursor;
+
+    /**
+     * Schedules an action at a fixed offset.
+     *
+     * @param offset
+     *            The offset from the start of the run in milliseconds
+     * @param label
+     *            The description of the action, used when reporting
+     * @param action
+     *            The action to run
+     *
+     * @return The current timeline
+     */
+    public Timeline at(final long offset, final String label, final Runnable action) {
+        mEntries.add(new Entry(offset, label, action));
+        return this;
+    }
+
+    /**
+     * Schedules an action at the cursor and moves the cursor forward by the time the action is intended to take.
+     *
+     * @param label
+     *            The description of the action, used when reporting
+     * @param action
+     *            The action to run
+     * @param duration
+     *            The time reserved for the action in milliseconds
+     *
+     * @return The current timeline
+     */
+    public Timeline then(final String label, final Runnable action, final long duration) {
+        at(mCursor, label, action);
+        mCursor += duration;
+        return this;
+    }
+
+    /**
+     * Moves the cursor forward.
+     *
+     * @param ms
+     *            The time to move forward in milliseconds
+     *
+     * @return The current timeline
+     */
+    public Timeline advance(final long ms) {
+        mCursor += ms;
+        return this;
+    }
+
+    /**
+     * @return The offset that actions are scheduled at by {@link #then(String, Runnable, long)} in milliseconds
+     */
+    public long getCursor() {
+        return mCursor;
+    }
+
+    /**
+     * Runs all actions at their deadlines and prints a report of late starts afterwards.
+     */
+    public void run() {
+        final List<Entry> entries = new ArrayList<>(mEntries);
+        entries.sort(Comparator.comparingLong(e -> e.offset));
+
+        final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+            final Thread thread = new Thread(r, "Timeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Concurrent actions act on the same device as the thread running the timeline
+        final Device device = Automaton.getDevice();
+
+        final long start = System.nanoTime();
+        try {
+            for (int i = 0; i < entries.size();) {
+                // Gather the actions scheduled at the same offset
+                int end = i + 1;
+                while (end < entries.size() && entries.get(end).offset == entries.get(i).offset) {
+                    ++end;
+                }
+                final long deadline = start + entries.get(i).offset * 1000000;
+                waitUntil(deadline);
+
+                if (end - i == 1) {
+                    runEntry(entries.get(i), deadline);
+                } else {
+                    // Each helper reports to a monitor of its own, which is added to this thread's once it's done
+                    final List<Future<TimeMonitor>> futures = new ArrayList<>();
+                    for (final Entry entry : entries.subList(i, end)) {
+                        futures.add(executor.submit(() -> {
+                            Automaton.setDevice(device);
+                            final TimeMonitor monitor = new TimeMonitor();
+                            TimeMonitor.setCurrent(monitor);
+                            runEntry(entry, deadline);
+                            return monitor;
+                        }));
+                    }
+                    for (final Future<TimeMonitor> future : futures) {
+                        TimeMonitor.merge(future.get());
+                    }
+                }
+                i = end;
+            }
+        } catch (final Exception ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            executor.shutdown();
+        }
+
+        printReport(entries, System.nanoTime() - start);
+    }
+
+    /**
+     * Runs a single action, recording how late it started.
+     *
+     * @param entry
+     *            The entry to run
+     * @param deadline
+     *            The intended start time in nanoseconds
+     */
+    private static void runEntry(final Entry entry, final long deadline) {
+        entry.lateness = Math.max(0, System.nanoTime() - deadline);
+        entry.action.run();
+    }
+
+    /**
+     * Waits until the given time, sleeping for the bulk and yielding for the last moment to start close to it.
+     *
+     * @param deadline
+     *            The time to wait for in nanoseconds
+     */
+    private static void waitUntil(final long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > SPIN_MARGIN) {
+                try {
+                    Thread.sleep((remaining - SPIN_MARGIN) / 1000000);
+                } catch (final InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Prints the late actions and a summary of the lateness of all actions.
+     *
+     * @param entries
+     *            The entries that were run
+     * @param elapsed
+     *            The duration of the run in nanoseconds
+     */
+    private static void printReport(final List<Entry> entries, final long elapsed) {
+        System.out.println("--- Timeline ---");
+
+        long total = 0;
+        long max = 0;
+        int late = 0;
+        for (final Entry entry : entries) {
+            total += entry.lateness;
+            max = Math.max(max, entry.lateness);
+            if (entry.lateness / 1e6 > LATE_THRESHOLD) {
+                ++late;
+                System.out.format("Late %8.1fms at %7dms: %s%n", entry.lateness / 1e6, entry.offset, entry.label);
+            }
+        }
+
+        System.out.format("%d actions in %.1fs, %d late, mean lateness %.1fms, max %.1fms%n", entries.size(),
+                elapsed / 1e9, late, entries.isEmpty() ? 0 : total / 1e6 / entries.size(), max / 1e6);
+        TimeMonitor.setMeasurement("Timeline max lateness (ms)", max / 1000000);
+    }
+
+}
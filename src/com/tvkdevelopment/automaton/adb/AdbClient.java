@@ -0,0 +1,339 @@
+package com.tvkdevelopment.automaton.adb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A client that speaks the ADB host protocol directly to the ADB server over TCP, so that no process needs to be
+ * started for device commands. Every service gets its own short-lived connection to the server, which multiplexes
+ * them over its single link with the device.
+ */
+public class AdbClient {
+
+    /** The host that the ADB server runs on by default */
+    public static final String DEFAULT_HOST = "localhost";
+    /** The port that the ADB server listens on by default */
+    public static final int DEFAULT_PORT = 5037;
+
+    /** The maximum amount of bytes in a single sync data packet */
+    private static final int SYNC_DATA_MAX = 64 * 1024;
+
+    /** The host that the ADB server runs on */
+    private final String mHost;
+    /** The port that the ADB server listens on */
+    private final int mPort;
+    /** The serial of the device to talk to or null to use the only connected device */
+    private final String mSerial;
+
+    /**
+     * Creates a client for the only device connected to the local ADB server.
+     */
+    public AdbClient() {
+        this(DEFAULT_HOST, DEFAULT_PORT, null);
+    }
+
+    /**
+     * Creates a client for a specific device.
+     *
+     * @param host
+     *            The host that the ADB server runs on
+     * @param port
+     *            The port that the ADB server listens on
+     * @param serial
+     *            The serial of the device to talk to or null to use the only connected device
+     */
+    public AdbClient(final String host, final int port, final String serial) {
+        mHost = host;
+        mPort = port;
+        mSerial = serial;
+    }
+
+    /**
+     * Runs a command through the <code>shell:</code> service and waits for it to complete.
+     *
+     * @param command
+     *            The command to execute on the device
+     *
+     * @return The output of the command
+     */
+    public String shell(final String command) {
+        try (InputStream in = openService("shell:" + command)) {
+            return new String(readFully(in), StandardCharsets.UTF_8);
+        } catch (final IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Runs a command through the <code>exec:</code> service, which passes binary output through unaltered, and waits
+     * for it to complete.
+     *
+     * @param command
+     *            The command to execute on the device
+     *
+     * @return The raw output of the command
+     */
+    public byte[] exec(final String command) {
+        try (InputStream in = openExec(command)) {
+            return readFully(in);
+        } catch (final IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Starts a command through the <code>exec:</code> service. The output can be consumed as it arrives and the
+     * connection is closed along with the returned stream.
+     *
+     * @param command
+     *            The command to execute on the device
+     *
+     * @return The raw output stream of the command
+     *
+     * @throws IOException
+     *             When the service could not be opened
+     */
+    public InputStream openExec(final String command) throws IOException {
+        return openService("exec:" + command);
+    }
+
+    /**
+     * Pulls a file from the device through the <code>sync:</code> service.
+     *
+     * @param remotePath
+     *            The path of the file on the device
+     * @param out
+     *            The stream to write the file contents to
+     */
+    public void pull(final String remotePath, final OutputStream out) {
+        try (Socket socket = connect()) {
+            final InputStream socketIn = socket.getInputStream();
+            final OutputStream socketOut = socket.getOutputStream();
+            final DataInputStream in = new DataInputStream(socketIn);
+
+            sendRequest(socketOut, in, "sync:");
+
+            final byte[] path = remotePath.getBytes(StandardCharsets.UTF_8);
+            socketOut.write(syncHeader("RECV", path.length));
+            socketOut.write(path);
+            socketOut.flush();
+
+            final byte[] header = new byte[8];
+            final byte[] buffer = new byte[SYNC_DATA_MAX];
+            while (true) {
+                in.readFully(header);
+                final String id = new String(header, 0, 4, StandardCharsets.US_ASCII);
+                final int length = readIntLe(header, 4);
+
+                switch (id) {
+                    case "DATA":
+                        if (length > SYNC_DATA_MAX) {
+                            throw new IOException("Sync data packet too large: " + length);
+                        }
+                        in.readFully(buffer, 0, length);
+                        out.write(buffer, 0, length);
+                        break;
+                    case "DONE":
+                        return;
+                    case "FAIL":
+                        final byte[] message = new byte[length];
+                        in.readFully(message);
+                        throw new IOException("Pull failed: " + new String(message, StandardCharsets.UTF_8));
+                    default:
+                        throw new IOException("Unexpected sync response " + id);
+                }
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Pulls a file from the device through the <code>sync:</code> service.
+     *
+     * @param remotePath
+     *            The path of the file on the device
+     *
+     * @return The file contents
+     */
+    public byte[] pull(final String remotePath) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pull(remotePath, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Opens a device service after switching the connection to the device's transport.
+     *
+     * @param service
+     *            The service to open, e.g. <code>shell:ls</code>
+     *
+     * @return The stream of the service's output, which closes the connection when closed
+     *
+     * @throws IOException
+     *             When the service could not be opened
+     */
+    private InputStream openService(final String service) throws IOException {
+        final Socket socket = connect();
+        try {
+            final InputStream in = socket.getInputStream();
+            sendRequest(socket.getOutputStream(), new DataInputStream(in), service);
+            return new FilterInputStream(in) {
+                @Override
+                public void close() throws IOException {
+                    socket.close();
+                }
+            };
+        } catch (final IOException | RuntimeException ex) {
+            socket.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Connects to the ADB server and selects the device transport.
+     *
+     * @return The socket connected to the device's transport
+     *
+     * @throws IOException
+     *             When connecting or selecting the transport fails
+     */
+    private Socket connect() throws IOException {
+        final Socket socket = new Socket(mHost, mPort);
+        try {
+            socket.setTcpNoDelay(true);
+            sendRequest(socket.getOutputStream(), new DataInputStream(socket.getInputStream()),
+                    mSerial != null ? "host:transport:" + mSerial : "host:transport-any");
+            return socket;
+        } catch (final IOException | RuntimeException ex) {
+            socket.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Sends a length-prefixed request and waits for the server to acknowledge it.
+     *
+     * @param out
+     *            The stream to the server
+     * @param in
+     *            The stream from the server
+     * @param request
+     *            The request to send
+     *
+     * @throws IOException
+     *             When communication fails or the server refuses the request
+     */
+    private static void sendRequest(final OutputStream out, final DataInputStream in, final String request)
+            throws IOException {
+        final byte[] payload = request.getBytes(StandardCharsets.UTF_8);
+        out.write(String.format("%04x", payload.length).getBytes(StandardCharsets.US_ASCII));
+        out.write(payload);
+        out.flush();
+
+        final byte[] status = new byte[4];
+        in.readFully(status);
+        final String statusStr = new String(status, StandardCharsets.US_ASCII);
+        if (statusStr.equals("OKAY")) {
+            return;
+        }
+        if (statusStr.equals("FAIL")) {
+            final byte[] length = new byte[4];
+            in.readFully(length);
+            final byte[] message = new byte[Integer.parseInt(new String(length, StandardCharsets.US_ASCII), 16)];
+            in.readFully(message);
+            throw new IOException(request + " failed: " + new String(message, StandardCharsets.UTF_8));
+        }
+        throw new IOException("Unexpected response to " + request + ": " + statusStr);
+    }
+
+    /**
+     * Creates the 8-byte header of a sync request.
+     *
+     * @param id
+     *            The 4-character request id
+     * @param length
+     *            The length of the request's payload
+     *
+     * @return The header bytes
+     */
+    static byte[] syncHeader(final String id, final int length) {
+        final byte[] header = new byte[8];
+        System.arraycopy(id.getBytes(StandardCharsets.US_ASCII), 0, header, 0, 4);
+        header[4] = (byte) length;
+        header[5] = (byte) (length >> 8);
+        header[6] = (byte) (length >> 16);
+        header[7] = (byte) (length >> 24);
+        return header;
+    }
+
+    /**
+     * Reads a little-endian integer from a byte array.
+     *
+     * @param bytes
+     *            The bytes to read from
+     * @param offset
+     *            The offset of the integer
+     *
+     * @return The integer value
+     */
+    static int readIntLe(final byte[] bytes, final int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF) << 16
+                | (bytes[offset + 3] & 0xFF) << 24;
+    }
+
+    /**
+     * Reads a stream until it ends.
+     *
+     * @param in
+     *            The stream to read
+     *
+     * @return All bytes read
+     *
+     * @throws IOException
+     *             When reading fails
+     */
+    static byte[] readFully(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads an exact amount of bytes from a stream.
+     *
+     * @param in
+     *            The stream to read
+     * @param length
+     *            The amount of bytes to read
+     *
+     * @return The bytes read
+     *
+     * @throws IOException
+     *             When reading fails or the stream ends early
+     */
+    static byte[] readExactly(final InputStream in, final int length) throws IOException {
+        final byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            final int read = in.read(bytes, offset, length - offset);
+            if (read == -1) {
+                throw new EOFException();
+            }
+            offset += read;
+        }
+        return bytes;
+    }
+
+}
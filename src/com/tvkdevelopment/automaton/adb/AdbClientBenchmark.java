@@ -0,0 +1,83 @@
+package com.tvkdevelopment.automaton.adb;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures the throughput of {@link AdbClient}. By default it runs against a {@link FakeAdbServer} so that it works
+ * without a phone and also checks that the client's results are correct. Passing <code>device</code> as argument runs
+ * the shell benchmark against the real ADB server instead.
+ */
+public class AdbClientBenchmark {
+
+    /** The amount of commands to send */
+    private static final int COMMANDS = 1000;
+    /** The size of the file to pull from the fake device */
+    private static final int FILE_SIZE = 1080 * 1920 * 4;
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("device")) {
+            final AdbClient client = new AdbClient();
+            benchmarkShell(client, "input keyevent 0");
+            return;
+        }
+
+        final byte[] file = new byte[FILE_SIZE];
+        new Random(42).nextBytes(file);
+
+        try (FakeAdbServer server = new FakeAdbServer(command -> command.getBytes(StandardCharsets.UTF_8))) {
+            server.putFile("/sdcard/screen.raw", file);
+            final AdbClient client = server.createClient();
+
+            benchmarkShell(client, "echo hello");
+            check("shell output", client.shell("echo hello").equals("echo hello"));
+            check("exec output", Arrays.equals(client.exec("cat x"), "cat x".getBytes(StandardCharsets.UTF_8)));
+
+            final long start = System.nanoTime();
+            final byte[] pulled = client.pull("/sdcard/screen.raw");
+            final double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.format("Pulled %d bytes in %.3fs = %.1f MB/s%n", pulled.length, seconds,
+                    pulled.length / seconds / 1e6);
+            check("pulled contents", Arrays.equals(pulled, file));
+
+            try {
+                client.pull("/sdcard/missing");
+                check("missing file fails", false);
+            } catch (final RuntimeException ex) {
+                check("missing file fails", true);
+            }
+        }
+    }
+
+    /**
+     * Sends shell commands and prints the amount of commands per second.
+     *
+     * @param client
+     *            The client to send commands through
+     * @param command
+     *            The command to send
+     */
+    private static void benchmarkShell(final AdbClient client, final String command) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < COMMANDS; ++i) {
+            client.shell(command);
+        }
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.format("%d shell commands in %.3fs = %.1f commands/s%n", COMMANDS, seconds, COMMANDS / seconds);
+    }
+
+    /**
+     * Prints the outcome of a check.
+     *
+     * @param name
+     *            The name of the check
+     * @param passed
+     *            Whether or not the check passed
+     */
+    private static void check(final String name, final boolean passed) {
+        System.out.println((passed ? "OK     " : "FAILED ") + name);
+    }
+
+}
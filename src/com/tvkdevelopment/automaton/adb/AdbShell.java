@@ -0,0 +1,147 @@
+package com.tvkdevelopment.automaton.adb;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A long-lived ADB shell session on a single device. Rather than starting a new process for each command, commands
+ * are written to the input of one <code>adb shell</code> process, saving the process start and the ADB client/server
+ * handshake on every event. Every command is waited for, so its output is read before the next one is sent. The
+ * process is restarted when it dies or can't be written to.
+ */
+public class AdbShell {
+
+    /** The prefix of the line echoed after a command to signal that it has completed */
+    private static final String DONE_MARKER = "__automaton_done_";
+
+    /** The serial of the device to open the shell on or null to use the only connected device */
+    private final String mSerial;
+
+    /** The running shell process */
+    private Process mProcess;
+    /** The input of the shell process that commands are written to */
+    private Writer mInput;
+    /** The combined standard and error output of the shell process */
+    private BufferedReader mOutput;
+    /** The amount of commands waited for, used to make every done marker unique */
+    private long mCommandCount;
+
+    /**
+     * Prepares a shell session on the only connected device. The process is started upon the first command.
+     */
+    public AdbShell() {
+        this(null);
+    }
+
+    /**
+     * Prepares a shell session on a specific device. The process is started upon the first command.
+     *
+     * @param serial
+     *            The serial of the device to open the shell on or null to use the only connected device
+     */
+    public AdbShell(final String serial) {
+        mSerial = serial;
+    }
+
+    /**
+     * Sends a command to the shell and waits for it to complete.
+     *
+     * @param command
+     *            The command to execute on the device
+     *
+     * @return The lines of output that the command produced
+     */
+    public synchronized List<String> executeAndWait(final String command) {
+        final String marker = DONE_MARKER + (++mCommandCount) + "__";
+        write(command + "\necho " + marker + "\n");
+
+        final List<String> output = new ArrayList<>();
+        try {
+            String line;
+            while ((line = mOutput.readLine()) != null) {
+                if (line.equals(marker)) {
+                    return output;
+                }
+                output.add(line);
+            }
+        } catch (final IOException ex) {
+            stop();
+            throw new RuntimeException(ex);
+        }
+
+        // The stream ended before the marker arrived, so the shell has died
+        stop();
+        throw new RuntimeException("ADB shell closed while executing: " + command);
+    }
+
+    /**
+     * Stops the shell process. A new one will be started if another command is sent.
+     */
+    public synchronized void close() {
+        stop();
+    }
+
+    /**
+     * Writes the given text to the shell's input, (re)starting the shell when needed. A failed write is retried once on
+     * a fresh process.
+     *
+     * @param text
+     *            The text to write
+     */
+    private void write(final String text) {
+        try {
+            ensureStarted();
+            mInput.write(text);
+            mInput.flush();
+        } catch (final IOException ex) {
+            stop();
+            try {
+                ensureStarted();
+                mInput.write(text);
+                mInput.flush();
+            } catch (final IOException retryEx) {
+                stop();
+                throw new RuntimeException(retryEx);
+            }
+        }
+    }
+
+    /**
+     * Starts the shell process if it isn't running.
+     *
+     * @throws IOException
+     *             When the process could not be started
+     */
+    private void ensureStarted() throws IOException {
+        if (mProcess != null && mProcess.isAlive()) {
+            return;
+        }
+        stop();
+
+        final ProcessBuilder pb = HostCommand.create(HostCommand.adb(mSerial) + "shell");
+        pb.redirectErrorStream(true);
+
+        mProcess = pb.start();
+        mInput = new OutputStreamWriter(mProcess.getOutputStream(), StandardCharsets.UTF_8);
+        mOutput = new BufferedReader(new InputStreamReader(mProcess.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Kills the shell process, if any, and forgets its streams.
+     */
+    private void stop() {
+        if (mProcess != null) {
+            mProcess.destroy();
+        }
+        mProcess = null;
+        mInput = null;
+        mOutput = null;
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.tvkdevelopment.automaton.adb;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Compares the amount of device events per second that can be sent when starting a process per event versus sending
+ * them through a persistent {@link AdbShell}. Requires a connected device. The default event is a key event for an
+ * unknown key code, which the device ignores.
+ */
+public class AdbShellBenchmark {
+
+    /** The amount of events to send through each path */
+    private static final int EVENTS = 50;
+    /** The device command to send when none is given */
+    private static final String DEFAULT_COMMAND = "input keyevent 0";
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final String command = args.length > 0 ? String.join(" ", args) : DEFAULT_COMMAND;
+
+        // Process per event
+        long start = System.nanoTime();
+        for (int i = 0; i < EVENTS; ++i) {
+            final ProcessBuilder pb = HostCommand.create("adb shell " + command);
+            pb.redirectErrorStream(true);
+            final Process p = pb.start();
+            drain(p.getInputStream());
+            p.waitFor();
+        }
+        report("Process per event", System.nanoTime() - start);
+
+        // Persistent shell session, including the cost of starting it
+        final AdbShell shell = new AdbShell();
+        start = System.nanoTime();
+        for (int i = 0; i < EVENTS; ++i) {
+            shell.executeAndWait(command);
+        }
+        report("Shell session", System.nanoTime() - start);
+        shell.close();
+    }
+
+    /**
+     * Reads a stream until it ends.
+     *
+     * @param in
+     *            The stream to read
+     *
+     * @throws IOException
+     *             When reading fails
+     */
+    private static void drain(final InputStream in) throws IOException {
+        final byte[] buffer = new byte[1024];
+        while (in.read(buffer) != -1) {
+            // Eat output
+        }
+    }
+
+    /**
+     * Prints the throughput of a path.
+     *
+     * @param name
+     *            The name of the path
+     * @param elapsedNanos
+     *            The time it took to send all events in nanoseconds
+     */
+    private static void report(final String name, final long elapsedNanos) {
+        final double seconds = elapsedNanos / 1e9;
+        System.out.format("%-20s %6d events in %7.2fs = %7.1f events/s%n", name, EVENTS, seconds, EVENTS / seconds);
+    }
+
+}
@@ -0,0 +1,259 @@
+package com.tvkdevelopment.automaton.adb;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-process stand-in for the ADB server and a single device, allowing {@link AdbClient} to be exercised without a
+ * phone attached. It understands the transport selection requests, the <code>shell:</code> and <code>exec:</code>
+ * services and pulls through the <code>sync:</code> service.
+ */
+public class FakeAdbServer implements AutoCloseable {
+
+    /**
+     * A handler that produces the output of commands sent to the fake device.
+     */
+    public interface CommandHandler {
+
+        /**
+         * Executes a command on the fake device.
+         *
+         * @param command
+         *            The command that was sent
+         *
+         * @return The output of the command
+         */
+        byte[] execute(String command);
+
+    }
+
+    /** The socket that accepts client connections */
+    private final ServerSocket mServerSocket;
+    /** The handler producing command output */
+    private final CommandHandler mHandler;
+    /** The files on the fake device that can be pulled, mapped by path */
+    private final Map<String, byte[]> mFiles = new ConcurrentHashMap<>();
+    /** The amount of commands received through the shell and exec services */
+    private final AtomicInteger mCommandCount = new AtomicInteger();
+
+    /**
+     * Starts a fake server on a free local port.
+     *
+     * @param handler
+     *            The handler producing command output
+     *
+     * @throws IOException
+     *             When the server socket could not be opened
+     */
+    public FakeAdbServer(final CommandHandler handler) throws IOException {
+        mHandler = handler;
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+        final Thread acceptThread = new Thread(this::acceptConnections, "FakeAdbServer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Places a file on the fake device so that it can be pulled.
+     *
+     * @param path
+     *            The path of the file on the device
+     * @param contents
+     *            The file contents
+     */
+    public void putFile(final String path, final byte[] contents) {
+        mFiles.put(path, contents);
+    }
+
+    /**
+     * @return The port that the server listens on
+     */
+    public int getPort() {
+        return mServerSocket.getLocalPort();
+    }
+
+    /**
+     * @return The amount of commands received through the shell and exec services
+     */
+    public int getCommandCount() {
+        return mCommandCount.get();
+    }
+
+    /**
+     * @return A client connected to this server
+     */
+    public AdbClient createClient() {
+        return new AdbClient(InetAddress.getLoopbackAddress().getHostAddress(), getPort(), null);
+    }
+
+    /**
+     * Stops accepting connections.
+     */
+    @Override
+    public void close() throws IOException {
+        mServerSocket.close();
+    }
+
+    /**
+     * Accepts connections until the server socket is closed, handling each on its own thread.
+     */
+    private void acceptConnections() {
+        while (!mServerSocket.isClosed()) {
+            try {
+                final Socket socket = mServerSocket.accept();
+                final Thread thread = new Thread(() -> handleConnection(socket), "FakeAdbServer connection");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (final IOException ex) {
+                // The server socket was closed
+            }
+        }
+    }
+
+    /**
+     * Handles the requests on a single connection.
+     *
+     * @param socket
+     *            The client connection
+     */
+    private void handleConnection(final Socket socket) {
+        try (Socket s = socket) {
+            final DataInputStream in = new DataInputStream(s.getInputStream());
+            final OutputStream out = s.getOutputStream();
+
+            while (true) {
+                final String request = readRequest(in);
+                if (request.equals("host:transport-any") || request.startsWith("host:transport:")) {
+                    // Keep reading requests, which are now aimed at the device
+                    writeStatus(out, "OKAY");
+                } else if (request.equals("host:version")) {
+                    writeStatus(out, "OKAY");
+                    out.write("0004001f".getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                    return;
+                } else if (request.startsWith("shell:") || request.startsWith("exec:")) {
+                    writeStatus(out, "OKAY");
+                    mCommandCount.incrementAndGet();
+                    out.write(mHandler.execute(request.substring(request.indexOf(':') + 1)));
+                    out.flush();
+                    return;
+                } else if (request.equals("sync:")) {
+                    writeStatus(out, "OKAY");
+                    handleSync(in, out);
+                    return;
+                } else {
+                    final byte[] message = ("unknown service " + request).getBytes(StandardCharsets.UTF_8);
+                    out.write("FAIL".getBytes(StandardCharsets.US_ASCII));
+                    out.write(String.format("%04x", message.length).getBytes(StandardCharsets.US_ASCII));
+                    out.write(message);
+                    out.flush();
+                    return;
+                }
+            }
+        } catch (final IOException ex) {
+            // The client disconnected
+        }
+    }
+
+    /**
+     * Handles sync requests until the client quits or disconnects.
+     *
+     * @param in
+     *            The stream from the client
+     * @param out
+     *            The stream to the client
+     *
+     * @throws IOException
+     *             When communication fails
+     */
+    private void handleSync(final DataInputStream in, final OutputStream out) throws IOException {
+        final byte[] header = new byte[8];
+        while (true) {
+            in.readFully(header);
+            final String id = new String(header, 0, 4, StandardCharsets.US_ASCII);
+            final byte[] payload = AdbClient.readExactly(in, AdbClient.readIntLe(header, 4));
+
+            if (id.equals("QUIT")) {
+                return;
+            }
+            if (!id.equals("RECV")) {
+                writeSyncFail(out, "unsupported sync request " + id);
+                continue;
+            }
+
+            final byte[] contents = mFiles.get(new String(payload, StandardCharsets.UTF_8));
+            if (contents == null) {
+                writeSyncFail(out, "No such file or directory");
+                continue;
+            }
+            for (int offset = 0; offset < contents.length; offset += 64 * 1024) {
+                final int length = Math.min(64 * 1024, contents.length - offset);
+                out.write(AdbClient.syncHeader("DATA", length));
+                out.write(contents, offset, length);
+            }
+            out.write(AdbClient.syncHeader("DONE", 0));
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads a length-prefixed request.
+     *
+     * @param in
+     *            The stream from the client
+     *
+     * @return The request
+     *
+     * @throws IOException
+     *             When reading fails
+     */
+    private static String readRequest(final InputStream in) throws IOException {
+        final int length = Integer.parseInt(new String(AdbClient.readExactly(in, 4), StandardCharsets.US_ASCII), 16);
+        return new String(AdbClient.readExactly(in, length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a request status.
+     *
+     * @param out
+     *            The stream to the client
+     * @param status
+     *            The status to write
+     *
+     * @throws IOException
+     *             When writing fails
+     */
+    private static void writeStatus(final OutputStream out, final String status) throws IOException {
+        out.write(status.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    /**
+     * Writes a sync failure.
+     *
+     * @param out
+     *            The stream to the client
+     * @param message
+     *            The reason of the failure
+     *
+     * @throws IOException
+     *             When writing fails
+     */
+    private static void writeSyncFail(final OutputStream out, final String message) throws IOException {
+        final byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        out.write(AdbClient.syncHeader("FAIL", bytes.length));
+        out.write(bytes);
+        out.flush();
+    }
+
+}
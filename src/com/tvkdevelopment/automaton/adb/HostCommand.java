@@ -0,0 +1,75 @@
+package com.tvkdevelopment.automaton.adb;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Creates processes for commands run on the host, going through the platform's command interpreter so that ADB is
+ * found on the path on both Windows and Unix-like systems.
+ */
+public final class HostCommand {
+
+    /** Whether or not the host runs Windows */
+    private static final boolean WINDOWS = System.getProperty("os.name", "").toLowerCase(Locale.ROOT)
+            .startsWith("windows");
+
+    private HostCommand() {}
+
+    /**
+     * Creates a process builder for a command line.
+     *
+     * @param command
+     *            The command line to run on the host
+     *
+     * @return The process builder for the command
+     */
+    public static ProcessBuilder create(final String command) {
+        return WINDOWS ? new ProcessBuilder("cmd", "/C", command) : new ProcessBuilder("sh", "-c", command);
+    }
+
+    /**
+     * Creates the ADB command line prefix for a device.
+     *
+     * @param serial
+     *            The serial of the device or null to use the only connected device
+     *
+     * @return The ADB command followed by a space, selecting the device if needed
+     */
+    public static String adb(final String serial) {
+        return serial != null ? "adb -s " + serial + " " : "adb ";
+    }
+
+    /**
+     * Runs a command on the host and waits for it to complete.
+     *
+     * @param command
+     *            The command line to run
+     *
+     * @return The lines of combined standard and error output that the command produced
+     */
+    public static List<String> run(final String command) {
+        try {
+            final ProcessBuilder pb = create(command);
+            pb.redirectErrorStream(true);
+
+            final Process p = pb.start();
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream()));
+
+            final List<String> output = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.add(line);
+            }
+
+            p.waitFor();
+            return output;
+        } catch (final IOException | InterruptedException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.tvkdevelopment.automaton.gesture;
+
+/**
+ * A single Linux input event as written to an evdev device, without its timestamp.
+ */
+public class EvdevEvent {
+
+    /** The event type for synchronisation events */
+    public static final int EV_SYN = 0;
+    /** The event type for key and button events */
+    public static final int EV_KEY = 1;
+    /** The event type for absolute axis events */
+    public static final int EV_ABS = 3;
+
+    /** The synchronisation code that ends a frame of events */
+    public static final int SYN_REPORT = 0;
+    /** The key code reporting whether the screen is touched */
+    public static final int BTN_TOUCH = 0x14a;
+    /** The axis code selecting the multi-touch slot that following events apply to */
+    public static final int ABS_MT_SLOT = 0x2f;
+    /** The axis code for the x position of the contact in the current slot */
+    public static final int ABS_MT_POSITION_X = 0x35;
+    /** The axis code for the y position of the contact in the current slot */
+    public static final int ABS_MT_POSITION_Y = 0x36;
+    /** The axis code for the tracking id of the contact in the current slot, -1 meaning lifted */
+    public static final int ABS_MT_TRACKING_ID = 0x39;
+
+    /** The event type */
+    public final int type;
+    /** The event code */
+    public final int code;
+    /** The event value */
+    public final int value;
+
+    /**
+     * Creates an event.
+     *
+     * @param type
+     *            The event type
+     * @param code
+     *            The event code
+     * @param value
+     *            The event value
+     */
+    public EvdevEvent(final int type, final int code, final int value) {
+        this.type = type;
+        this.code = code;
+        this.value = value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return type + " " + code + " " + value;
+    }
+
+}
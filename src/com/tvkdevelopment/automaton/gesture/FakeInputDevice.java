@@ -0,0 +1,181 @@
+package com.tvkdevelopment.automaton.gesture;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A local stand-in for a multi-touch input device. It replays the scripts created by
+ * {@link MultiTouchGesture#toScript(TouchscreenInfo)} in real time, tracking the slot state the way the kernel would and
+ * recording every reported frame with the time it arrived. This allows checking both the contents and the timing of
+ * generated gestures without a device.
+ */
+public class FakeInputDevice {
+
+    /** The amount of multi-touch slots that the fake device supports */
+    public static final int SLOTS = 16;
+
+    /**
+     * The state of all contacts at a synchronisation report.
+     */
+    public static class TouchFrame {
+
+        /** The time of the report since the start of the replay in nanoseconds */
+        public final long time;
+        /** The tracking id per slot, -1 meaning no contact */
+        public final int[] trackingIds;
+        /** The x position per slot */
+        public final int[] x;
+        /** The y position per slot */
+        public final int[] y;
+
+        /**
+         * Stores the state of all contacts.
+         *
+         * @param time
+         *            The time of the report since the start of the replay in nanoseconds
+         * @param trackingIds
+         *            The tracking id per slot
+         * @param x
+         *            The x position per slot
+         * @param y
+         *            The y position per slot
+         */
+        TouchFrame(final long time, final int[] trackingIds, final int[] x, final int[] y) {
+            this.time = time;
+            this.trackingIds = trackingIds;
+            this.x = x;
+            this.y = y;
+        }
+
+        /**
+         * @return The amount of fingers touching the screen
+         */
+        public int getContactCount() {
+            int count = 0;
+            for (final int trackingId : trackingIds) {
+                if (trackingId != -1) {
+                    ++count;
+                }
+            }
+            return count;
+        }
+
+    }
+
+    /** The time each sendevent command is assumed to take on the device in nanoseconds */
+    private final long mEventCost;
+
+    /** The current tracking id per slot */
+    private final int[] mTrackingIds = new int[SLOTS];
+    /** The current x position per slot */
+    private final int[] mX = new int[SLOTS];
+    /** The current y position per slot */
+    private final int[] mY = new int[SLOTS];
+    /** The recorded frames */
+    private final List<TouchFrame> mFrames = new ArrayList<>();
+    /** The currently selected slot */
+    private int mSlot;
+
+    /**
+     * Creates a fake input device.
+     *
+     * @param eventCostMs
+     *            The time each sendevent command is assumed to take on the device in milliseconds, which can be used to
+     *            simulate the process start of <code>sendevent</code>
+     */
+    public FakeInputDevice(final double eventCostMs) {
+        mEventCost = (long) (eventCostMs * 1000000);
+        Arrays.fill(mTrackingIds, -1);
+    }
+
+    /**
+     * Replays a script in real time, recording the reported frames.
+     *
+     * @param script
+     *            The script of <code>sendevent</code> and <code>sleep</code> commands, separated by semicolons
+     */
+    public void replay(final String script) {
+        final long start = System.nanoTime();
+        long deadline = start;
+
+        for (final String command : script.split(";")) {
+            final String[] parts = command.trim().split("\\s+");
+            if (parts[0].equals("sleep")) {
+                deadline += (long) (Double.parseDouble(parts[1]) * 1e9);
+            } else if (parts[0].equals("sendevent")) {
+                deadline += mEventCost;
+                waitUntil(deadline);
+                handle(Integer.parseInt(parts[2]), Integer.parseInt(parts[3]), Integer.parseInt(parts[4]), start);
+                continue;
+            } else if (!parts[0].isEmpty()) {
+                throw new RuntimeException("Unsupported command " + command.trim());
+            }
+            waitUntil(deadline);
+        }
+    }
+
+    /**
+     * @return The frames reported so far
+     */
+    public List<TouchFrame> getFrames() {
+        return mFrames;
+    }
+
+    /**
+     * Applies a single event to the slot state.
+     *
+     * @param type
+     *            The event type
+     * @param code
+     *            The event code
+     * @param value
+     *            The event value
+     * @param start
+     *            The start time of the replay in nanoseconds
+     */
+    private void handle(final int type, final int code, final int value, final long start) {
+        if (type == EvdevEvent.EV_SYN && code == EvdevEvent.SYN_REPORT) {
+            mFrames.add(new TouchFrame(System.nanoTime() - start, mTrackingIds.clone(), mX.clone(), mY.clone()));
+        } else if (type == EvdevEvent.EV_ABS) {
+            switch (code) {
+                case EvdevEvent.ABS_MT_SLOT:
+                    if (value < 0 || value >= SLOTS) {
+                        throw new RuntimeException("Slot " + value + " out of range");
+                    }
+                    mSlot = value;
+                    break;
+                case EvdevEvent.ABS_MT_TRACKING_ID:
+                    mTrackingIds[mSlot] = value;
+                    break;
+                case EvdevEvent.ABS_MT_POSITION_X:
+                    mX[mSlot] = value;
+                    break;
+                case EvdevEvent.ABS_MT_POSITION_Y:
+                    mY[mSlot] = value;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Sleeps until the given time.
+     *
+     * @param deadline
+     *            The time to wait for in nanoseconds
+     */
+    private static void waitUntil(final long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            try {
+                Thread.sleep(remaining / 1000000, (int) (remaining % 1000000));
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.tvkdevelopment.automaton.gesture;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Turns a stream of multi-touch events into gestures, one for every finger from touching down until lifting. Only the
+ * start and end of each finger are kept, which is all that swipes and taps need.
+ */
+public class GestureRecorder implements GetEventParser.Listener {
+
+    /**
+     * A single finger touching down at one position and lifting at another.
+     */
+    public static class RecordedGesture {
+
+        /** The time the finger touched down in microseconds */
+        public final long startTime;
+        /** The time the finger lifted in microseconds */
+        public final long endTime;
+        /** The panel x position where the finger touched down */
+        public final int fromX;
+        /** The panel y position where the finger touched down */
+        public final int fromY;
+        /** The panel x position where the finger lifted */
+        public final int toX;
+        /** The panel y position where the finger lifted */
+        public final int toY;
+
+        /**
+         * Stores a gesture.
+         *
+         * @param startTime
+         *            The time the finger touched down in microseconds
+         * @param endTime
+         *            The time the finger lifted in microseconds
+         * @param fromX
+         *            The panel x position where the finger touched down
+         * @param fromY
+         *            The panel y position where the finger touched down
+         * @param toX
+         *            The panel x position where the finger lifted
+         * @param toY
+         *            The panel y position where the finger lifted
+         */
+        public RecordedGesture(final long startTime, final long endTime, final int fromX, final int fromY,
+                final int toX, final int toY) {
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.fromX = fromX;
+            this.fromY = fromY;
+            this.toX = toX;
+            this.toY = toY;
+        }
+
+    }
+
+    /** The time each slot's finger touched down in microseconds or -1 if the slot has no finger */
+    private final long[] mStartTimes = new long[FakeInputDevice.SLOTS];
+    /** Whether or not each slot's start position is still to be taken at the next report */
+    private final boolean[] mPendingStart = new boolean[FakeInputDevice.SLOTS];
+    /** The start x position per slot */
+    private final int[] mStartX = new int[FakeInputDevice.SLOTS];
+    /** The start y position per slot */
+    private final int[] mStartY = new int[FakeInputDevice.SLOTS];
+    /** The current x position per slot */
+    private final int[] mX = new int[FakeInputDevice.SLOTS];
+    /** The current y position per slot */
+    private final int[] mY = new int[FakeInputDevice.SLOTS];
+    /** The completed gestures */
+    private final List<RecordedGesture> mGestures = new ArrayList<>();
+    /** The currently selected slot */
+    private int mSlot;
+    /** The total amount of events received */
+    private long mEventCount;
+
+    /**
+     * Creates a recorder without any fingers down.
+     */
+    public GestureRecorder() {
+        Arrays.fill(mStartTimes, -1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onEvent(final long time, final int type, final int code, final int value) {
+        ++mEventCount;
+        if (type == EvdevEvent.EV_SYN && code == EvdevEvent.SYN_REPORT) {
+            for (int slot = 0; slot < mPendingStart.length; ++slot) {
+                if (mPendingStart[slot]) {
+                    mPendingStart[slot] = false;
+                    mStartX[slot] = mX[slot];
+                    mStartY[slot] = mY[slot];
+                }
+            }
+            return;
+        }
+        if (type != EvdevEvent.EV_ABS) {
+            return;
+        }
+
+        switch (code) {
+            case EvdevEvent.ABS_MT_SLOT:
+                if (value >= 0 && value < mStartTimes.length) {
+                    mSlot = value;
+                }
+                break;
+            case EvdevEvent.ABS_MT_TRACKING_ID:
+                if (value != -1) {
+                    mStartTimes[mSlot] = time;
+                    mPendingStart[mSlot] = true;
+                } else if (mStartTimes[mSlot] != -1) {
+                    mGestures.add(new RecordedGesture(mStartTimes[mSlot], time, mStartX[mSlot], mStartY[mSlot],
+                            mX[mSlot], mY[mSlot]));
+                    mStartTimes[mSlot] = -1;
+                }
+                break;
+            case EvdevEvent.ABS_MT_POSITION_X:
+                mX[mSlot] = value;
+                break;
+            case EvdevEvent.ABS_MT_POSITION_Y:
+                mY[mSlot] = value;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @return The completed gestures, ordered by the time their finger touched down
+     */
+    public List<RecordedGesture> getGestures() {
+        final List<RecordedGesture> gestures = new ArrayList<>(mGestures);
+        gestures.sort(Comparator.comparingLong(g -> g.startTime));
+        return gestures;
+    }
+
+    /**
+     * @return The total amount of events received
+     */
+    public long getEventCount() {
+        return mEventCount;
+    }
+
+}
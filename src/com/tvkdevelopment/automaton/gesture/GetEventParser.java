@@ -0,0 +1,254 @@
+package com.tvkdevelopment.automaton.gesture;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A streaming parser for the output of <code>getevent -lt</code>, which looks like:
+ *
+ * <pre>
+ * [   12345.678901] /dev/input/event2: EV_ABS       ABS_MT_POSITION_X    000001a3
+ * </pre>
+ *
+ * The device path is left out when <code>getevent</code> is given a single device, so it's skipped only if present.
+ * Lines are parsed straight from a reusable byte buffer and passed on as primitives, so parsing allocates nothing per
+ * event and long recordings load as fast as they can be read. Only the event types and codes needed for touch
+ * gestures are recognised; other events are skipped.
+ */
+public class GetEventParser {
+
+    /**
+     * Receives parsed events.
+     */
+    public interface Listener {
+
+        /**
+         * Handles a single event.
+         *
+         * @param time
+         *            The kernel timestamp of the event in microseconds
+         * @param type
+         *            The event type
+         * @param code
+         *            The event code
+         * @param value
+         *            The event value
+         */
+        void onEvent(long time, int type, int code, int value);
+
+    }
+
+    /** The longest line that is parsed, longer lines are skipped */
+    private static final int MAX_LINE_LENGTH = 512;
+
+    /** The recognised type labels */
+    private static final byte[][] TYPE_LABELS = { bytes("EV_SYN"), bytes("EV_KEY"), bytes("EV_ABS") };
+    /** The type values of the recognised type labels */
+    private static final int[] TYPES = { EvdevEvent.EV_SYN, EvdevEvent.EV_KEY, EvdevEvent.EV_ABS };
+    /** The recognised code labels */
+    private static final byte[][] CODE_LABELS = { bytes("SYN_REPORT"), bytes("BTN_TOUCH"), bytes("ABS_MT_SLOT"),
+            bytes("ABS_MT_TRACKING_ID"), bytes("ABS_MT_POSITION_X"), bytes("ABS_MT_POSITION_Y") };
+    /** The code values of the recognised code labels */
+    private static final int[] CODES = { EvdevEvent.SYN_REPORT, EvdevEvent.BTN_TOUCH, EvdevEvent.ABS_MT_SLOT,
+            EvdevEvent.ABS_MT_TRACKING_ID, EvdevEvent.ABS_MT_POSITION_X, EvdevEvent.ABS_MT_POSITION_Y };
+    /** The value label of pressed keys */
+    private static final byte[] DOWN = bytes("DOWN");
+    /** The value label of released keys */
+    private static final byte[] UP = bytes("UP");
+
+    /** The buffer that input is read into */
+    private final byte[] mBuffer = new byte[64 * 1024];
+    /** The buffer holding the line being parsed */
+    private final byte[] mLine = new byte[MAX_LINE_LENGTH];
+
+    /**
+     * Parses a stream until it ends, passing each recognised event to the listener as soon as its line is complete.
+     *
+     * @param in
+     *            The stream of <code>getevent -lt</code> output
+     * @param listener
+     *            The listener receiving the events
+     *
+     * @throws IOException
+     *             When reading fails
+     */
+    public void parse(final InputStream in, final Listener listener) throws IOException {
+        int lineLength = 0;
+        int read;
+        while ((read = in.read(mBuffer)) != -1) {
+            for (int i = 0; i < read; ++i) {
+                final byte b = mBuffer[i];
+                if (b == '\n') {
+                    parseLine(lineLength, listener);
+                    lineLength = 0;
+                } else if (lineLength < MAX_LINE_LENGTH) {
+                    mLine[lineLength++] = b;
+                }
+            }
+        }
+        parseLine(lineLength, listener);
+    }
+
+    /**
+     * Parses the line in the line buffer.
+     *
+     * @param length
+     *            The length of the line
+     * @param listener
+     *            The listener receiving the event
+     */
+    private void parseLine(final int length, final Listener listener) {
+        final byte[] line = mLine;
+        if (length == 0 || length == MAX_LINE_LENGTH || line[0] != '[') {
+            return;
+        }
+
+        // Timestamp with microseconds
+        int i = skipSpaces(line, 1, length);
+        long time = 0;
+        for (; i < length && line[i] != ']'; ++i) {
+            if (line[i] >= '0' && line[i] <= '9') {
+                time = time * 10 + line[i] - '0';
+            }
+        }
+
+        // Device path, which ends in a colon when present
+        int typeStart = skipSpaces(line, i + 1, length);
+        int typeEnd = tokenEnd(line, typeStart, length);
+        if (typeEnd > typeStart && line[typeEnd - 1] == ':') {
+            typeStart = skipSpaces(line, typeEnd, length);
+            typeEnd = tokenEnd(line, typeStart, length);
+        }
+
+        // Type
+        final int type = lookup(line, typeStart, typeEnd, TYPE_LABELS, TYPES);
+        if (type == -1) {
+            return;
+        }
+
+        // Code
+        final int codeStart = skipSpaces(line, typeEnd, length);
+        final int codeEnd = tokenEnd(line, codeStart, length);
+        final int code = lookup(line, codeStart, codeEnd, CODE_LABELS, CODES);
+        if (code == -1) {
+            return;
+        }
+
+        // Value
+        final int valueStart = skipSpaces(line, codeEnd, length);
+        final int valueEnd = tokenEnd(line, valueStart, length);
+        final int value;
+        if (matches(line, valueStart, valueEnd, DOWN)) {
+            value = 1;
+        } else if (matches(line, valueStart, valueEnd, UP)) {
+            value = 0;
+        } else {
+            value = (int) parseHex(line, valueStart, valueEnd);
+        }
+
+        listener.onEvent(time, type, code, value);
+    }
+
+    /**
+     * Finds a label in a set of known labels.
+     *
+     * @param line
+     *            The line holding the token
+     * @param start
+     *            The start of the token
+     * @param end
+     *            The end of the token, exclusive
+     * @param labels
+     *            The known labels
+     * @param values
+     *            The values of the known labels
+     *
+     * @return The value of the matched label or -1 if it's unknown
+     */
+    private static int lookup(final byte[] line, final int start, final int end, final byte[][] labels,
+            final int[] values) {
+        for (int i = 0; i < labels.length; ++i) {
+            if (matches(line, start, end, labels[i])) {
+                return values[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if a token equals a label.
+     *
+     * @param line
+     *            The line holding the token
+     * @param start
+     *            The start of the token
+     * @param end
+     *            The end of the token, exclusive
+     * @param label
+     *            The label to compare to
+     *
+     * @return True iff the token equals the label
+     */
+    private static boolean matches(final byte[] line, final int start, final int end, final byte[] label) {
+        if (end - start != label.length) {
+            return false;
+        }
+        for (int i = 0; i < label.length; ++i) {
+            if (line[start + i] != label[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a hexadecimal token.
+     *
+     * @param line
+     *            The line holding the token
+     * @param start
+     *            The start of the token
+     * @param end
+     *            The end of the token, exclusive
+     *
+     * @return The parsed value
+     */
+    private static long parseHex(final byte[] line, final int start, final int end) {
+        long value = 0;
+        for (int i = start; i < end; ++i) {
+            final int b = line[i];
+            final int digit = b <= '9' ? b - '0' : (b | 0x20) - 'a' + 10;
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    /**
+     * @return The index of the first non-space character from the start
+     */
+    private static int skipSpaces(final byte[] line, int start, final int length) {
+        while (start < length && (line[start] == ' ' || line[start] == '\t' || line[start] == '\r')) {
+            ++start;
+        }
+        return start;
+    }
+
+    /**
+     * @return The index after the last character of the token at the start
+     */
+    private static int tokenEnd(final byte[] line, int start, final int length) {
+        while (start < length && line[start] != ' ' && line[start] != '\t' && line[start] != '\r') {
+            ++start;
+        }
+        return start;
+    }
+
+    /**
+     * @return The ASCII bytes of a label
+     */
+    private static byte[] bytes(final String label) {
+        return label.getBytes(StandardCharsets.US_ASCII);
+    }
+
+}
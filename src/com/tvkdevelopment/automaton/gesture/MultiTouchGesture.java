@@ -0,0 +1,194 @@
+package com.tvkdevelopment.automaton.gesture;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.tvkdevelopment.automaton.ScreenCoord;
+
+/**
+ * A gesture of several swipes performed simultaneously, one finger per swipe. The gesture is turned into raw
+ * multi-touch events following the Linux multi-touch protocol B, where every finger gets its own slot, which are sent
+ * to the touchscreen with <code>sendevent</code> as a single shell script. Fingers move together by default, but each
+ * can also start at its own frame and move over its own amount of frames, so that overlapping recorded swipes keep
+ * their timing.
+ */
+public class MultiTouchGesture {
+
+    /** The amount of frames used to move the fingers from start to end */
+    public static final int DEFAULT_STEPS = 6;
+    /** The time between frames in milliseconds */
+    public static final int DEFAULT_FRAME_INTERVAL = 16;
+
+    /** The coordinates where each finger starts */
+    private final List<ScreenCoord> mFrom = new ArrayList<>();
+    /** The coordinates where each finger ends */
+    private final List<ScreenCoord> mTo = new ArrayList<>();
+    /** The frame at which each finger touches down */
+    private final List<Integer> mStartFrames = new ArrayList<>();
+    /** The amount of frames used to move each finger from start to end */
+    private final List<Integer> mFingerSteps = new ArrayList<>();
+    /** The amount of frames used to move the fingers from start to end */
+    private final int mSteps;
+    /** The time between frames in milliseconds */
+    private final int mFrameInterval;
+
+    /**
+     * Creates an empty gesture with the default timing.
+     */
+    public MultiTouchGesture() {
+        this(DEFAULT_STEPS, DEFAULT_FRAME_INTERVAL);
+    }
+
+    /**
+     * Creates an empty gesture.
+     *
+     * @param steps
+     *            The amount of frames used to move the fingers from start to end
+     * @param frameInterval
+     *            The time between frames in milliseconds
+     */
+    public MultiTouchGesture(final int steps, final int frameInterval) {
+        mSteps = steps;
+        mFrameInterval = frameInterval;
+    }
+
+    /**
+     * Adds a swipe performed by a new finger.
+     *
+     * @param from
+     *            The coordinate for the start of the swipe
+     * @param to
+     *            The coordinate for the end of the swipe
+     *
+     * @return The current gesture
+     */
+    public MultiTouchGesture add(final ScreenCoord from, final ScreenCoord to) {
+        return add(from, to, 0, mSteps);
+    }
+
+    /**
+     * Adds a swipe performed by a new finger with its own timing. The finger lifts in the frame after it reaches the
+     * end of the swipe.
+     *
+     * @param from
+     *            The coordinate for the start of the swipe
+     * @param to
+     *            The coordinate for the end of the swipe
+     * @param startFrame
+     *            The frame in which the finger touches down
+     * @param steps
+     *            The amount of frames used to move the finger from start to end
+     *
+     * @return The current gesture
+     */
+    public MultiTouchGesture add(final ScreenCoord from, final ScreenCoord to, final int startFrame,
+            final int steps) {
+        mFrom.add(from);
+        mTo.add(to);
+        mStartFrames.add(startFrame);
+        mFingerSteps.add(Math.max(1, steps));
+        return this;
+    }
+
+    /**
+     * @return The amount of fingers in the gesture
+     */
+    public int size() {
+        return mFrom.size();
+    }
+
+    /**
+     * @return The time between frames in milliseconds
+     */
+    public int getFrameInterval() {
+        return mFrameInterval;
+    }
+
+    /**
+     * Creates the raw events of the gesture. Every frame ends with a synchronisation report and is followed by the
+     * frame interval, except for the last.
+     *
+     * @param screen
+     *            The touchscreen to create the events for
+     *
+     * @return The frames of events
+     */
+    public List<List<EvdevEvent>> toFrames(final TouchscreenInfo screen) {
+        final List<List<EvdevEvent>> frames = new ArrayList<>();
+
+        int lastFrame = 0;
+        for (int slot = 0; slot < size(); ++slot) {
+            lastFrame = Math.max(lastFrame, mStartFrames.get(slot) + mFingerSteps.get(slot));
+        }
+
+        // Touch down every finger at its start position in its start frame, move it and lift it once it's done
+        for (int index = 0; index <= lastFrame; ++index) {
+            final List<EvdevEvent> frame = new ArrayList<>();
+            for (int slot = 0; slot < size(); ++slot) {
+                final int step = index - mStartFrames.get(slot);
+                final int steps = mFingerSteps.get(slot);
+                if (step < 0 || step > steps + 1) {
+                    continue;
+                }
+                frame.add(new EvdevEvent(EvdevEvent.EV_ABS, EvdevEvent.ABS_MT_SLOT, slot));
+                if (step == steps + 1) {
+                    frame.add(new EvdevEvent(EvdevEvent.EV_ABS, EvdevEvent.ABS_MT_TRACKING_ID, -1));
+                    continue;
+                }
+
+                final ScreenCoord from = mFrom.get(slot);
+                final ScreenCoord to = mTo.get(slot);
+                final int[] position = screen.toPanel(new ScreenCoord(from.x + (to.x - from.x) * step / steps,
+                        from.y + (to.y - from.y) * step / steps));
+                if (step == 0) {
+                    frame.add(new EvdevEvent(EvdevEvent.EV_ABS, EvdevEvent.ABS_MT_TRACKING_ID, slot + 1));
+                }
+                frame.add(new EvdevEvent(EvdevEvent.EV_ABS, EvdevEvent.ABS_MT_POSITION_X, position[0]));
+                frame.add(new EvdevEvent(EvdevEvent.EV_ABS, EvdevEvent.ABS_MT_POSITION_Y, position[1]));
+            }
+            if (index == 0) {
+                frame.add(new EvdevEvent(EvdevEvent.EV_KEY, EvdevEvent.BTN_TOUCH, 1));
+            }
+            frame.add(new EvdevEvent(EvdevEvent.EV_SYN, EvdevEvent.SYN_REPORT, 0));
+            frames.add(frame);
+        }
+
+        // Lift the fingers that are still down
+        final List<EvdevEvent> frame = new ArrayList<>();
+        for (int slot = 0; slot < size(); ++slot) {
+            if (mStartFrames.get(slot) + mFingerSteps.get(slot) < lastFrame) {
+                continue;
+            }
+            frame.add(new EvdevEvent(EvdevEvent.EV_ABS, EvdevEvent.ABS_MT_SLOT, slot));
+            frame.add(new EvdevEvent(EvdevEvent.EV_ABS, EvdevEvent.ABS_MT_TRACKING_ID, -1));
+        }
+        frame.add(new EvdevEvent(EvdevEvent.EV_KEY, EvdevEvent.BTN_TOUCH, 0));
+        frame.add(new EvdevEvent(EvdevEvent.EV_SYN, EvdevEvent.SYN_REPORT, 0));
+        frames.add(frame);
+
+        return frames;
+    }
+
+    /**
+     * Creates a shell script that writes the gesture's events to the touchscreen.
+     *
+     * @param screen
+     *            The touchscreen to create the script for
+     *
+     * @return The shell script, with commands separated by semicolons
+     */
+    public String toScript(final TouchscreenInfo screen) {
+        final StringBuilder script = new StringBuilder();
+        final List<List<EvdevEvent>> frames = toFrames(screen);
+        for (int i = 0; i < frames.size(); ++i) {
+            if (i > 0) {
+                script.append("sleep ").append(mFrameInterval / 1000.0).append("; ");
+            }
+            for (final EvdevEvent event : frames.get(i)) {
+                script.append("sendevent ").append(screen.path).append(' ').append(event).append("; ");
+            }
+        }
+        return script.toString();
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.tvkdevelopment.automaton.gesture;
+
+import java.util.List;
+
+import com.tvkdevelopment.automaton.Device;
+import com.tvkdevelopment.automaton.ScreenCoord;
+
+/**
+ * Describes a device's touchscreen input device, which is needed to turn screen coordinates into raw multi-touch
+ * events. The touch panel reports positions in its own range and in the display's natural orientation, so coordinates
+ * are rotated and scaled.
+ */
+public class TouchscreenInfo {
+
+    /** The path of the input device, e.g. /dev/input/event2 */
+    public final String path;
+    /** The maximum x value reported by the panel */
+    public final int maxX;
+    /** The maximum y value reported by the panel */
+    public final int maxY;
+    /** The width of the display in its natural orientation */
+    public final int naturalWidth;
+    /** The height of the display in its natural orientation */
+    public final int naturalHeight;
+    /** The display rotation in quarter turns, as reported by Android's Surface.ROTATION_* */
+    public final int rotation;
+
+    /**
+     * Describes a touchscreen.
+     *
+     * @param path
+     *            The path of the input device
+     * @param maxX
+     *            The maximum x value reported by the panel
+     * @param maxY
+     *            The maximum y value reported by the panel
+     * @param naturalWidth
+     *            The width of the display in its natural orientation
+     * @param naturalHeight
+     *            The height of the display in its natural orientation
+     * @param rotation
+     *            The display rotation in quarter turns
+     */
+    public TouchscreenInfo(final String path, final int maxX, final int maxY, final int naturalWidth,
+            final int naturalHeight, final int rotation) {
+        this.path = path;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.naturalWidth = naturalWidth;
+        this.naturalHeight = naturalHeight;
+        this.rotation = rotation;
+    }
+
+    /**
+     * Queries a device for its touchscreen. The touchscreen is the first input device reporting multi-touch positions.
+     *
+     * @param device
+     *            The device to query
+     *
+     * @return The touchscreen description
+     */
+    public static TouchscreenInfo detect(final Device device) {
+        String path = null;
+        String candidate = null;
+        int maxX = -1;
+        int maxY = -1;
+        for (final String line : device.shell("getevent -pl")) {
+            final String trimmed = line.trim();
+            if (trimmed.startsWith("add device")) {
+                if (path != null) {
+                    break;
+                }
+                candidate = trimmed.substring(trimmed.indexOf('/'));
+            } else if (trimmed.startsWith("ABS_MT_POSITION_X")) {
+                path = candidate;
+                maxX = parseMax(trimmed);
+            } else if (trimmed.startsWith("ABS_MT_POSITION_Y") && path != null) {
+                maxY = parseMax(trimmed);
+            }
+        }
+        if (path == null || maxX < 0 || maxY < 0) {
+            throw new RuntimeException("No multi-touch input device found");
+        }
+
+        // Physical size: 1080x1920
+        final List<String> size = device.shell("wm size");
+        final String[] dimensions = size.get(0).substring(size.get(0).indexOf(':') + 1).trim().split("x");
+
+        // SurfaceOrientation: 1
+        int rotation = 0;
+        for (final String line : device.shell("dumpsys input")) {
+            final String trimmed = line.trim();
+            if (trimmed.startsWith("SurfaceOrientation:")) {
+                rotation = Integer.parseInt(trimmed.substring(trimmed.indexOf(':') + 1).trim());
+                break;
+            }
+        }
+
+        return new TouchscreenInfo(path, maxX, maxY, Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]),
+                rotation);
+    }
+
+    /**
+     * Converts a screen coordinate in the current orientation to a position on the touch panel.
+     *
+     * @param coord
+     *            The screen coordinate
+     *
+     * @return The panel position as an x, y pair
+     */
+    public int[] toPanel(final ScreenCoord coord) {
+        final int naturalX;
+        final int naturalY;
+        switch (rotation) {
+            case 1:
+                naturalX = naturalWidth - 1 - coord.y;
+                naturalY = coord.x;
+                break;
+            case 2:
+                naturalX = naturalWidth - 1 - coord.x;
+                naturalY = naturalHeight - 1 - coord.y;
+                break;
+            case 3:
+                naturalX = coord.y;
+                naturalY = naturalHeight - 1 - coord.x;
+                break;
+            default:
+                naturalX = coord.x;
+                naturalY = coord.y;
+                break;
+        }
+        return new int[] { (int) ((long) naturalX * (maxX + 1) / naturalWidth),
+                (int) ((long) naturalY * (maxY + 1) / naturalHeight) };
+    }
+
+    /**
+     * Converts a position on the touch panel to a screen coordinate in the current orientation, the inverse of
+     * {@link #toPanel(ScreenCoord)}.
+     *
+     * @param panelX
+     *            The x position reported by the panel
+     * @param panelY
+     *            The y position reported by the panel
+     *
+     * @return The screen coordinate
+     */
+    public ScreenCoord toScreen(final int panelX, final int panelY) {
+        final int naturalX = (int) ((long) panelX * naturalWidth / (maxX + 1));
+        final int naturalY = (int) ((long) panelY * naturalHeight / (maxY + 1));
+        switch (rotation) {
+            case 1:
+                return new ScreenCoord(naturalY, naturalWidth - 1 - naturalX);
+            case 2:
+                return new ScreenCoord(naturalWidth - 1 - naturalX, naturalHeight - 1 - naturalY);
+            case 3:
+                return new ScreenCoord(naturalHeight - 1 - naturalY, naturalX);
+            default:
+                return new ScreenCoord(naturalX, naturalY);
+        }
+    }
+
+    /**
+     * Reads the maximum from a <code>getevent -p</code> axis line, e.g.
+     * <code>ABS_MT_POSITION_X : value 0, min 0, max 1079, fuzz 0, flat 0, resolution 0</code>.
+     *
+     * @param line
+     *            The axis line
+     *
+     * @return The maximum value of the axis
+     */
+    private static int parseMax(final String line) {
+        final int start = line.indexOf("max ") + 4;
+        int end = start;
+        while (end < line.length() && Character.isDigit(line.charAt(end))) {
+            ++end;
+        }
+        return Integer.parseInt(line.substring(start, end));
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.tvkdevelopment.automaton.input;
+
+import java.lang.reflect.Method;
+
+/**
+ * Injects events into Android's input system. Meant to run on the device inside an <code>app_process</code>, which
+ * runs as the shell user and is thus allowed to inject input. The Android classes are accessed through reflection so
+ * that this class compiles and loads on a plain JVM as well.
+ */
+public class AndroidInputInjector implements InputInjector {
+
+    /** The MotionEvent action for the first touch */
+    private static final int ACTION_DOWN = 0;
+    /** The MotionEvent action for lifting the touch */
+    private static final int ACTION_UP = 1;
+    /** The MotionEvent action for moving the touch */
+    private static final int ACTION_MOVE = 2;
+    /** The InputDevice source for touchscreens */
+    private static final int SOURCE_TOUCHSCREEN = 0x1002;
+    /** The InputManager mode that waits for the event to be handled before returning */
+    private static final int INJECT_MODE_WAIT_FOR_FINISH = 2;
+    /** The time between move events during a swipe in milliseconds */
+    private static final int MOVE_INTERVAL = 8;
+
+    /** The InputManager instance */
+    private final Object mInputManager;
+    /** InputManager.injectInputEvent(InputEvent, int) */
+    private final Method mInjectInputEvent;
+    /** MotionEvent.obtain(long, long, int, float, float, int) */
+    private final Method mObtain;
+    /** MotionEvent.setSource(int) */
+    private final Method mSetSource;
+    /** MotionEvent.recycle() */
+    private final Method mRecycle;
+    /** SystemClock.uptimeMillis() */
+    private final Method mUptimeMillis;
+
+    /**
+     * Looks up the Android input classes.
+     *
+     * @throws ReflectiveOperationException
+     *             When not running on Android or the input API is unavailable
+     */
+    public AndroidInputInjector() throws ReflectiveOperationException {
+        final Class<?> inputManagerClass = Class.forName("android.hardware.input.InputManager");
+        final Class<?> inputEventClass = Class.forName("android.view.InputEvent");
+        final Class<?> motionEventClass = Class.forName("android.view.MotionEvent");
+
+        mInputManager = inputManagerClass.getMethod("getInstance").invoke(null);
+        mInjectInputEvent = inputManagerClass.getMethod("injectInputEvent", inputEventClass, int.class);
+        mObtain = motionEventClass.getMethod("obtain", long.class, long.class, int.class, float.class, float.class,
+                int.class);
+        mSetSource = motionEventClass.getMethod("setSource", int.class);
+        mRecycle = motionEventClass.getMethod("recycle");
+        mUptimeMillis = Class.forName("android.os.SystemClock").getMethod("uptimeMillis");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void tap(final int x, final int y) {
+        final long downTime = uptimeMillis();
+        inject(downTime, downTime, ACTION_DOWN, x, y);
+        inject(downTime, uptimeMillis(), ACTION_UP, x, y);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void swipe(final int fromX, final int fromY, final int toX, final int toY, final int durationMs) {
+        final long downTime = uptimeMillis();
+        inject(downTime, downTime, ACTION_DOWN, fromX, fromY);
+
+        final int steps = Math.max(1, durationMs / MOVE_INTERVAL);
+        for (int i = 1; i <= steps; ++i) {
+            try {
+                Thread.sleep(MOVE_INTERVAL);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            inject(downTime, uptimeMillis(), ACTION_MOVE, fromX + (toX - fromX) * i / steps,
+                    fromY + (toY - fromY) * i / steps);
+        }
+
+        inject(downTime, uptimeMillis(), ACTION_UP, toX, toY);
+    }
+
+    /**
+     * Creates a touchscreen motion event and injects it.
+     *
+     * @param downTime
+     *            The uptime at which the touch started
+     * @param eventTime
+     *            The uptime of this event
+     * @param action
+     *            The motion action
+     * @param x
+     *            The x coordinate on the screen
+     * @param y
+     *            The y coordinate on the screen
+     */
+    private void inject(final long downTime, final long eventTime, final int action, final int x, final int y) {
+        try {
+            final Object event = mObtain.invoke(null, downTime, eventTime, action, (float) x, (float) y, 0);
+            mSetSource.invoke(event, SOURCE_TOUCHSCREEN);
+            mInjectInputEvent.invoke(mInputManager, event, INJECT_MODE_WAIT_FOR_FINISH);
+            mRecycle.invoke(event);
+        } catch (final ReflectiveOperationException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * @return The device's uptime in milliseconds, which is the time base of input events
+     */
+    private long uptimeMillis() {
+        try {
+            return (Long) mUptimeMillis.invoke(null);
+        } catch (final ReflectiveOperationException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.tvkdevelopment.automaton.input;
+
+/**
+ * Injects decoded input events. The device implementation feeds them to Android's input system, while stand-ins can
+ * simply count or log them.
+ */
+public interface InputInjector {
+
+    /**
+     * Injects a tap.
+     *
+     * @param x
+     *            The x coordinate on the screen
+     * @param y
+     *            The y coordinate on the screen
+     */
+    void tap(int x, int y);
+
+    /**
+     * Injects a swipe and returns once it has finished.
+     *
+     * @param fromX
+     *            The x coordinate at the start of the swipe
+     * @param fromY
+     *            The y coordinate at the start of the swipe
+     * @param toX
+     *            The x coordinate at the end of the swipe
+     * @param toY
+     *            The y coordinate at the end of the swipe
+     * @param durationMs
+     *            The duration of the swipe in milliseconds
+     */
+    void swipe(int fromX, int fromY, int toX, int toY, int durationMs);
+
+}
@@ -0,0 +1,21 @@
+package com.tvkdevelopment.automaton.input;
+
+/**
+ * The compact binary protocol spoken between {@link InputServerClient} and {@link InputServer}. Every message starts
+ * with a single opcode byte followed by its big-endian integer arguments.
+ */
+public final class InputProtocol {
+
+    /** The port that the input server listens on by default, both on the device and forwarded on the host */
+    public static final int DEFAULT_PORT = 27183;
+
+    /** Taps a coordinate. Arguments: x, y */
+    public static final int TAP = 1;
+    /** Swipes between two coordinates. Arguments: from x, from y, to x, to y, duration in milliseconds */
+    public static final int SWIPE = 2;
+    /** Requests an acknowledgement once all earlier events are injected. Answered with a single {@link #SYNC} byte */
+    public static final int SYNC = 3;
+
+    private InputProtocol() {}
+
+}
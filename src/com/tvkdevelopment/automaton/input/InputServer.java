@@ -0,0 +1,178 @@
+package com.tvkdevelopment.automaton.input;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small server that accepts {@link InputProtocol} events over a socket and injects them. It is started once on the
+ * device, after which every event costs a socket write instead of starting a new Android runtime for
+ * <code>input</code>. Clients are served one at a time.
+ *
+ * To run it on the device, convert the compiled <code>com.tvkdevelopment.automaton.input</code> classes to a dex jar
+ * with d8, push it and start it through <code>app_process</code>:
+ *
+ * <pre>
+ * adb push automaton-input.jar /data/local/tmp/
+ * adb shell CLASSPATH=/data/local/tmp/automaton-input.jar app_process / com.tvkdevelopment.automaton.input.InputServer
+ * adb forward tcp:27183 tcp:27183
+ * </pre>
+ *
+ * When started on a plain JVM, it acts as a local stand-in that counts events instead of injecting them.
+ */
+public class InputServer implements AutoCloseable {
+
+    /** The socket that accepts client connections */
+    private final ServerSocket mServerSocket;
+    /** The injector that the decoded events are passed to */
+    private final InputInjector mInjector;
+    /** The amount of tap and swipe events handled */
+    private final AtomicLong mEventCount = new AtomicLong();
+
+    public static void main(final String[] args) throws IOException {
+        final int port = args.length > 0 ? Integer.parseInt(args[0]) : InputProtocol.DEFAULT_PORT;
+
+        InputInjector injector;
+        try {
+            injector = new AndroidInputInjector();
+        } catch (final ReflectiveOperationException ex) {
+            System.out.println("Android input unavailable, counting events only");
+            injector = new CountingInjector();
+        }
+
+        try (InputServer server = new InputServer(port, injector)) {
+            System.out.println("Input server listening on port " + server.getPort());
+            server.serve();
+        }
+    }
+
+    /**
+     * Opens the server socket on the loopback interface.
+     *
+     * @param port
+     *            The port to listen on or 0 for any free port
+     * @param injector
+     *            The injector that the decoded events are passed to
+     *
+     * @throws IOException
+     *             When the server socket could not be opened
+     */
+    public InputServer(final int port, final InputInjector injector) throws IOException {
+        mServerSocket = new ServerSocket(port, 1, InetAddress.getLoopbackAddress());
+        mInjector = injector;
+    }
+
+    /**
+     * Starts serving clients on a background daemon thread.
+     *
+     * @return The current server
+     */
+    public InputServer serveInBackground() {
+        final Thread thread = new Thread(this::serve, "InputServer");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Serves clients one after another until the server is closed.
+     */
+    public void serve() {
+        while (!mServerSocket.isClosed()) {
+            try (Socket socket = mServerSocket.accept()) {
+                socket.setTcpNoDelay(true);
+                handleClient(new DataInputStream(new BufferedInputStream(socket.getInputStream())),
+                        socket.getOutputStream());
+            } catch (final IOException ex) {
+                // The client disconnected or the server was closed
+            }
+        }
+    }
+
+    /**
+     * @return The port that the server listens on
+     */
+    public int getPort() {
+        return mServerSocket.getLocalPort();
+    }
+
+    /**
+     * @return The amount of tap and swipe events handled
+     */
+    public long getEventCount() {
+        return mEventCount.get();
+    }
+
+    /**
+     * Stops accepting clients.
+     */
+    @Override
+    public void close() throws IOException {
+        mServerSocket.close();
+    }
+
+    /**
+     * Decodes and injects events from a single client until it disconnects.
+     *
+     * @param in
+     *            The stream from the client
+     * @param out
+     *            The stream to the client
+     *
+     * @throws IOException
+     *             When communication fails
+     */
+    private void handleClient(final DataInputStream in, final OutputStream out) throws IOException {
+        while (true) {
+            final int opcode;
+            try {
+                opcode = in.readUnsignedByte();
+            } catch (final EOFException ex) {
+                return;
+            }
+
+            switch (opcode) {
+                case InputProtocol.TAP:
+                    mInjector.tap(in.readInt(), in.readInt());
+                    mEventCount.incrementAndGet();
+                    break;
+                case InputProtocol.SWIPE:
+                    mInjector.swipe(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt());
+                    mEventCount.incrementAndGet();
+                    break;
+                case InputProtocol.SYNC:
+                    out.write(InputProtocol.SYNC);
+                    out.flush();
+                    break;
+                default:
+                    throw new IOException("Unknown opcode " + opcode);
+            }
+        }
+    }
+
+    /**
+     * An injector that drops all events, used when not running on a device.
+     */
+    private static class CountingInjector implements InputInjector {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void tap(final int x, final int y) {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void swipe(final int fromX, final int fromY, final int toX, final int toY, final int durationMs) {}
+
+    }
+
+}
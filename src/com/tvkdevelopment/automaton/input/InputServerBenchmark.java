@@ -0,0 +1,59 @@
+package com.tvkdevelopment.automaton.input;
+
+import java.io.IOException;
+
+import com.tvkdevelopment.automaton.ScreenCoord;
+
+/**
+ * Measures the throughput of the {@link InputServerClient}. By default a local {@link InputServer} stand-in is started
+ * so that the client side can be measured without a device. Passing a port as argument benchmarks against an input
+ * server forwarded to that port instead, which taps the top left corner of the screen.
+ */
+public class InputServerBenchmark {
+
+    /** The amount of taps to send */
+    private static final int EVENTS = 100000;
+
+    public static void main(final String[] args) throws IOException {
+        InputServer localServer = null;
+        final int port;
+        if (args.length > 0) {
+            port = Integer.parseInt(args[0]);
+        } else {
+            localServer = new InputServer(0, new InputInjector() {
+                @Override
+                public void tap(final int x, final int y) {}
+
+                @Override
+                public void swipe(final int fromX, final int fromY, final int toX, final int toY,
+                        final int durationMs) {}
+            }).serveInBackground();
+            port = localServer.getPort();
+        }
+
+        try (InputServerClient client = new InputServerClient(port)) {
+            final ScreenCoord target = new ScreenCoord(0, 0);
+            client.tap(target);
+            client.sync();
+
+            final int events = localServer != null ? EVENTS : EVENTS / 100;
+            final long start = System.nanoTime();
+            for (int i = 0; i < events; ++i) {
+                client.tap(target);
+            }
+            client.sync();
+            final double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.format("%d taps in %.3fs = %.0f events/s%n", events, seconds, events / seconds);
+
+            final long syncStart = System.nanoTime();
+            client.sync();
+            System.out.format("Round trip: %.3fms%n", (System.nanoTime() - syncStart) / 1e6);
+        }
+
+        if (localServer != null) {
+            System.out.println("Server handled " + localServer.getEventCount() + " events");
+            localServer.close();
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.tvkdevelopment.automaton.input;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import com.tvkdevelopment.automaton.ScreenCoord;
+
+/**
+ * The host side of the {@link InputServer}, sending events over a socket that is forwarded to the device. The
+ * connection is opened on the first event and reopened once when writing to it fails.
+ */
+public class InputServerClient implements AutoCloseable {
+
+    /** The duration of swipes in milliseconds, matching the default of <code>input swipe</code> */
+    public static final int DEFAULT_SWIPE_DURATION = 300;
+
+    /** The port on the host that is forwarded to the input server */
+    private final int mPort;
+
+    /** The connection to the input server */
+    private Socket mSocket;
+    /** The buffered stream of events to the input server */
+    private DataOutputStream mOut;
+
+    /**
+     * Creates a client for an input server forwarded to the given local port.
+     *
+     * @param port
+     *            The port on the host that is forwarded to the input server
+     */
+    public InputServerClient(final int port) {
+        mPort = port;
+    }
+
+    /**
+     * Sends a tap event.
+     *
+     * @param target
+     *            The target coordinate for the tap
+     */
+    public synchronized void tap(final ScreenCoord target) {
+        send(new int[] { InputProtocol.TAP, target.x, target.y });
+    }
+
+    /**
+     * Sends a swipe event.
+     *
+     * @param from
+     *            The coordinate for the start of the swipe
+     * @param to
+     *            The coordinate for the end of the swipe
+     */
+    public synchronized void swipe(final ScreenCoord from, final ScreenCoord to) {
+        send(new int[] { InputProtocol.SWIPE, from.x, from.y, to.x, to.y, DEFAULT_SWIPE_DURATION });
+    }
+
+    /**
+     * Waits until the server has injected all events sent before.
+     */
+    public synchronized void sync() {
+        send(new int[] { InputProtocol.SYNC });
+        try {
+            final InputStream in = mSocket.getInputStream();
+            if (in.read() != InputProtocol.SYNC) {
+                throw new IOException("Input server did not acknowledge sync");
+            }
+        } catch (final IOException ex) {
+            disconnect();
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Closes the connection to the input server.
+     */
+    @Override
+    public synchronized void close() {
+        disconnect();
+    }
+
+    /**
+     * Writes a message, connecting when needed. A failed write is retried once on a new connection.
+     *
+     * @param message
+     *            The opcode followed by its arguments
+     */
+    private void send(final int[] message) {
+        try {
+            write(message);
+        } catch (final IOException ex) {
+            disconnect();
+            try {
+                write(message);
+            } catch (final IOException retryEx) {
+                disconnect();
+                throw new RuntimeException(retryEx);
+            }
+        }
+    }
+
+    /**
+     * Writes a message and flushes it, connecting when needed.
+     *
+     * @param message
+     *            The opcode followed by its arguments
+     *
+     * @throws IOException
+     *             When connecting or writing fails
+     */
+    private void write(final int[] message) throws IOException {
+        if (mSocket == null) {
+            mSocket = new Socket(InetAddress.getLoopbackAddress(), mPort);
+            mSocket.setTcpNoDelay(true);
+            mOut = new DataOutputStream(new BufferedOutputStream(mSocket.getOutputStream()));
+        }
+
+        mOut.writeByte(message[0]);
+        for (int i = 1; i < message.length; ++i) {
+            mOut.writeInt(message[i]);
+        }
+        mOut.flush();
+    }
+
+    /**
+     * Closes the connection, if any.
+     */
+    private void disconnect() {
+        if (mSocket != null) {
+            try {
+                mSocket.close();
+            } catch (final IOException ex) {
+                // Nothing left to clean up
+            }
+        }
+        mSocket = null;
+        mOut = null;
+    }
+
+}
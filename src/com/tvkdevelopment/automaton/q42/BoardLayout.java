@@ -0,0 +1,111 @@
+package com.tvkdevelopment.automaton.q42;
+
+import com.tvkdevelopment.automaton.ScreenCoord;
+
+/**
+ * The screen coordinates of a board's tiles on a single device, computed once from the device's {@link BoardProfile}
+ * so looking up a tile is a plain table access.
+ */
+public class BoardLayout {
+
+    /** The position of the board on the screen */
+    private final BoardProfile mProfile;
+    /** Whether or not the profile was detected on the device rather than estimated */
+    private final boolean mCalibrated;
+    /** The amount of tiles in one line on the board */
+    private final int mSize;
+    /** The pixel size of a single tile */
+    private final int mTileSize;
+    /** The top left offset of the tile centre */
+    private final int mOffset;
+    /** The screen coordinates sampled for each tile, indexed by row times size plus column */
+    private final ScreenCoord[] mTileCoords;
+
+    /**
+     * Computes the tile coordinates of a board.
+     *
+     * @param profile
+     *            The position of the board on the screen
+     * @param calibrated
+     *            Whether or not the profile was detected on the device rather than estimated
+     * @param size
+     *            The amount of tiles in one line on the board
+     */
+    public BoardLayout(final BoardProfile profile, final boolean calibrated, final int size) {
+        mProfile = profile;
+        mCalibrated = calibrated;
+        mSize = size;
+        mTileSize = (profile.bottomRight.x - profile.topLeft.x) / size;
+        mOffset = (int) (mTileSize * 0.25);
+
+        mTileCoords = new ScreenCoord[size * size];
+        for (int y = 0; y < size; ++y) {
+            for (int x = 0; x < size; ++x) {
+                mTileCoords[y * size + x] = new ScreenCoord(profile.topLeft.x + mOffset + x * mTileSize,
+                        profile.topLeft.y + mOffset + y * mTileSize);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the screen coordinate for a tile's board coordinate.
+     *
+     * @param coord
+     *            The board coordinate of the tile
+     *
+     * @return The screen coordinate of the tile
+     */
+    public ScreenCoord getTileCoord(final BoardCoord coord) {
+        return mTileCoords[coord.y * mSize + coord.x];
+    }
+
+    /**
+     * @return The position of the board on the screen
+     */
+    public BoardProfile getProfile() {
+        return mProfile;
+    }
+
+    /**
+     * @return True iff the profile was detected on the device rather than estimated
+     */
+    public boolean isCalibrated() {
+        return mCalibrated;
+    }
+
+    /**
+     * @return The amount of tiles in one line on the board
+     */
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * @return The pixel size of a single tile
+     */
+    public int getTileSize() {
+        return mTileSize;
+    }
+
+    /**
+     * @return The top left offset of the tile centre
+     */
+    public int getOffset() {
+        return mOffset;
+    }
+
+    /**
+     * @return The first screen row of the board
+     */
+    public int getTop() {
+        return mProfile.topLeft.y;
+    }
+
+    /**
+     * @return The screen row after the last row of the board
+     */
+    public int getBottom() {
+        return mProfile.bottomRight.y;
+    }
+
+}
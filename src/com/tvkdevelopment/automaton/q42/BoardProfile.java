@@ -0,0 +1,282 @@
+package com.tvkdevelopment.automaton.q42;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import com.tvkdevelopment.automaton.Frame;
+import com.tvkdevelopment.automaton.ImageKernels;
+import com.tvkdevelopment.automaton.ScreenCoord;
+
+/**
+ * The position of the Q42 game board on a device's screen. Profiles are detected once per screen resolution by
+ * {@link #calibrate(Frame, int)} and stored on disk, so later runs on a device of the same resolution load them
+ * instead of detecting the board again.
+ *
+ * Coordinates that were measured on the reference device, such as those of the start buttons, are translated to
+ * another device through {@link #scale(ScreenCoord)} relative to the board, as the rest of the layout is placed around
+ * it.
+ */
+public class BoardProfile {
+
+    /** The directory in which profiles are stored */
+    private static final String PROFILE_DIRECTORY = "profiles";
+    /** The largest difference of a channel for a pixel to be considered part of the background */
+    private static final int BACKGROUND_TOLERANCE = 8;
+    /** The shortest run of pixels that's considered a tile rather than noise */
+    private static final int MIN_TILE_LENGTH = 8;
+    /** The largest deviation of a tile from the detected grid in pixels */
+    private static final int GRID_TOLERANCE = 3;
+    /** The distance between the screen rows tried to find a row of tiles on */
+    private static final int ROW_STEP = 7;
+
+    /** The profile of the device that the original coordinates were measured on */
+    public static final BoardProfile REFERENCE = new BoardProfile(1080, 1920, new ScreenCoord(55, 505),
+            new ScreenCoord(1015, 1465));
+
+    /** The width of the screen in pixels */
+    public final int screenWidth;
+    /** The height of the screen in pixels */
+    public final int screenHeight;
+    /** The top left coordinate on the board */
+    public final ScreenCoord topLeft;
+    /** The bottom right coordinate on the board */
+    public final ScreenCoord bottomRight;
+
+    /**
+     * Stores the position of a board.
+     *
+     * @param screenWidth
+     *            The width of the screen in pixels
+     * @param screenHeight
+     *            The height of the screen in pixels
+     * @param topLeft
+     *            The top left coordinate on the board
+     * @param bottomRight
+     *            The bottom right coordinate on the board
+     */
+    public BoardProfile(final int screenWidth, final int screenHeight, final ScreenCoord topLeft,
+            final ScreenCoord bottomRight) {
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        this.topLeft = topLeft;
+        this.bottomRight = bottomRight;
+    }
+
+    /**
+     * Translates a coordinate measured on the reference device to this device, relative to the board.
+     *
+     * @param reference
+     *            The coordinate on the reference device
+     *
+     * @return The matching coordinate on this device
+     */
+    public ScreenCoord scale(final ScreenCoord reference) {
+        return new ScreenCoord(
+                topLeft.x + (reference.x - REFERENCE.topLeft.x) * (bottomRight.x - topLeft.x)
+                        / (REFERENCE.bottomRight.x - REFERENCE.topLeft.x),
+                topLeft.y + (reference.y - REFERENCE.topLeft.y) * (bottomRight.y - topLeft.y)
+                        / (REFERENCE.bottomRight.y - REFERENCE.topLeft.y));
+    }
+
+    /**
+     * Guesses the board's position for a screen that wasn't calibrated yet by scaling the reference profile to the
+     * screen's width and centring it vertically.
+     *
+     * @param screenWidth
+     *            The width of the screen in pixels
+     * @param screenHeight
+     *            The height of the screen in pixels
+     *
+     * @return The guessed profile
+     */
+    public static BoardProfile estimate(final int screenWidth, final int screenHeight) {
+        final int shift = (screenHeight - REFERENCE.screenHeight * screenWidth / REFERENCE.screenWidth) / 2;
+        return new BoardProfile(screenWidth, screenHeight,
+                new ScreenCoord(REFERENCE.topLeft.x * screenWidth / REFERENCE.screenWidth,
+                        REFERENCE.topLeft.y * screenWidth / REFERENCE.screenWidth + shift),
+                new ScreenCoord(REFERENCE.bottomRight.x * screenWidth / REFERENCE.screenWidth,
+                        REFERENCE.bottomRight.y * screenWidth / REFERENCE.screenWidth + shift));
+    }
+
+    /**
+     * Loads the stored profile for a screen resolution.
+     *
+     * @param screenWidth
+     *            The width of the screen in pixels
+     * @param screenHeight
+     *            The height of the screen in pixels
+     *
+     * @return The stored profile or null if the resolution wasn't calibrated yet
+     */
+    public static BoardProfile load(final int screenWidth, final int screenHeight) {
+        final File file = getFile(screenWidth, screenHeight);
+        if (!file.exists()) {
+            return null;
+        }
+
+        final Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (final IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        return new BoardProfile(screenWidth, screenHeight,
+                new ScreenCoord(Integer.parseInt(properties.getProperty("left")),
+                        Integer.parseInt(properties.getProperty("top"))),
+                new ScreenCoord(Integer.parseInt(properties.getProperty("right")),
+                        Integer.parseInt(properties.getProperty("bottom"))));
+    }
+
+    /**
+     * Stores the profile for its screen resolution, replacing an earlier one.
+     */
+    public void save() {
+        final Properties properties = new Properties();
+        properties.setProperty("left", Integer.toString(topLeft.x));
+        properties.setProperty("top", Integer.toString(topLeft.y));
+        properties.setProperty("right", Integer.toString(bottomRight.x));
+        properties.setProperty("bottom", Integer.toString(bottomRight.y));
+
+        final File file = getFile(screenWidth, screenHeight);
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, "Q42 board position on a " + screenWidth + "x" + screenHeight + " screen");
+        } catch (final IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Detects the board on a captured screen. A row of the screen crossing the board shows the tiles as evenly spaced
+     * runs of pixels that differ from the background, which gives the left and right of the board and the distance
+     * between tiles. The top of the board follows from counting the tiles above that row in the first column.
+     *
+     * @param frame
+     *            The captured screen, showing a board
+     * @param size
+     *            The amount of tiles in one line on the board
+     *
+     * @return The detected profile
+     */
+    public static BoardProfile calibrate(final Frame frame, final int size) {
+        final int width = frame.getWidth();
+        final int height = frame.getHeight();
+        final int background = frame.getPixels()[height / 2 * width];
+
+        // Try rows from the middle of the screen outwards until one crosses a full row of tiles
+        for (int step = 0; step < height / 4; step += ROW_STEP) {
+            for (final int y : new int[] { height / 2 - step, height / 2 + step }) {
+                final List<int[]> runs = findRuns(frame, background, y);
+                if (runs.size() != size || size < 2) {
+                    continue;
+                }
+
+                // Check that the runs lie on an evenly spaced grid
+                final int first = runs.get(0)[0];
+                final double pitch = (runs.get(size - 1)[0] - first) / (double) (size - 1);
+                boolean grid = true;
+                int length = 0;
+                for (int i = 0; i < size; ++i) {
+                    grid &= Math.abs(runs.get(i)[0] - (first + i * pitch)) <= GRID_TOLERANCE;
+                    length += runs.get(i)[1] - runs.get(i)[0];
+                }
+                if (!grid) {
+                    continue;
+                }
+                final double gap = pitch - length / (double) size;
+
+                // Count the tiles above and below the row in the first column, which must add up to a full column
+                final int x = first + length / size / 2;
+                int tileTop = y;
+                while (tileTop > 0 && !isBackground(frame, background, x, tileTop - 1)) {
+                    --tileTop;
+                }
+                final int centre = (int) (tileTop + (pitch - gap) / 2);
+                int above = 0;
+                while (isTile(frame, background, x, (int) (centre - (above + 1) * pitch))) {
+                    ++above;
+                }
+                int below = 0;
+                while (isTile(frame, background, x, (int) (centre + (below + 1) * pitch))) {
+                    ++below;
+                }
+                if (above + 1 + below != size) {
+                    continue;
+                }
+
+                final int left = (int) Math.round(first - gap / 2);
+                final int top = (int) Math.round(tileTop - gap / 2 - above * pitch);
+                final int extent = (int) Math.round(size * pitch);
+                return new BoardProfile(width, height, new ScreenCoord(left, top),
+                        new ScreenCoord(left + extent, top + extent));
+            }
+        }
+        throw new RuntimeException("No board of " + size + "x" + size + " tiles found on the screen");
+    }
+
+    /**
+     * Finds the runs of pixels on a screen row that differ from the background.
+     *
+     * @param frame
+     *            The captured screen
+     * @param background
+     *            The packed colour of the background
+     * @param y
+     *            The screen row to search
+     *
+     * @return The runs as their first column and the column after their last
+     */
+    private static List<int[]> findRuns(final Frame frame, final int background, final int y) {
+        final List<int[]> runs = new ArrayList<>();
+        int start = -1;
+        for (int x = 0; x <= frame.getWidth(); ++x) {
+            final boolean inRun = x < frame.getWidth() && !isBackground(frame, background, x, y);
+            if (inRun && start == -1) {
+                start = x;
+            } else if (!inRun && start != -1) {
+                if (x - start >= MIN_TILE_LENGTH) {
+                    runs.add(new int[] { start, x });
+                }
+                start = -1;
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Checks if a screen coordinate lies on a tile, as opposed to the background or outside of the screen.
+     */
+    private static boolean isTile(final Frame frame, final int background, final int x, final int y) {
+        return y >= 0 && y < frame.getHeight() && !isBackground(frame, background, x, y);
+    }
+
+    /**
+     * Checks if a pixel has the background's colour.
+     */
+    private static boolean isBackground(final Frame frame, final int background, final int x, final int y) {
+        return !ImageKernels.differs(frame.getPixels()[y * frame.getWidth() + x], background, BACKGROUND_TOLERANCE);
+    }
+
+    /**
+     * @return The file that the profile of a screen resolution is stored in
+     */
+    private static File getFile(final int screenWidth, final int screenHeight) {
+        return new File(PROFILE_DIRECTORY, screenWidth + "x" + screenHeight + ".properties");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return screenWidth + "x" + screenHeight + " board " + topLeft + " - " + bottomRight;
+    }
+
+}
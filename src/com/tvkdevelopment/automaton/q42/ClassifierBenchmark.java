@@ -0,0 +1,156 @@
+package com.tvkdevelopment.automaton.q42;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import com.tvkdevelopment.automaton.Frame;
+import com.tvkdevelopment.automaton.ScreenCoord;
+
+/**
+ * Compares ways of reading a whole board on generated anti-aliased boards of 4x4 through 12x12 tiles, with a few
+ * percent of the pixels replaced by white specks to stand in for noise: a {@link Color} per tile as the board used to
+ * be read, a packed pixel per tile, and the averaged patches of a {@link TileClassifier} both sequentially and in
+ * parallel. Reports the time per board and the amount of misread tiles.
+ */
+public class ClassifierBenchmark {
+
+    /** The amount of warm-up reads per path and size */
+    private static final int WARMUP = 2000;
+    /** The amount of measured reads per path and size */
+    private static final int ITERATIONS = 5000;
+    /** The share of pixels replaced by white specks */
+    private static final double SPECK_RATE = 0.03;
+    /** The colours of the tiles in the order of {@link Tile#values()} */
+    private static final int[] COLOURS = { 0x2a2a2a, 0xff384b, 0x1cc0e0 };
+
+    /** A sink for results, so the reads aren't optimised away */
+    private static long sSink;
+
+    public static void main(final String[] args) {
+        System.out.format("%-5s %12s %12s %12s %12s   %s%n", "Size", "Color", "Packed", "Patch", "Patch par",
+                "Misread tiles (Color/Packed/Patch)");
+        for (int size = 4; size <= 12; ++size) {
+            final Tile[] truth = new Tile[size * size];
+            final BufferedImage image = createScreen(size, truth);
+            final Frame frame = Frame.fromImage(image, null);
+            final BoardLayout layout = new BoardLayout(BoardProfile.REFERENCE, true, size);
+            final TileClassifier classifier = new TileClassifier(layout);
+            final BoardState state = new BoardState(size);
+            final int boardSize = size;
+
+            final double colourUs = measure(() -> {
+                for (int y = 0; y < boardSize; ++y) {
+                    for (int x = 0; x < boardSize; ++x) {
+                        final ScreenCoord coord = layout.getTileCoord(new BoardCoord(x, y));
+                        state.setTile(new BoardCoord(x, y), Tile.fromRgb(new Color(image.getRGB(coord.x, coord.y))));
+                    }
+                }
+            });
+            final int colourErrors = countErrors(state, truth);
+
+            final double packedUs = measure(() -> {
+                for (int y = 0; y < boardSize; ++y) {
+                    for (int x = 0; x < boardSize; ++x) {
+                        final ScreenCoord coord = layout.getTileCoord(new BoardCoord(x, y));
+                        state.setTile(new BoardCoord(x, y), Tile.fromRgb(frame.getPixel(coord.x, coord.y)));
+                    }
+                }
+            });
+            final int packedErrors = countErrors(state, truth);
+
+            final double patchUs = measure(() -> classifier.classifyBoard(frame, state, false));
+            final int patchErrors = countErrors(state, truth);
+            final double parallelUs = measure(() -> classifier.classifyBoard(frame, state, true));
+
+            System.out.format("%2dx%-2d %10.2fus %10.2fus %10.2fus %10.2fus   %d/%d/%d of %d%n", size, size, colourUs,
+                    packedUs, patchUs, parallelUs, colourErrors, packedErrors, patchErrors, size * size);
+        }
+        System.out.println("Checksum " + sSink);
+    }
+
+    /**
+     * Measures the average time of reading a board.
+     *
+     * @param read
+     *            The read to measure
+     *
+     * @return The average time per read in microseconds
+     */
+    private static double measure(final Runnable read) {
+        for (int i = 0; i < WARMUP; ++i) {
+            read.run();
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+            read.run();
+        }
+        return (System.nanoTime() - start) / 1e3 / ITERATIONS;
+    }
+
+    /**
+     * Counts the tiles that were read differently from how they were drawn.
+     *
+     * @param state
+     *            The board that was read
+     * @param truth
+     *            The drawn tiles, row by row
+     *
+     * @return The amount of misread tiles
+     */
+    private static int countErrors(final BoardState state, final Tile[] truth) {
+        final int size = state.getSize();
+        int errors = 0;
+        for (int y = 0; y < size; ++y) {
+            for (int x = 0; x < size; ++x) {
+                sSink += state.getTile(x, y).ordinal();
+                if (state.getTile(x, y) != truth[y * size + x]) {
+                    ++errors;
+                }
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Draws a board of random tiles on the reference layout.
+     *
+     * @param size
+     *            The amount of tiles in one line on the board
+     * @param truth
+     *            The array to store the drawn tiles in, row by row
+     *
+     * @return The screen showing the board
+     */
+    private static BufferedImage createScreen(final int size, final Tile[] truth) {
+        final BoardProfile profile = BoardProfile.REFERENCE;
+        final BufferedImage image = new BufferedImage(profile.screenWidth, profile.screenHeight,
+                BufferedImage.TYPE_INT_RGB);
+        final Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setColor(new Color(0x202020));
+        graphics.fillRect(0, 0, profile.screenWidth, profile.screenHeight);
+
+        final Random random = new Random(size);
+        final int tileSize = (profile.bottomRight.x - profile.topLeft.x) / size;
+        for (int y = 0; y < size; ++y) {
+            for (int x = 0; x < size; ++x) {
+                final Tile tile = Tile.values()[random.nextInt(COLOURS.length)];
+                truth[y * size + x] = tile;
+                graphics.setColor(new Color(COLOURS[tile.ordinal()]));
+                graphics.fillRoundRect(profile.topLeft.x + x * tileSize + 3, profile.topLeft.y + y * tileSize + 3,
+                        tileSize - 6, tileSize - 6, tileSize / 4, tileSize / 4);
+            }
+        }
+        graphics.dispose();
+
+        final int specks = (int) (profile.screenWidth * profile.screenHeight * SPECK_RATE);
+        for (int i = 0; i < specks; ++i) {
+            image.setRGB(random.nextInt(profile.screenWidth), random.nextInt(profile.screenHeight), 0xffffff);
+        }
+        return image;
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.tvkdevelopment.automaton.q42;
+
+/**
+ * The phases that a Q42 game passes through, as seen on the screen.
+ */
+public enum GamePhase {
+
+    /** The menu with the start buttons is shown */
+    MENU,
+    /** A game was started and its board is appearing */
+    LOADING,
+    /** The board is shown and no longer changing */
+    READY,
+    /** The game was solved and its board is animating away */
+    SOLVED;
+
+}
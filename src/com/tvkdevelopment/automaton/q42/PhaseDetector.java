@@ -0,0 +1,217 @@
+package com.tvkdevelopment.automaton.q42;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.tvkdevelopment.automaton.Automaton;
+import com.tvkdevelopment.automaton.Frame;
+import com.tvkdevelopment.automaton.ImageKernels;
+import com.tvkdevelopment.automaton.ScreenCoord;
+
+/**
+ * Tells which {@link GamePhase} a game is in from a few probe pixels, so the automaton can move on as soon as the
+ * screen is ready instead of waiting a fixed time that has to allow for the slowest device.
+ *
+ * The menu is recognised by the pixels around the start button, which are learned while the menu is known to be shown.
+ * The board is ready once the tile centres stop changing between captures and show at least one coloured tile, as every
+ * puzzle starts with some. Whether a changing board is loading or animating away after being solved follows from the
+ * last phase that was seen.
+ *
+ * Detectors hold the state of a single device and aren't thread-safe.
+ */
+public class PhaseDetector {
+
+    /** The time between the first polls in milliseconds */
+    private static final int INITIAL_POLL_INTERVAL = 50;
+    /** The longest time between polls in milliseconds */
+    private static final int MAX_POLL_INTERVAL = 200;
+    /** The largest difference of a channel for two probe colours to be considered the same */
+    private static final int COLOUR_TOLERANCE = 24;
+
+    /** The pixels around the start button, which look the same whenever the menu is shown */
+    private final List<ScreenCoord> mMenuProbes = new ArrayList<>();
+    /** The centres of the tiles */
+    private final List<ScreenCoord> mBoardProbes = new ArrayList<>();
+    /** The first screen row holding a probe */
+    private final int mTop;
+    /** The screen row after the last row holding a probe */
+    private final int mBottom;
+
+    /** The colours of the menu probes while the menu is shown or null if they weren't learned yet */
+    private int[] mMenuColours;
+    /** The colours of the board probes in the previous poll or null if there was none since the last transition */
+    private int[] mBoardColours;
+    /** The phase that was last detected or announced */
+    private GamePhase mPhase = GamePhase.MENU;
+
+    /**
+     * Creates a detector for a game.
+     *
+     * @param game
+     *            The game to detect the phases of
+     */
+    public PhaseDetector(final Q42Game game) {
+        final ScreenCoord button = game.getStartButton();
+        final int spread = game.getLayout().getTileSize() / 4;
+        mMenuProbes.add(button);
+        mMenuProbes.add(new ScreenCoord(button.x - spread, button.y - spread));
+        mMenuProbes.add(new ScreenCoord(button.x + spread, button.y - spread));
+        mMenuProbes.add(new ScreenCoord(button.x - spread, button.y + spread));
+        mMenuProbes.add(new ScreenCoord(button.x + spread, button.y + spread));
+
+        for (int y = 0; y < game.mSize; ++y) {
+            for (int x = 0; x < game.mSize; ++x) {
+                mBoardProbes.add(game.getTileCoord(new BoardCoord(x, y)));
+            }
+        }
+
+        int top = Integer.MAX_VALUE;
+        int bottom = 0;
+        for (final List<ScreenCoord> probes : Arrays.asList(mMenuProbes, mBoardProbes)) {
+            for (final ScreenCoord probe : probes) {
+                top = Math.min(top, probe.y);
+                bottom = Math.max(bottom, probe.y + 1);
+            }
+        }
+        mTop = top;
+        mBottom = bottom;
+    }
+
+    /**
+     * Captures the screen while the menu is shown to learn what it looks like.
+     */
+    public void learnMenu() {
+        Automaton.dumpScreen(mTop, mBottom, null);
+        mMenuColours = readProbes(mMenuProbes);
+        mBoardColours = null;
+        mPhase = GamePhase.MENU;
+    }
+
+    /**
+     * @return True iff the look of the menu was learned
+     */
+    public boolean hasLearnedMenu() {
+        return mMenuColours != null;
+    }
+
+    /**
+     * Announces that a game was started, after which a changing board is considered to be loading.
+     */
+    public void onStarted() {
+        mBoardColours = null;
+        mPhase = GamePhase.LOADING;
+    }
+
+    /**
+     * Announces that the game was solved, after which a changing board is considered to be animating away.
+     */
+    public void onSolved() {
+        mBoardColours = null;
+        mPhase = GamePhase.SOLVED;
+    }
+
+    /**
+     * Captures the screen and determines the current phase.
+     *
+     * @return The phase that the game is in
+     */
+    public GamePhase detect() {
+        Automaton.dumpScreen(mTop, mBottom, null);
+
+        if (mMenuColours != null && matches(readProbes(mMenuProbes), mMenuColours)) {
+            mBoardColours = null;
+            mPhase = GamePhase.MENU;
+            return mPhase;
+        }
+
+        final int[] board = readProbes(mBoardProbes);
+        final boolean stable = mBoardColours != null && matches(board, mBoardColours);
+        mBoardColours = board;
+        if (mPhase == GamePhase.SOLVED) {
+            return mPhase;
+        }
+
+        mPhase = stable && hasColouredTile(board) ? GamePhase.READY : GamePhase.LOADING;
+        return mPhase;
+    }
+
+    /**
+     * Polls the screen until the game is in a phase, polling often at first and backing off as the wait gets longer.
+     *
+     * @param phase
+     *            The phase to wait for
+     * @param timeoutMs
+     *            The maximum time to wait in milliseconds
+     *
+     * @return True iff the phase was detected in time
+     */
+    public boolean await(final GamePhase phase, final int timeoutMs) {
+        final long deadline = System.nanoTime() + timeoutMs * 1000000L;
+        int interval = INITIAL_POLL_INTERVAL;
+        while (detect() != phase) {
+            final long remaining = (deadline - System.nanoTime()) / 1000000;
+            if (remaining <= 0) {
+                return false;
+            }
+            try {
+                Thread.sleep(Math.min(interval, remaining));
+            } catch (final InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+            interval = Math.min(interval * 2, MAX_POLL_INTERVAL);
+        }
+        return true;
+    }
+
+    /**
+     * Reads the colours of probe pixels from the last capture.
+     *
+     * @param probes
+     *            The pixels to read
+     *
+     * @return The packed colours of the pixels, in order
+     */
+    private static int[] readProbes(final List<ScreenCoord> probes) {
+        final Frame frame = Automaton.getDevice().getFrame();
+        final int[] pixels = frame.getPixels();
+        final int[] colours = new int[probes.size()];
+        for (int i = 0; i < colours.length; ++i) {
+            final ScreenCoord probe = probes.get(i);
+            colours[i] = pixels[probe.y * frame.getWidth() + probe.x];
+        }
+        return colours;
+    }
+
+    /**
+     * Checks if all probe colours are roughly the same as expected.
+     *
+     * @param colours
+     *            The packed colours that were read
+     * @param expected
+     *            The packed colours to compare to
+     *
+     * @return True iff no channel of any probe differs by more than the tolerance
+     */
+    private static boolean matches(final int[] colours, final int[] expected) {
+        return ImageKernels.countDifferences(colours, expected, 0, colours.length, COLOUR_TOLERANCE) == 0;
+    }
+
+    /**
+     * Checks if a board shows a coloured tile, which sets a game's board apart from an empty screen.
+     *
+     * @param colours
+     *            The packed colours of the tile centres
+     *
+     * @return True iff at least one tile isn't grey
+     */
+    private static boolean hasColouredTile(final int[] colours) {
+        for (final int colour : colours) {
+            if (Tile.fromRgb(colour) != Tile.GREY) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.tvkdevelopment.automaton.q42;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.tvkdevelopment.automaton.Automaton;
+import com.tvkdevelopment.automaton.Device;
+import com.tvkdevelopment.automaton.q42.ohhi.Ohhi;
+import com.tvkdevelopment.automaton.q42.ohno.Ohno;
+
+/**
+ * Plays Q42 games on several devices at once from a single JVM. Every device gets its own thread and {@link Device}
+ * session, while the game instance along with its rules and reference images are shared. The aggregate amount of games
+ * per hour is reported periodically.
+ *
+ * Usage: <code>Q42Farm (ohno|ohhi) [serial...]</code>. Without serials, all devices connected to ADB are used.
+ */
+public class Q42Farm {
+
+    /** The time between reports of the amount of games played in milliseconds */
+    private static final long REPORT_INTERVAL = 60000;
+
+    public static void main(final String[] args) throws InterruptedException {
+        if (args.length == 0) {
+            System.out.println("Usage: Q42Farm (ohno|ohhi) [serial...]");
+            return;
+        }
+
+        final Q42Game game = args[0].equals("ohhi") ? new Ohhi() : new Ohno();
+        final List<String> serials = args.length > 1 ? Arrays.asList(args).subList(1, args.length)
+                : Device.listSerials();
+        if (serials.isEmpty()) {
+            System.out.println("No devices connected");
+            return;
+        }
+
+        final List<Device> devices = new ArrayList<>();
+        for (final String serial : serials) {
+            devices.add(Device.fromConfig(serial));
+        }
+
+        final AtomicLongArray gamesPlayed = new AtomicLongArray(devices.size());
+        final ExecutorService executor = Executors.newFixedThreadPool(devices.size());
+        for (int i = 0; i < devices.size(); ++i) {
+            final int index = i;
+            executor.execute(() -> {
+                Automaton.setDevice(devices.get(index));
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        game.playGame();
+                        gamesPlayed.incrementAndGet(index);
+                    } catch (final RuntimeException ex) {
+                        ex.printStackTrace();
+                    }
+                    game.awaitNextGame();
+                }
+            });
+        }
+
+        final long start = System.currentTimeMillis();
+        while (!executor.awaitTermination(REPORT_INTERVAL, TimeUnit.MILLISECONDS)) {
+            final double hours = (System.currentTimeMillis() - start) / 3600000.0;
+            long total = 0;
+            System.out.println("--- Games per hour ---");
+            for (int i = 0; i < devices.size(); ++i) {
+                final long games = gamesPlayed.get(i);
+                total += games;
+                System.out.format("%-20s %6d games %8.1f/h%n", devices.get(i).getSerial(), games, games / hours);
+            }
+            System.out.format("%-20s %6d games %8.1f/h%n", "Total", total, total / hours);
+        }
+    }
+
+}
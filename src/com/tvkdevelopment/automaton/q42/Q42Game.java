@@ -1,8 +1,14 @@
 package com.tvkdevelopment.automaton.q42;
 
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import com.tvkdevelopment.automaton.Automaton;
+import com.tvkdevelopment.automaton.CaptureService;
+import com.tvkdevelopment.automaton.Frame;
+import com.tvkdevelopment.automaton.MemoryMonitor;
 import com.tvkdevelopment.automaton.ScreenCoord;
 import com.tvkdevelopment.automaton.TimeMonitor;
 
@@ -13,18 +19,41 @@ public abstract class Q42Game extends Automaton {
 
     /** Whether or not to play a single game or to repeatedly solve them */
     private static final boolean REPEAT = true;
-
-    /** The top left coordinate on the board */
-    private static final ScreenCoord TOP_LEFT = new ScreenCoord(55, 505);
-    /** The bottom right coordinate on the board */
-    private static final ScreenCoord BOTTOM_RIGHT = new ScreenCoord(1015, 1465);
+    /** The longest time between solving a game and starting the next one in milliseconds */
+    private static final int GAME_INTERVAL = 8000;
+    /** Whether or not to send all taps of a rule's actions as one batch rather than tapping them one by one */
+    private static final boolean BATCH_TAPS = true;
+    /** The time between consecutive taps in a batch in milliseconds */
+    private static final int TAP_GAP = 50;
+    /** Whether or not to wait for tapped tiles to change on screen in the background captures after each batch */
+    private static final boolean CONFIRM_TAPS = false;
+    /** The maximum time to wait for tapped tiles to change in milliseconds */
+    private static final int TAP_CONFIRM_TIMEOUT = 1000;
+    /** Whether or not to read tile rows while the screenshot is arriving instead of after capturing all of it */
+    private static final boolean STREAM_BOARD = true;
+    /** Whether or not to classify the rows of tiles in parallel when reading a fully captured board */
+    private static final boolean PARALLEL_CLASSIFY = false;
+    /** Whether or not to wait for the screen to show the next phase of a game instead of waiting fixed times */
+    private static final boolean DETECT_PHASES = true;
+    /** The time to wait after starting a game for its board to appear in milliseconds */
+    private static final int BOARD_LOAD_TIME = 1800;
+    /** The maximum time to wait for a started game's board to be detected in milliseconds */
+    private static final int BOARD_LOAD_TIMEOUT = 5000;
+    /** Whether or not to check the board on screen after solving and re-tap the tiles that differ from the state */
+    private static final boolean VERIFY_BOARD = true;
+    /** The time to wait for the last taps to show before verifying the board in milliseconds */
+    private static final int VERIFY_DELAY = 300;
+    /** The maximum amount of times to verify and correct the board after solving */
+    private static final int MAX_VERIFY_ROUNDS = 3;
+    /** The largest share of mismatched tiles put down to dropped taps, beyond which the board is no longer shown */
+    private static final double MAX_MISMATCH_SHARE = 0.2;
 
     /** The amount of tiles in one line on the board */
     protected final int mSize;
-    /** The pixel size of a single tile */
-    protected final int mTileSize;
-    /** The top left offset of the tile centre */
-    protected final int mOffset;
+    /** The board layout for each device's thread, loaded from the profile for the device's screen resolution */
+    private final ThreadLocal<BoardLayout> mLayout = ThreadLocal.withInitial(this::loadLayout);
+    /** The phase detector for each device's thread, as the game may be played on several at once */
+    private final ThreadLocal<PhaseDetector> mPhaseDetector = ThreadLocal.withInitial(() -> new PhaseDetector(this));
 
     /**
      * Initialises the game for the given board size.
@@ -34,8 +63,6 @@ public abstract class Q42Game extends Automaton {
      */
     protected Q42Game(final int size) {
         mSize = size;
-        mTileSize = (BOTTOM_RIGHT.x - TOP_LEFT.x) / mSize;
-        mOffset = (int) (mTileSize * 0.25);
     }
 
     /**
@@ -48,37 +75,99 @@ public abstract class Q42Game extends Automaton {
         if (!REPEAT) {
             game.playGame();
         } else {
+            final long start = System.currentTimeMillis();
+            long games = 0;
             while (true) {
                 game.playGame();
-                wait(8000);
+                game.awaitNextGame();
+                ++games;
+
+                // Report the throughput so fixed waits and detected transitions can be compared
+                TimeMonitor.setMeasurement(
+                        DETECT_PHASES ? "Games per hour (detected transitions)" : "Games per hour (fixed waits)",
+                        games * 3600000 / Math.max(1, System.currentTimeMillis() - start));
             }
         }
     }
 
+    /**
+     * Waits after solving a game until the next one can be started. The menu can only be detected once its look was
+     * learned, which is redone at the start of the game after calibrating, so until then the fixed time is waited.
+     */
+    public void awaitNextGame() {
+        if (DETECT_PHASES && mPhaseDetector.get().hasLearnedMenu()) {
+            awaitPhase(GamePhase.MENU, GAME_INTERVAL);
+        } else {
+            wait(GAME_INTERVAL);
+        }
+    }
+
+    /**
+     * Waits until the screen shows a phase of the game and reports how long that took. When the phase isn't detected
+     * in time, the game continues as if it was.
+     *
+     * @param phase
+     *            The phase to wait for
+     * @param timeoutMs
+     *            The maximum time to wait in milliseconds
+     */
+    private void awaitPhase(final GamePhase phase, final int timeoutMs) {
+        TimeMonitor.start("Waiting for " + phase);
+        final boolean detected = mPhaseDetector.get().await(phase, timeoutMs);
+        final long waitTime = TimeMonitor.stop("Waiting for " + phase);
+        if (detected) {
+            System.out.println("Detected " + phase + " after " + waitTime + "ms");
+        } else {
+            System.out.println("Phase " + phase + " not detected within " + timeoutMs + "ms");
+            TimeMonitor.setMeasurement("Undetected phases", TimeMonitor.getMeasurement("Undetected phases") + 1);
+        }
+    }
+
     /**
      * Starts a game and solves it.
      */
     public void playGame() {
+        final long allocatedBefore = MemoryMonitor.getAllocatedBytes();
+
         // Start a game
         System.out.println("Starting game...");
-        tap(getStartButtonScreenCoord());
-        wait(1800);
-
-        // Store a screenshot that can be used to read the board state
-        System.out.println("Loading board state...");
-        TimeMonitor.start("Importing screen");
-        dumpScreen();
-        TimeMonitor.stop("Importing screen");
+        if (DETECT_PHASES && !mPhaseDetector.get().hasLearnedMenu()) {
+            // The first game is started from the menu, which shows what to look for after later games
+            mPhaseDetector.get().learnMenu();
+        }
+        tap(getStartButton());
+        if (!getLayout().isCalibrated()) {
+            // Detect the board once for this screen resolution, after which later runs load it
+            wait(BOARD_LOAD_TIME);
+            calibrate();
+        } else if (DETECT_PHASES) {
+            mPhaseDetector.get().onStarted();
+            awaitPhase(GamePhase.READY, BOARD_LOAD_TIMEOUT);
+        } else {
+            wait(BOARD_LOAD_TIME);
+        }
 
-        // Set the pixel colours of each tile to construct the board state
         final BoardState state = initBoardState();
-        TimeMonitor.start("Reading board state");
-        for (int y = 0; y < mSize; ++y) {
-            for (int x = 0; x < mSize; ++x) {
-                state.setTile(new BoardCoord(x, y), Tile.fromRgb(getColour(getTileCoord(new BoardCoord(x, y)))));
-            }
+        final TileClassifier classifier = new TileClassifier(getLayout());
+        if (STREAM_BOARD) {
+            // Read each row of tiles as soon as it has arrived, capturing only the board
+            System.out.println("Streaming board state...");
+            TimeMonitor.start("Streaming board state");
+            dumpScreen(getLayout().getTop(), getLayout().getBottom(),
+                    (frame, fromRow, toRow) -> classifier.classifyRows(frame, state, fromRow, toRow));
+            TimeMonitor.stop("Streaming board state");
+        } else {
+            // Store a screenshot that can be used to read the board state
+            System.out.println("Loading board state...");
+            TimeMonitor.start("Importing screen");
+            dumpScreen();
+            TimeMonitor.stop("Importing screen");
+
+            // Classify the colours of each tile to construct the board state
+            TimeMonitor.start("Reading board state");
+            classifier.classifyBoard(getFrame(), state, PARALLEL_CLASSIFY);
+            TimeMonitor.stop("Reading board state");
         }
-        TimeMonitor.stop("Reading board state");
 
         // Allow implementations to adjust the board state based on the read values
         TimeMonitor.start("Finalising board state");
@@ -104,14 +193,27 @@ public abstract class Q42Game extends Automaton {
 
                     // Process all given actions
                     TimeMonitor.start("Inputting actions");
+                    final List<ScreenCoord> taps = new ArrayList<>();
                     for (final BoardCoord position : actions.keySet()) {
                         System.out.println(position + " -> " + actions.get(position));
                         updated = true;
 
                         // Input the action on the device and in the state
-                        setTile(state, position, actions.get(position));
+                        if (BATCH_TAPS) {
+                            taps.addAll(getTaps(state, position, actions.get(position)));
+                            state.setTile(position, actions.get(position));
+                        } else {
+                            setTile(state, position, actions.get(position));
+                        }
+                    }
+                    tapAll(taps, TAP_GAP);
+                    if (CONFIRM_TAPS && !taps.isEmpty()) {
+                        confirmTaps(taps);
+                    }
+                    final long inputTime = TimeMonitor.stop("Inputting actions");
+                    if (!actions.isEmpty()) {
+                        System.out.println("Input " + actions.size() + " actions in " + inputTime + "ms");
                     }
-                    TimeMonitor.stop("Inputting actions");
                 } while (!actions.isEmpty());
             }
 
@@ -119,7 +221,22 @@ public abstract class Q42Game extends Automaton {
             System.out.println(state);
         }
 
+        if (VERIFY_BOARD) {
+            TimeMonitor.start("Verifying board");
+            verifyBoard(state);
+            TimeMonitor.stop("Verifying board");
+        }
+
         System.out.println("Finished!");
+        if (DETECT_PHASES) {
+            mPhaseDetector.get().onSolved();
+        }
+
+        // Report memory use to check that repeated games don't keep allocating screenshots
+        TimeMonitor.setMeasurement("Allocated this game (KB)",
+                (MemoryMonitor.getAllocatedBytes() - allocatedBefore) / 1024);
+        TimeMonitor.setMeasurement("Frame allocations", getDevice().getFramePool().getAllocations());
+        TimeMonitor.setMeasurement("GC time per hour (ms)", MemoryMonitor.getGcTimePerHour());
 
         System.out.println();
         TimeMonitor.printElapsed();
@@ -136,7 +253,155 @@ public abstract class Q42Game extends Automaton {
      * @return The screen coordinate of the tile
      */
     public ScreenCoord getTileCoord(final BoardCoord coord) {
-        return new ScreenCoord(TOP_LEFT.x + mOffset + coord.x * mTileSize, TOP_LEFT.y + mOffset + coord.y * mTileSize);
+        return getLayout().getTileCoord(coord);
+    }
+
+    /**
+     * @return The board layout on the current thread's device
+     */
+    public BoardLayout getLayout() {
+        return mLayout.get();
+    }
+
+    /**
+     * @return The screen coordinate of the button to start a new game on the current thread's device
+     */
+    ScreenCoord getStartButton() {
+        return getLayout().getProfile().scale(getStartButtonScreenCoord());
+    }
+
+    /**
+     * Loads the board layout for the current thread's device from the profile of its screen resolution. Without a
+     * profile, the layout is estimated from the reference device until the board is calibrated.
+     *
+     * @return The board layout
+     */
+    private BoardLayout loadLayout() {
+        dumpScreen();
+        final Frame frame = getDevice().getFrame();
+        final BoardProfile profile = BoardProfile.load(frame.getWidth(), frame.getHeight());
+        if (profile != null) {
+            return new BoardLayout(profile, true, mSize);
+        }
+        System.out.println("No board profile for " + frame.getWidth() + "x" + frame.getHeight() + " yet");
+        return new BoardLayout(BoardProfile.estimate(frame.getWidth(), frame.getHeight()), false, mSize);
+    }
+
+    /**
+     * Detects the board on the screen, stores it as the profile of the device's screen resolution and switches to its
+     * layout. When no board is found, the estimated layout is kept and calibrating is tried again next game.
+     */
+    private void calibrate() {
+        TimeMonitor.start("Calibrating board");
+        dumpScreen();
+        final BoardProfile profile;
+        try {
+            profile = BoardProfile.calibrate(getDevice().getFrame(), mSize);
+        } catch (final RuntimeException ex) {
+            System.out.println("Calibrating failed, using the estimated board: " + ex.getMessage());
+            return;
+        } finally {
+            TimeMonitor.stop("Calibrating board");
+        }
+        profile.save();
+        mLayout.set(new BoardLayout(profile, true, mSize));
+        System.out.println("Calibrated " + profile);
+
+        // The phases are probed at the board's coordinates, so start over with the calibrated ones and learn the menu
+        // again when the next game is started from it
+        mPhaseDetector.remove();
+    }
+
+    /**
+     * Checks that the board on screen matches the solved state and re-taps the tiles that don't, for instance because
+     * a tap was dropped. When most tiles differ, the board was already replaced by the solved animation or the menu,
+     * so nothing is tapped. The share of mismatched tiles in the first check of a shown board is reported per device.
+     *
+     * @param state
+     *            The solved board state
+     */
+    private void verifyBoard(final BoardState state) {
+        for (int round = 0; round < MAX_VERIFY_ROUNDS; ++round) {
+            wait(VERIFY_DELAY);
+            dumpScreen(getLayout().getTop(), getLayout().getBottom(), null);
+
+            // Tap each mismatched tile from what the screen shows to what the state holds
+            final Frame frame = getFrame();
+            final TileClassifier classifier = new TileClassifier(getLayout());
+            final List<BoardCoord> differing = new ArrayList<>();
+            final List<Tile> shown = new ArrayList<>();
+            for (int y = 0; y < mSize; ++y) {
+                for (int x = 0; x < mSize; ++x) {
+                    final BoardCoord coord = new BoardCoord(x, y);
+                    final Tile onScreen = classifier.classify(frame, coord);
+                    if (onScreen != state.getTile(coord)) {
+                        differing.add(coord);
+                        shown.add(onScreen);
+                    }
+                }
+            }
+            final int mismatches = differing.size();
+            if (mismatches > mSize * mSize * MAX_MISMATCH_SHARE) {
+                System.out.println("Board no longer shown, " + mismatches + " tiles differ");
+                if (round == 0) {
+                    final long unverified = TimeMonitor.getMeasurement("Unverified boards") + 1;
+                    TimeMonitor.setMeasurement("Unverified boards", unverified);
+                }
+                return;
+            }
+
+            final List<ScreenCoord> taps = new ArrayList<>();
+            for (int i = 0; i < mismatches; ++i) {
+                final BoardCoord coord = differing.get(i);
+                System.out.println("Mismatch " + coord + ": " + shown.get(i) + " -> " + state.getTile(coord));
+                taps.addAll(getTaps(shown.get(i), coord, state.getTile(coord)));
+            }
+
+            if (round == 0) {
+                final String serial = getDevice().getSerial();
+                final String suffix = serial != null ? " " + serial : "";
+                final long verified = TimeMonitor.getMeasurement("Verified tiles" + suffix) + mSize * mSize;
+                final long mismatched = TimeMonitor.getMeasurement("Mismatched tiles" + suffix) + mismatches;
+                TimeMonitor.setMeasurement("Verified tiles" + suffix, verified);
+                TimeMonitor.setMeasurement("Mismatched tiles" + suffix, mismatched);
+                TimeMonitor.setMeasurement("Mismatches per 10000 tiles" + suffix, mismatched * 10000 / verified);
+            }
+            if (mismatches == 0) {
+                return;
+            }
+            tapAll(taps, TAP_GAP);
+        }
+        System.out.println("Board still differs after " + MAX_VERIFY_ROUNDS + " corrections");
+    }
+
+    /**
+     * Waits for the background captures to show a change around tapped tiles and reports how long that took. Taps that
+     * aren't confirmed in time are reported as possibly lost.
+     *
+     * @param taps
+     *            The screen coordinates that were tapped
+     */
+    private void confirmTaps(final List<ScreenCoord> taps) {
+        final Rectangle region = new Rectangle(taps.get(0).x, taps.get(0).y, 1, 1);
+        for (final ScreenCoord tap : taps) {
+            region.add(tap.x, tap.y);
+        }
+        region.grow(getLayout().getTileSize() / 2, getLayout().getTileSize() / 2);
+
+        final long start = System.nanoTime();
+        final CaptureService.Capture capture = getDevice().getCaptureService().awaitChange(region,
+                TAP_CONFIRM_TIMEOUT);
+        if (capture == null) {
+            System.out.println("Taps not confirmed within " + TAP_CONFIRM_TIMEOUT + "ms");
+            TimeMonitor.setMeasurement("Unconfirmed tap batches",
+                    TimeMonitor.getMeasurement("Unconfirmed tap batches") + 1);
+            return;
+        }
+        capture.release();
+
+        final long confirmMs = (System.nanoTime() - start) / 1000000;
+        TimeMonitor.setMeasurement("Max tap confirmation (ms)",
+                Math.max(TimeMonitor.getMeasurement("Max tap confirmation (ms)"), confirmMs));
     }
 
     /**
@@ -150,22 +415,56 @@ public abstract class Q42Game extends Automaton {
      *            The new tile
      */
     public void setTile(final BoardState state, final BoardCoord coord, final Tile tile) {
-        final Tile currentTile = state.getTile(coord);
+        // Input the taps on the device
+        for (final ScreenCoord tap : getTaps(state, coord, tile)) {
+            tap(tap);
+        }
 
+        // Update the state
+        state.setTile(coord, tile);
+    }
+
+    /**
+     * Determines the taps needed to change a tile from its value in the state to a new value.
+     *
+     * @param state
+     *            The current board state
+     * @param coord
+     *            The coordinate of the tile to change
+     * @param tile
+     *            The new tile
+     *
+     * @return The screen coordinates to tap, in order
+     */
+    protected List<ScreenCoord> getTaps(final BoardState state, final BoardCoord coord, final Tile tile) {
+        return getTaps(state.getTile(coord), coord, tile);
+    }
+
+    /**
+     * Determines the taps needed to change a tile from one value to another.
+     *
+     * @param currentTile
+     *            The current value of the tile
+     * @param coord
+     *            The coordinate of the tile to change
+     * @param tile
+     *            The new tile
+     *
+     * @return The screen coordinates to tap, in order
+     */
+    protected List<ScreenCoord> getTaps(final Tile currentTile, final BoardCoord coord, final Tile tile) {
         // Determine the number of taps from the current tile
         int numTaps = getTileTapPosition(tile) - getTileTapPosition(currentTile);
         if (numTaps < 0) {
             numTaps += getTileTapOrder().length;
         }
 
-        // Input the taps on the device
         final ScreenCoord tileCoord = getTileCoord(coord);
+        final List<ScreenCoord> taps = new ArrayList<>(numTaps);
         for (int i = 0; i < numTaps; ++i) {
-            tap(tileCoord);
+            taps.add(tileCoord);
         }
-
-        // Update the state
-        state.setTile(coord, tile);
+        return taps;
     }
 
     /**
@@ -187,7 +486,8 @@ public abstract class Q42Game extends Automaton {
     }
 
     /**
-     * @return The screen coordinate for the button to start a new game
+     * @return The screen coordinate for the button to start a new game on the reference device, see
+     *         {@link BoardProfile#REFERENCE}
      */
     protected abstract ScreenCoord getStartButtonScreenCoord();
 
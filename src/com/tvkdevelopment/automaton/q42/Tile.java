@@ -2,6 +2,8 @@ package com.tvkdevelopment.automaton.q42;
 
 import java.awt.Color;
 
+import com.tvkdevelopment.automaton.ImageKernels;
+
 /**
  * A collection of possible tile values.
  */
@@ -20,9 +22,21 @@ public enum Tile {
      * @return The tile value
      */
     public static Tile fromRgb(final Color colour) {
-        if (colour.getRed() > 150) {
+        return fromRgb(colour.getRGB());
+    }
+
+    /**
+     * Retrieves the appropriate tile value from a packed pixel
+     *
+     * @param pixel
+     *            The packed ARGB pixel in a tile
+     *
+     * @return The tile value
+     */
+    public static Tile fromRgb(final int pixel) {
+        if (ImageKernels.exceeds(pixel, ImageKernels.RED, 150)) {
             return RED;
-        } else if (colour.getBlue() > 150) {
+        } else if (ImageKernels.exceeds(pixel, ImageKernels.BLUE, 150)) {
             return BLUE;
         } else {
             return GREY;
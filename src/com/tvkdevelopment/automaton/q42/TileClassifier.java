@@ -0,0 +1,141 @@
+package com.tvkdevelopment.automaton.q42;
+
+import java.util.stream.IntStream;
+
+import com.tvkdevelopment.automaton.Frame;
+
+/**
+ * Reads the tiles of a board from a frame. Rather than classifying the single pixel at each tile coordinate, a small
+ * patch around it is averaged, so anti-aliasing or noise at one pixel doesn't flip a tile. The average is looked up in
+ * a table of quantised colours that was filled by {@link Tile#fromRgb(int)} once, which leaves a few shifts and an
+ * array access per tile. The table classifies the centre of each bucket, so colours within half a bucket of a
+ * threshold may be read as the neighbouring tile.
+ */
+public class TileClassifier {
+
+    /** The amount of bits kept of each channel when looking up a colour */
+    private static final int CHANNEL_BITS = 5;
+    /** The distance in pixels from a tile coordinate to the edge of the patch averaged around it */
+    private static final int PATCH_RADIUS = 2;
+    /** The amount of pixels in a patch */
+    private static final int PATCH_PIXELS = (PATCH_RADIUS * 2 + 1) * (PATCH_RADIUS * 2 + 1);
+
+    /** The tiles indexed by quantised red, green and blue */
+    private static final Tile[] LOOKUP = new Tile[1 << CHANNEL_BITS * 3];
+
+    static {
+        // Classify the centre colour of every quantised bucket
+        final int shift = 8 - CHANNEL_BITS;
+        final int half = 1 << shift >> 1;
+        for (int i = 0; i < LOOKUP.length; ++i) {
+            final int red = (i >> CHANNEL_BITS * 2) << shift | half;
+            final int green = (i >> CHANNEL_BITS & (1 << CHANNEL_BITS) - 1) << shift | half;
+            final int blue = (i & (1 << CHANNEL_BITS) - 1) << shift | half;
+            LOOKUP[i] = Tile.fromRgb(red << 16 | green << 8 | blue);
+        }
+    }
+
+    /** The layout of the board on the screen */
+    private final BoardLayout mLayout;
+    /** The amount of tiles in one line on the board */
+    private final int mSize;
+
+    /**
+     * Creates a classifier for a board layout.
+     *
+     * @param layout
+     *            The layout of the board on the screen
+     */
+    public TileClassifier(final BoardLayout layout) {
+        mLayout = layout;
+        mSize = layout.getSize();
+    }
+
+    /**
+     * Reads all tiles of the board.
+     *
+     * @param frame
+     *            The frame showing the board
+     * @param state
+     *            The board state to set the tiles of
+     * @param parallel
+     *            Whether or not to read the rows of tiles in parallel
+     */
+    public void classifyBoard(final Frame frame, final BoardState state, final boolean parallel) {
+        final IntStream rows = IntStream.range(0, mSize);
+        (parallel ? rows.parallel() : rows).forEach(y -> classifyRow(frame, state, y));
+    }
+
+    /**
+     * Reads the rows of tiles whose patches were completed by a band of screen rows, for use while a capture is
+     * arriving. The rows before the band must have arrived before.
+     *
+     * @param frame
+     *            The frame holding the screen rows
+     * @param state
+     *            The board state to set the tiles of
+     * @param fromRow
+     *            The first screen row that arrived
+     * @param toRow
+     *            The screen row after the last one that arrived
+     */
+    public void classifyRows(final Frame frame, final BoardState state, final int fromRow, final int toRow) {
+        for (int y = 0; y < mSize; ++y) {
+            final int patchBottom = mLayout.getTileCoord(new BoardCoord(0, y)).y + PATCH_RADIUS;
+            if (patchBottom >= fromRow && patchBottom < toRow) {
+                classifyRow(frame, state, y);
+            }
+        }
+    }
+
+    /**
+     * Reads a single tile.
+     *
+     * @param frame
+     *            The frame showing the board
+     * @param coord
+     *            The coordinate of the tile
+     *
+     * @return The tile
+     */
+    public Tile classify(final Frame frame, final BoardCoord coord) {
+        final int[] pixels = frame.getPixels();
+        final int width = frame.getWidth();
+        final int centre = mLayout.getTileCoord(coord).y * width + mLayout.getTileCoord(coord).x;
+
+        int red = 0;
+        int green = 0;
+        int blue = 0;
+        for (int dy = -PATCH_RADIUS; dy <= PATCH_RADIUS; ++dy) {
+            final int offset = centre + dy * width;
+            for (int dx = -PATCH_RADIUS; dx <= PATCH_RADIUS; ++dx) {
+                final int pixel = pixels[offset + dx];
+                red += pixel >> 16 & 0xff;
+                green += pixel >> 8 & 0xff;
+                blue += pixel & 0xff;
+            }
+        }
+
+        final int shift = 8 - CHANNEL_BITS;
+        return LOOKUP[(red / PATCH_PIXELS >> shift) << CHANNEL_BITS * 2
+                | (green / PATCH_PIXELS >> shift) << CHANNEL_BITS | blue / PATCH_PIXELS >> shift];
+    }
+
+    /**
+     * Reads a row of tiles.
+     *
+     * @param frame
+     *            The frame showing the board
+     * @param state
+     *            The board state to set the tiles of
+     * @param y
+     *            The row of tiles to read
+     */
+    private void classifyRow(final Frame frame, final BoardState state, final int y) {
+        for (int x = 0; x < mSize; ++x) {
+            final BoardCoord coord = new BoardCoord(x, y);
+            state.setTile(coord, classify(frame, coord));
+        }
+    }
+
+}
@@ -0,0 +1,229 @@
+package com.tvkdevelopment.automaton.q42.ohno;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import com.tvkdevelopment.automaton.Frame;
+import com.tvkdevelopment.automaton.ImageKernels;
+
+/**
+ * Compares ways of matching a sampled number to the reference images, per tile: decoding a {@link Color} per template
+ * pixel with a floating point square as {@link Ohno#readNumber} used to, a full integer sum of squared differences
+ * against the red channels, and {@link DigitTemplates} at full and half resolution. The samples are the reference
+ * images themselves with noise and a brightness shift, as a number on a lighter or darker tile would be read. Reports
+ * the time per tile, the amount of misread samples and the confidence of the templates. Run it from the repository's
+ * root so the reference numbers are found.
+ */
+public class DigitBenchmark {
+
+    /** The amount of digits */
+    private static final int DIGITS = 9;
+    /** The amount of samples in one line of a reference image */
+    private static final int SAMPLES = 10;
+    /** The amount of noisy samples per digit */
+    private static final int VARIANTS = 50;
+    /** The largest change of a sampled value by noise */
+    private static final int NOISE = 40;
+    /** The largest change of all of a sample's values by brightness */
+    private static final int BRIGHTNESS = 80;
+    /** The amount of warm-up rounds over all samples per path */
+    private static final int WARMUP = 500;
+    /** The amount of measured rounds over all samples per path */
+    private static final int ITERATIONS = 1000;
+
+    /** The reference images */
+    private static final BufferedImage[] sImages = new BufferedImage[DIGITS];
+    /** The red channels of the reference images, row by row */
+    private static final int[][] sReds = new int[DIGITS][SAMPLES * SAMPLES];
+    /** The noisy samples, row by row */
+    private static final int[][] sSamples = new int[DIGITS * VARIANTS][];
+    /** The digit shown by every sample */
+    private static final int[] sTruth = new int[DIGITS * VARIANTS];
+    /** A sink for results, so the matches aren't optimised away */
+    private static long sSink;
+
+    public static void main(final String[] args) throws IOException {
+        for (int n = 0; n < DIGITS; ++n) {
+            sImages[n] = ImageIO.read(new File("numbers/" + (n + 1) + ".png"));
+            for (int y = 0; y < SAMPLES; ++y) {
+                for (int x = 0; x < SAMPLES; ++x) {
+                    sReds[n][y * SAMPLES + x] = Frame.red(sImages[n].getRGB(x, y));
+                }
+            }
+        }
+        final Random random = new Random(42);
+        for (int i = 0; i < sSamples.length; ++i) {
+            final int digit = i / VARIANTS;
+            final int brightness = random.nextInt(BRIGHTNESS * 2 + 1) - BRIGHTNESS;
+            sTruth[i] = digit + 1;
+            sSamples[i] = new int[SAMPLES * SAMPLES];
+            for (int j = 0; j < sSamples[i].length; ++j) {
+                final int value = sReds[digit][j] + brightness + random.nextInt(NOISE * 2 + 1) - NOISE;
+                sSamples[i][j] = Math.max(0, Math.min(255, value));
+            }
+        }
+        final DigitTemplates full = new DigitTemplates(sImages, SAMPLES);
+        final DigitTemplates half = new DigitTemplates(sImages, SAMPLES / 2);
+
+        System.out.format("%d samples, %d per digit%n", sSamples.length, VARIANTS);
+        measure("Color and pow", DigitBenchmark::matchWithColours, sSamples, null);
+        measure("Integer SSD", DigitBenchmark::matchWithSsd, sSamples, null);
+        measure("Templates 10x10", sample -> full.match(sample).digit, sSamples, full);
+        final int[][] halfSamples = new int[sSamples.length][];
+        for (int i = 0; i < sSamples.length; ++i) {
+            halfSamples[i] = downsample(sSamples[i], half.getSamples());
+        }
+        measure("Templates 5x5", sample -> half.match(sample).digit, halfSamples, half);
+        System.out.println("Checksum " + sSink);
+    }
+
+    /**
+     * A way of matching a sample to a digit.
+     */
+    private interface Matcher {
+
+        /**
+         * @param sample
+         *            The sampled red channel, row by row, which may be changed
+         *
+         * @return The matched digit
+         */
+        int match(int[] sample);
+
+    }
+
+    /**
+     * Measures a way of matching and prints the time per tile and the amount of misread samples.
+     *
+     * @param name
+     *            The name of the way of matching
+     * @param matcher
+     *            The way of matching
+     * @param samples
+     *            The samples in the resolution that the matcher expects, in the order of {@link #sTruth}
+     * @param templates
+     *            The templates to report the confidence of, or null
+     */
+    private static void measure(final String name, final Matcher matcher, final int[][] samples,
+            final DigitTemplates templates) {
+        int errors = 0;
+        double minConfidence = 1;
+        double totalConfidence = 0;
+        for (int i = 0; i < samples.length; ++i) {
+            if (matcher.match(samples[i].clone()) != sTruth[i]) {
+                ++errors;
+            }
+            if (templates != null) {
+                final double confidence = templates.match(samples[i].clone()).getConfidence();
+                minConfidence = Math.min(minConfidence, confidence);
+                totalConfidence += confidence;
+            }
+        }
+
+        for (int i = 0; i < WARMUP; ++i) {
+            run(matcher, samples);
+        }
+        long nanos = 0;
+        for (int i = 0; i < ITERATIONS; ++i) {
+            nanos += run(matcher, samples);
+        }
+
+        System.out.format("%-16s %8.0fns per tile %4d misread", name, (double) nanos / ITERATIONS / samples.length,
+                errors);
+        if (templates != null) {
+            System.out.format("   confidence %.0f%% average, %.0f%% lowest", totalConfidence / samples.length * 100,
+                    minConfidence * 100);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Matches every sample once.
+     *
+     * @param matcher
+     *            The way of matching
+     * @param samples
+     *            The samples to match, which are copied first as the templates change them in place
+     *
+     * @return The time spent matching in nanoseconds, excluding the copying
+     */
+    private static long run(final Matcher matcher, final int[][] samples) {
+        final int[][] copies = new int[samples.length][];
+        for (int i = 0; i < samples.length; ++i) {
+            copies[i] = samples[i].clone();
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < copies.length; ++i) {
+            sSink += matcher.match(copies[i]);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Matches a sample the way {@link Ohno#readNumber} did before the reference images were compiled, decoding a
+     * colour for every template pixel.
+     */
+    private static int matchWithColours(final int[] sample) {
+        final int[] errors = new int[DIGITS];
+        for (int y = 0; y < SAMPLES; ++y) {
+            for (int x = 0; x < SAMPLES; ++x) {
+                for (int n = 0; n < DIGITS; ++n) {
+                    errors[n] += Math.pow(sample[y * SAMPLES + x] - new Color(sImages[n].getRGB(x, y)).getRed(), 2);
+                }
+            }
+        }
+        return best(errors);
+    }
+
+    /**
+     * Matches a sample the way {@link Ohno#readNumber} did before {@link DigitTemplates}, with a full sum of squared
+     * differences against every reference image.
+     */
+    private static int matchWithSsd(final int[] sample) {
+        final int[] errors = new int[DIGITS];
+        for (int n = 0; n < DIGITS; ++n) {
+            errors[n] = (int) ImageKernels.sumSquaredDifferences(sample, 0, sReds[n], 0, sample.length);
+        }
+        return best(errors);
+    }
+
+    /**
+     * @return The digit with the smallest error
+     */
+    private static int best(final int[] errors) {
+        int best = 0;
+        for (int n = 1; n < DIGITS; ++n) {
+            if (errors[n] < errors[best]) {
+                best = n;
+            }
+        }
+        return best + 1;
+    }
+
+    /**
+     * Picks values from a sample the way {@link Ohno#readNumber} samples a number with fewer samples per line.
+     *
+     * @param sample
+     *            The full sample, row by row
+     * @param samples
+     *            The amount of samples in one line of the result
+     *
+     * @return The picked values, row by row
+     */
+    private static int[] downsample(final int[] sample, final int samples) {
+        final int[] picked = new int[samples * samples];
+        for (int y = 0; y < samples; ++y) {
+            for (int x = 0; x < samples; ++x) {
+                picked[y * samples + x] = sample[y * (SAMPLES - 1) / (samples - 1) * SAMPLES
+                        + x * (SAMPLES - 1) / (samples - 1)];
+            }
+        }
+        return picked;
+    }
+
+}
@@ -0,0 +1,348 @@
+package com.tvkdevelopment.automaton.q42.ohno;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.List;
+
+import com.tvkdevelopment.automaton.Frame;
+import com.tvkdevelopment.automaton.ImageKernels;
+import com.tvkdevelopment.automaton.q42.BoardCoord;
+import com.tvkdevelopment.automaton.q42.BoardLayout;
+
+/**
+ * Finds the numbers on a board in one pass over the frame. Only the middle band of the searched cells is thresholded,
+ * sampling every fourth pixel of every fourth row as the strokes of a number are about twice as thick. White samples
+ * are gathered into horizontal runs, and runs that touch across rows, diagonally included, are joined into components.
+ * The largest component within a cell is its number, so stray white pixels don't widen its box. The box is then
+ * widened by the white pixels at each side that the sampling skipped. The edges of each cell are left out, so a number
+ * can never extend into a neighbouring tile.
+ */
+public class DigitLocator {
+
+    /** The share of a tile's size at each edge of a cell that's left out of the search */
+    private static final double CELL_MARGIN = 0.2;
+    /** The red channel above which a pixel of a blue tile is white, as blending the white with blue lowers the red */
+    private static final int WHITE_RED = 254;
+    /** The distance in pixels between samples, both within a row and between rows */
+    private static final int STEP = 4;
+    /** The amount of runs expected per sampled row of a cell, which is what there's room for at first */
+    private static final int RUNS_PER_ROW = 2;
+
+    /** The amount of tiles in one line on the board */
+    private final int mSize;
+    /** The size of a tile in pixels */
+    private final int mTileSize;
+    /** The distance in pixels from the edge of a cell to where the search starts */
+    private final int mMargin;
+    /** The left of the board on the screen */
+    private final int mLeft;
+    /** The top of the board on the screen */
+    private final int mTop;
+
+    /** The x coordinate of the first sample of every run */
+    private int[] mRunStarts;
+    /** The x coordinate one step after the last sample of every run */
+    private int[] mRunEnds;
+    /** The y coordinate of every run */
+    private int[] mRunRows;
+    /** The run that every run was joined to, leading to the run that represents the component */
+    private int[] mParents;
+    /** The amount of runs found */
+    private int mRunCount;
+
+    /**
+     * Creates a locator for a board layout.
+     *
+     * @param layout
+     *            The layout of the board on the screen
+     */
+    public DigitLocator(final BoardLayout layout) {
+        mSize = layout.getSize();
+        mTileSize = layout.getTileSize();
+        mMargin = (int) (mTileSize * CELL_MARGIN);
+        mLeft = layout.getProfile().topLeft.x;
+        mTop = layout.getProfile().topLeft.y;
+    }
+
+    /**
+     * Finds the numbers in some cells of the board.
+     *
+     * @param frame
+     *            The frame showing the board
+     * @param coords
+     *            The coordinates on the board of the cells to search, which must be blue tiles
+     *
+     * @return The box around the white pixels of every cell, row by row, or null for cells without white pixels or
+     *         that weren't searched
+     */
+    public Rectangle[] locate(final Frame frame, final List<BoardCoord> coords) {
+        final boolean[] cells = new boolean[mSize * mSize];
+        for (final BoardCoord coord : coords) {
+            cells[coord.y * mSize + coord.x] = true;
+        }
+        return locate(frame, cells);
+    }
+
+    /**
+     * Finds the number in a single cell of the board.
+     *
+     * @param frame
+     *            The frame showing the board
+     * @param coord
+     *            The coordinates on the board of the cell, which must be a blue tile
+     *
+     * @return The box around the white pixels of the cell, or null if it has none
+     */
+    public Rectangle locate(final Frame frame, final BoardCoord coord) {
+        final boolean[] cells = new boolean[mSize * mSize];
+        cells[coord.y * mSize + coord.x] = true;
+        return locate(frame, cells)[coord.y * mSize + coord.x];
+    }
+
+    /**
+     * Finds the numbers in some cells of the board.
+     *
+     * @param frame
+     *            The frame showing the board
+     * @param cells
+     *            Whether or not to search every cell, row by row
+     *
+     * @return The box around the white pixels of every cell, row by row, or null for cells without white pixels or
+     *         that weren't searched
+     */
+    private Rectangle[] locate(final Frame frame, final boolean[] cells) {
+        // Make room for the runs that are expected in the searched cells
+        int searched = 0;
+        for (final boolean cell : cells) {
+            if (cell) {
+                ++searched;
+            }
+        }
+        final int runs = Math.max(1, searched * ((mTileSize - 2 * mMargin) / STEP + 1) * RUNS_PER_ROW);
+        if (mRunStarts == null || mRunStarts.length < runs) {
+            mRunStarts = new int[runs];
+            mRunEnds = new int[runs];
+            mRunRows = new int[runs];
+            mParents = new int[runs];
+        }
+        mRunCount = 0;
+        final int[] pixels = frame.getPixels();
+        final int width = frame.getWidth();
+
+        // Gather the runs of white samples row by row, joining them to the touching runs of the previous row
+        int previousRowStart = 0;
+        for (int cellY = 0; cellY < mSize; ++cellY) {
+            if (!hasCells(cells, cellY)) {
+                continue;
+            }
+            final int top = mTop + cellY * mTileSize + mMargin;
+            final int bottom = mTop + (cellY + 1) * mTileSize - mMargin;
+            for (int y = top; y < bottom; y += STEP) {
+                final int rowStart = mRunCount;
+                final int row = y * width;
+                for (int cellX = 0; cellX < mSize; ++cellX) {
+                    if (!cells[cellY * mSize + cellX]) {
+                        continue;
+                    }
+                    final int right = row + mLeft + (cellX + 1) * mTileSize - mMargin;
+                    int i = row + mLeft + cellX * mTileSize + mMargin;
+                    while (i < right) {
+                        // Skip to the next white sample and then to the sample after it that isn't white
+                        while (i < right && !ImageKernels.exceeds(pixels[i], ImageKernels.RED, WHITE_RED)) {
+                            i += STEP;
+                        }
+                        final int runStart = i;
+                        while (i < right && ImageKernels.exceeds(pixels[i], ImageKernels.RED, WHITE_RED)) {
+                            i += STEP;
+                        }
+                        if (i > runStart) {
+                            addRun(runStart - row, i - row, y);
+                        }
+                    }
+                }
+                if (y > top) {
+                    joinRuns(previousRowStart, rowStart, mRunCount);
+                }
+                previousRowStart = rowStart;
+            }
+        }
+
+        // Total the samples and grow the box of each component by its runs
+        final int[] samples = new int[mRunCount];
+        final int[] minX = new int[mRunCount];
+        final int[] maxX = new int[mRunCount];
+        final int[] maxY = new int[mRunCount];
+        for (int run = 0; run < mRunCount; ++run) {
+            final int root = find(run);
+            if (root == run) {
+                minX[root] = mRunStarts[run];
+            }
+            samples[root] += (mRunEnds[run] - mRunStarts[run]) / STEP;
+            minX[root] = Math.min(minX[root], mRunStarts[run]);
+            maxX[root] = Math.max(maxX[root], mRunEnds[run]);
+            maxY[root] = mRunRows[run] + STEP;
+        }
+
+        // Pick the largest component of each cell, each represented by its first run
+        final int[] largest = new int[cells.length];
+        Arrays.fill(largest, -1);
+        for (int root = 0; root < mRunCount; ++root) {
+            if (samples[root] > 0) {
+                final int cell = (mRunRows[root] - mTop) / mTileSize * mSize + (mRunStarts[root] - mLeft) / mTileSize;
+                if (largest[cell] == -1 || samples[root] > samples[largest[cell]]) {
+                    largest[cell] = root;
+                }
+            }
+        }
+
+        final Rectangle[] boxes = new Rectangle[cells.length];
+        for (int cell = 0; cell < cells.length; ++cell) {
+            final int root = largest[cell];
+            if (root != -1) {
+                boxes[cell] = refine(frame, cell, minX[root], mRunRows[root], maxX[root], maxY[root]);
+            }
+        }
+        return boxes;
+    }
+
+    /**
+     * Checks if a row of the board has cells to search.
+     *
+     * @param cells
+     *            Whether or not to search every cell, row by row
+     * @param cellY
+     *            The row of the board
+     *
+     * @return True iff at least one cell in the row is searched
+     */
+    private boolean hasCells(final boolean[] cells, final int cellY) {
+        for (int cellX = 0; cellX < mSize; ++cellX) {
+            if (cells[cellY * mSize + cellX]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Widens the box of a component by the pixels at each side that were skipped while sampling, where they're white
+     * and within the searched part of the cell.
+     *
+     * @param frame
+     *            The frame showing the board
+     * @param cell
+     *            The index of the cell, row by row
+     * @param sampledLeft
+     *            The x coordinate of the leftmost sample of the component
+     * @param sampledTop
+     *            The y coordinate of the topmost sample of the component
+     * @param sampledRight
+     *            The x coordinate one step after the rightmost sample of the component
+     * @param sampledBottom
+     *            The y coordinate one step after the bottommost sample of the component
+     *
+     * @return The box around the white pixels of the component
+     */
+    private Rectangle refine(final Frame frame, final int cell, final int sampledLeft, final int sampledTop,
+            final int sampledRight, final int sampledBottom) {
+        final int cellLeft = mLeft + cell % mSize * mTileSize + mMargin;
+        final int cellTop = mTop + cell / mSize * mTileSize + mMargin;
+        final int cellRight = mLeft + (cell % mSize + 1) * mTileSize - mMargin;
+        final int cellBottom = mTop + (cell / mSize + 1) * mTileSize - mMargin;
+
+        // The last sampled column and row are followed by skipped ones that may or may not be white
+        int right = Math.min(sampledRight, cellRight);
+        while (right > sampledRight - STEP + 1
+                && frame.findInColumn(right - 1, sampledTop, sampledBottom, ImageKernels.RED, WHITE_RED) == -1) {
+            --right;
+        }
+        int bottom = Math.min(sampledBottom, cellBottom);
+        while (bottom > sampledBottom - STEP + 1
+                && frame.findInRow(bottom - 1, sampledLeft, right, ImageKernels.RED, WHITE_RED) == -1) {
+            --bottom;
+        }
+
+        // The first sampled column and row are preceded by skipped ones that may be white
+        int left = sampledLeft;
+        while (left > Math.max(cellLeft, sampledLeft - STEP + 1)
+                && frame.findInColumn(left - 1, sampledTop, bottom, ImageKernels.RED, WHITE_RED) != -1) {
+            --left;
+        }
+        int top = sampledTop;
+        while (top > Math.max(cellTop, sampledTop - STEP + 1)
+                && frame.findInRow(top - 1, left, right, ImageKernels.RED, WHITE_RED) != -1) {
+            --top;
+        }
+        return new Rectangle(left, top, right - left, bottom - top);
+    }
+
+    /**
+     * Stores a run of white samples as a component of its own.
+     *
+     * @param start
+     *            The x coordinate of the first sample
+     * @param end
+     *            The x coordinate one step after the last sample
+     * @param y
+     *            The y coordinate of the run
+     */
+    private void addRun(final int start, final int end, final int y) {
+        if (mRunCount == mRunStarts.length) {
+            mRunStarts = Arrays.copyOf(mRunStarts, mRunCount * 2);
+            mRunEnds = Arrays.copyOf(mRunEnds, mRunCount * 2);
+            mRunRows = Arrays.copyOf(mRunRows, mRunCount * 2);
+            mParents = Arrays.copyOf(mParents, mRunCount * 2);
+        }
+        mRunStarts[mRunCount] = start;
+        mRunEnds[mRunCount] = end;
+        mRunRows[mRunCount] = y;
+        mParents[mRunCount] = mRunCount;
+        ++mRunCount;
+    }
+
+    /**
+     * Joins the components of the runs of a row to those of the runs they touch in the sampled row above. Both rows'
+     * runs are ordered from left to right.
+     *
+     * @param previousStart
+     *            The first run of the row above
+     * @param start
+     *            The first run of the row, directly after the last run of the row above
+     * @param end
+     *            The run after the last run of the row
+     */
+    private void joinRuns(final int previousStart, final int start, final int end) {
+        int previous = previousStart;
+        for (int run = start; run < end; ++run) {
+            // Skip the runs above that end before this one starts, diagonal neighbours included
+            while (previous < start && mRunEnds[previous] < mRunStarts[run]) {
+                ++previous;
+            }
+            for (int above = previous; above < start && mRunStarts[above] <= mRunEnds[run]; ++above) {
+                final int a = find(above);
+                final int b = find(run);
+                if (a != b) {
+                    mParents[Math.max(a, b)] = Math.min(a, b);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the run that represents the component of a run, shortening the path to it along the way.
+     *
+     * @param run
+     *            The run
+     *
+     * @return The run representing its component, which is the component's first run
+     */
+    private int find(final int run) {
+        int root = run;
+        while (mParents[root] != root) {
+            mParents[root] = mParents[mParents[root]];
+            root = mParents[root];
+        }
+        return root;
+    }
+
+}
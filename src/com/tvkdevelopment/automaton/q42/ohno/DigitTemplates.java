@@ -0,0 +1,205 @@
+package com.tvkdevelopment.automaton.q42.ohno;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import com.tvkdevelopment.automaton.Frame;
+import com.tvkdevelopment.automaton.ImageKernels;
+
+/**
+ * Reference images of digits compiled for matching. The red channels of the images are reduced once to a grid of
+ * samples, averaging blocks of pixels when the grid is smaller than the images, and have their mean subtracted so that
+ * a brighter or darker sample still matches its digit. Matching sums the squared differences row by row and abandons
+ * a template as soon as its sum can no longer beat the runner-up, which keeps the best and runner-up errors exact so
+ * the margin between them can serve as the confidence.
+ */
+public class DigitTemplates {
+
+    /** The amount of rows summed between checks whether a template can still beat the runner-up */
+    private static final int PRUNE_ROWS = 3;
+
+    /** The amount of digits */
+    private final int mCount;
+    /** The amount of samples in one line of a template */
+    private final int mSamples;
+    /** The amount of samples in a template */
+    private final int mArea;
+    /** The mean-normalised samples of all templates, row by row and digit by digit */
+    private final int[] mTemplates;
+
+    /**
+     * Compiles templates from reference images.
+     *
+     * @param images
+     *            The reference image of every digit, starting at 1
+     * @param samples
+     *            The amount of samples in one line of a template, at most the width and height of the images
+     */
+    public DigitTemplates(final BufferedImage[] images, final int samples) {
+        mCount = images.length;
+        mSamples = samples;
+        mArea = samples * samples;
+        mTemplates = new int[mCount * mArea];
+
+        for (int n = 0; n < mCount; ++n) {
+            final BufferedImage image = images[n];
+            for (int y = 0; y < samples; ++y) {
+                for (int x = 0; x < samples; ++x) {
+                    // Average the block of pixels that this sample covers
+                    final int left = x * image.getWidth() / samples;
+                    final int right = (x + 1) * image.getWidth() / samples;
+                    final int top = y * image.getHeight() / samples;
+                    final int bottom = (y + 1) * image.getHeight() / samples;
+                    int sum = 0;
+                    for (int imageY = top; imageY < bottom; ++imageY) {
+                        for (int imageX = left; imageX < right; ++imageX) {
+                            sum += Frame.red(image.getRGB(imageX, imageY));
+                        }
+                    }
+                    mTemplates[n * mArea + y * samples + x] = sum / ((right - left) * (bottom - top));
+                }
+            }
+            normalise(mTemplates, n * mArea, mArea);
+        }
+    }
+
+    /**
+     * Loads and compiles the reference images of a directory, named after their digits.
+     *
+     * @param directory
+     *            The directory holding the images 1.png and onwards
+     * @param count
+     *            The amount of digits to load
+     * @param samples
+     *            The amount of samples in one line of a template, at most the width and height of the images
+     *
+     * @return The compiled templates
+     */
+    public static DigitTemplates load(final String directory, final int count, final int samples) {
+        final BufferedImage[] images = new BufferedImage[count];
+        try {
+            for (int i = 0; i < count; ++i) {
+                images[i] = ImageIO.read(new File(directory, (i + 1) + ".png"));
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        return new DigitTemplates(images, samples);
+    }
+
+    /**
+     * @return The amount of samples in one line of a template, and so of the samples to match
+     */
+    public int getSamples() {
+        return mSamples;
+    }
+
+    /**
+     * Finds the digit whose template is closest to sampled values.
+     *
+     * @param sample
+     *            The sampled red channel, row by row, with {@link #getSamples()} values per line; its mean is
+     *            subtracted in place
+     *
+     * @return The best match and its confidence
+     */
+    public Match match(final int[] sample) {
+        final int[] templates = mTemplates;
+        final int samples = mSamples;
+        final int area = mArea;
+        final int chunk = samples * PRUNE_ROWS;
+        normalise(sample, 0, area);
+
+        int best = -1;
+        long bestError = Long.MAX_VALUE;
+        long runnerUpError = Long.MAX_VALUE;
+        for (int n = 0; n < mCount; ++n) {
+            // Sum the squared differences a few rows at a time, giving up once the runner-up is beaten
+            final int start = n * area;
+            long error = 0;
+            for (int i = 0; i < area && error < runnerUpError; i += chunk) {
+                error += ImageKernels.sumSquaredDifferences(sample, i, templates, start + i, Math.min(chunk, area - i));
+            }
+
+            if (error < bestError) {
+                runnerUpError = bestError;
+                bestError = error;
+                best = n;
+            } else if (error < runnerUpError) {
+                runnerUpError = error;
+            }
+        }
+        return new Match(best + 1, bestError, runnerUpError);
+    }
+
+    /**
+     * Subtracts the mean from a span of values.
+     *
+     * @param values
+     *            The values
+     * @param offset
+     *            The index of the first value
+     * @param length
+     *            The amount of values
+     */
+    private static void normalise(final int[] values, final int offset, final int length) {
+        int sum = 0;
+        for (int i = offset; i < offset + length; ++i) {
+            sum += values[i];
+        }
+        final int mean = sum / length;
+        for (int i = offset; i < offset + length; ++i) {
+            values[i] -= mean;
+        }
+    }
+
+    /**
+     * The digit that best matched a sample.
+     */
+    public static class Match {
+
+        /** The matched digit */
+        public final int digit;
+        /** The sum of squared differences to the matched digit's template */
+        public final long error;
+        /** The sum of squared differences to the second closest template */
+        public final long runnerUpError;
+
+        /**
+         * Creates a match.
+         *
+         * @param digit
+         *            The matched digit
+         * @param error
+         *            The sum of squared differences to the matched digit's template
+         * @param runnerUpError
+         *            The sum of squared differences to the second closest template
+         */
+        public Match(final int digit, final long error, final long runnerUpError) {
+            this.digit = digit;
+            this.error = error;
+            this.runnerUpError = runnerUpError;
+        }
+
+        /**
+         * @return The margin between the best and runner-up errors relative to the latter, from 0 when another digit
+         *         matched equally well to 1 when the sample equals the template
+         */
+        public double getConfidence() {
+            return runnerUpError == 0 ? 0 : (double) (runnerUpError - error) / runnerUpError;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return digit + " (error " + error + ", runner-up " + runnerUpError + ")";
+        }
+
+    }
+
+}
@@ -1,17 +1,19 @@
 package com.tvkdevelopment.automaton.q42.ohno;
 
-import java.awt.Color;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import java.util.Arrays;
+import java.awt.Rectangle;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
-import javax.imageio.ImageIO;
-
+import com.tvkdevelopment.automaton.Frame;
 import com.tvkdevelopment.automaton.ScreenCoord;
+import com.tvkdevelopment.automaton.TimeMonitor;
 import com.tvkdevelopment.automaton.q42.BoardCoord;
+import com.tvkdevelopment.automaton.q42.BoardLayout;
 import com.tvkdevelopment.automaton.q42.BoardState;
 import com.tvkdevelopment.automaton.q42.Q42Game;
 import com.tvkdevelopment.automaton.q42.Rule;
@@ -32,8 +34,14 @@ public class Ohno extends Q42Game {
     private static final Map<Integer, ScreenCoord> START_BUTTON_MAP = new HashMap<Integer, ScreenCoord>();
     /** The order in which tiles appear when tapping on them */
     private static final Tile[] TILE_TAP_ORDER = { Tile.GREY, Tile.BLUE, Tile.RED };
-    /** A set of cached images that can be used as a reference set for number images */
-    private static final BufferedImage[] NUMBERS = new BufferedImage[SIZE];
+    /** The amount of samples in one line of a number, matching the 10x10 reference images pixel for pixel */
+    private static final int NUMBER_SAMPLES = 10;
+    /** The reference number images that sampled numbers are compared to */
+    private static final DigitTemplates NUMBERS = DigitTemplates.load("numbers", SIZE, NUMBER_SAMPLES);
+    /** The lowest confidence of a recognised number before it's counted as unsure */
+    private static final double MIN_NUMBER_CONFIDENCE = 0.2;
+    /** Whether or not to read the numbers on the board in parallel */
+    private static final boolean PARALLEL_OCR = false;
     /** Whether or not to print info about the character recognition process */
     private static final boolean PRINT_CHARACTER_RECOGNITION = false;
 
@@ -45,15 +53,6 @@ public class Ohno extends Q42Game {
         START_BUTTON_MAP.put(7, new ScreenCoord(335, 1070));
         START_BUTTON_MAP.put(8, new ScreenCoord(535, 1070));
         START_BUTTON_MAP.put(9, new ScreenCoord(735, 1070));
-
-        // Read the image numbers for character recognition
-        try {
-            for (int i = 0; i < SIZE; ++i) {
-                NUMBERS[i] = ImageIO.read(new File("numbers/" + (i + 1) + ".png"));
-            }
-        } catch (final IOException ex) {
-            throw new RuntimeException(ex);
-        }
     }
 
     public static void main(final String[] args) {
@@ -76,89 +75,80 @@ public class Ohno extends Q42Game {
      * @return The number that was found at the given coordinates
      */
     public int readNumber(final BoardCoord coord) {
-        final ScreenCoord screenCoord = getTileCoord(coord);
-
-        // Get a rough idea of where the number is
-        final int approxSize = (int) (mTileSize * 0.45);
-        final ScreenCoord approxCenter = new ScreenCoord(screenCoord.x - mOffset + mTileSize / 2,
-                screenCoord.y - mOffset + mTileSize / 2);
-        final int searchLeftStart = approxCenter.x - approxSize / 2;
-
-        // Locate the top of the number
-        int top = approxCenter.y;
-        topSearch:
-        while (true) {
-            // Check if there's a white pixel on the current row
-            for (int i = 0; i <= approxSize; ++i) {
-                if (getColour(new ScreenCoord(searchLeftStart + i, top)).equals(Color.WHITE)) {
-                    // If there's a white pixel, the number hasn't ended yet
-                    --top;
-                    continue topSearch;
-                }
-            }
+        final Frame frame = getFrame();
+        return checkConfidence(matchNumber(frame, coord, new DigitLocator(getLayout()).locate(frame, coord)));
+    }
 
-            // No white pixel means the number ended
-            ++top;
-            break;
+    /**
+     * Reads numbers from a frame, locating them all in one pass on the current thread and then matching them either on
+     * the current thread or split over the threads of a pool.
+     *
+     * @param frame
+     *            The frame showing the board
+     * @param coords
+     *            The coordinates on the board of the numbers
+     * @param pool
+     *            The pool to read the numbers in, or null to read them on the current thread
+     *
+     * @return The numbers that were found, by their coordinates
+     */
+    public Map<BoardCoord, Integer> readNumbers(final Frame frame, final List<BoardCoord> coords,
+            final ForkJoinPool pool) {
+        // The layout belongs to the current thread's device, so the numbers are located before handing out the work
+        final BoardLayout layout = getLayout();
+        final Rectangle[] boxes = new DigitLocator(layout).locate(frame, coords);
+
+        // Match the numbers into a concurrent map, as the pool's threads add to it at the same time
+        final Map<BoardCoord, DigitTemplates.Match> matches = new ConcurrentHashMap<>();
+        final Stream<BoardCoord> stream = pool == null ? coords.stream() : coords.parallelStream();
+        final Runnable read = () -> stream.forEach(coord -> matches.put(coord,
+                matchNumber(frame, coord, boxes[coord.y * layout.getSize() + coord.x])));
+        if (pool == null) {
+            read.run();
+        } else {
+            pool.submit(read).join();
         }
-        // Locate the bottom of the number
-        int bottom = approxCenter.y;
-        bottomSearch:
-        while (true) {
-            // Check if there's a white pixel on the current row
-            for (int i = 0; i <= approxSize; ++i) {
-                if (getColour(new ScreenCoord(searchLeftStart + i, bottom)).equals(Color.WHITE)) {
-                    // If there's a white pixel, the number hasn't ended yet
-                    ++bottom;
-                    continue bottomSearch;
-                }
-            }
 
-            // No white pixel means the number ended
-            --bottom;
-            break;
+        // Check the confidence on the current thread, which reports to the current time monitor
+        final Map<BoardCoord, Integer> numbers = new HashMap<>();
+        for (final Map.Entry<BoardCoord, DigitTemplates.Match> match : matches.entrySet()) {
+            numbers.put(match.getKey(), checkConfidence(match.getValue()));
         }
+        return numbers;
+    }
 
+    /**
+     * Matches a number that was located on a frame to the reference images. Only reads the frame and templates, so it
+     * can run on any thread.
+     *
+     * @param frame
+     *            The frame showing the board
+     * @param coord
+     *            The coordinates on the board of the number
+     * @param box
+     *            The box around the white pixels of the number, or null if none were found
+     *
+     * @return The best match for the number
+     */
+    private DigitTemplates.Match matchNumber(final Frame frame, final BoardCoord coord, final Rectangle box) {
         // Having the top and bottom of the number, we know its height
-        final int height = bottom - top;
+        final int height = box == null ? 0 : box.height - 1;
         if (height <= 0) {
             throw new RuntimeException("Number not found at " + coord);
         }
 
-        // Locate the left and right of the number
-        boolean numberDetected = false;
-        int left = -1;
-        int right = -1;
-        widthSearch:
-        for (int x = searchLeftStart;; ++x) {
-            // Check if there's a white pixel on the current column
-            for (int y = top; y <= bottom; ++y) {
-                if (getColour(new ScreenCoord(x, y)).equals(Color.WHITE)) {
-                    // If there's a white pixel and we hadn't seen it before, we found the left side of the number
-                    if (!numberDetected) {
-                        numberDetected = true;
-                        left = x;
-                    }
-                    continue widthSearch;
-                }
-            }
-            // If there wasn't any white pixel and we already find the left side of the number, we now found the right
-            if (numberDetected) {
-                right = x;
-                break;
-            }
-        }
-
         // Using the number's top, height and width, we can find the top left of the centred number
-        final ScreenCoord topLeft = new ScreenCoord((left + (right - left) / 2) - height / 2, top);
-
-        // Create a 10x10 image of the number
-        final Color[][] colours = new Color[10][10];
-        for (int y = 0; y < 10; ++y) {
-            for (int x = 0; x < 10; ++x) {
-                colours[x][y] = getColour(new ScreenCoord(topLeft.x + x * height / 9, topLeft.y + y * height / 9));
+        final int top = box.y;
+        final int topLeftX = box.x + box.width / 2 - height / 2;
+
+        // Sample the red channel of a square image of the number
+        final int[] reds = new int[NUMBER_SAMPLES * NUMBER_SAMPLES];
+        for (int y = 0; y < NUMBER_SAMPLES; ++y) {
+            for (int x = 0; x < NUMBER_SAMPLES; ++x) {
+                reds[y * NUMBER_SAMPLES + x] = Frame.red(frame.getPixel(topLeftX + x * height / (NUMBER_SAMPLES - 1),
+                        top + y * height / (NUMBER_SAMPLES - 1)));
                 if (PRINT_CHARACTER_RECOGNITION) {
-                    System.out.print(colours[x][y].getRed() > 100 ? "X" : ".");
+                    System.out.print(reds[y * NUMBER_SAMPLES + x] > 100 ? "X" : ".");
                 }
             }
             if (PRINT_CHARACTER_RECOGNITION) {
@@ -166,32 +156,27 @@ public class Ohno extends Q42Game {
             }
         }
 
-        // Compare the cropped image to the reference set
-        final int[] errors = new int[SIZE];
-        for (int y = 0; y < 10; ++y) {
-            for (int x = 0; x < 10; ++x) {
-                final Color colour = colours[x][y];
-                for (int n = 0; n < SIZE; ++n) {
-                    errors[n] += Math.pow(colour.getRed() - new Color(NUMBERS[n].getRGB(x, y)).getRed(), 2);
-                }
-            }
-        }
-
-        // Determine the best match
-        int bestMatchNumber = -1;
-        int bestMatchError = Integer.MAX_VALUE;
-        for (int n = 0; n < SIZE; ++n) {
-            if (errors[n] < bestMatchError) {
-                bestMatchNumber = n;
-                bestMatchError = errors[n];
-            }
-        }
+        // Compare the sampled image to the reference set
+        final DigitTemplates.Match match = NUMBERS.match(reds);
         if (PRINT_CHARACTER_RECOGNITION) {
-            System.out.println("Errors: " + Arrays.toString(errors));
-            System.out.println("Best match: " + (bestMatchNumber + 1));
+            System.out.format("Best match: %s, %.0f%% confidence%n", match, match.getConfidence() * 100);
         }
+        return match;
+    }
 
-        return bestMatchNumber + 1;
+    /**
+     * Counts a match as unsure if its confidence is too low.
+     *
+     * @param match
+     *            The match of a number
+     *
+     * @return The matched number
+     */
+    private int checkConfidence(final DigitTemplates.Match match) {
+        if (match.getConfidence() < MIN_NUMBER_CONFIDENCE) {
+            TimeMonitor.setMeasurement("Unsure numbers", TimeMonitor.getMeasurement("Unsure numbers") + 1);
+        }
+        return match.digit;
     }
 
     /**
@@ -233,14 +218,21 @@ public class Ohno extends Q42Game {
     protected void finaliseBoardState(final BoardState state) {
         final BoardStateOhno stateOhno = (BoardStateOhno) state;
 
+        final List<BoardCoord> coords = new ArrayList<>();
         for (int y = 0; y < SIZE; ++y) {
             for (int x = 0; x < SIZE; ++x) {
                 final BoardCoord coord = new BoardCoord(x, y);
                 if (stateOhno.getTile(coord) == Tile.BLUE) {
-                    stateOhno.setTileRequirement(coord, readNumber(coord));
+                    coords.add(coord);
                 }
             }
         }
+
+        final Map<BoardCoord, Integer> numbers = readNumbers(getFrame(), coords,
+                PARALLEL_OCR ? ForkJoinPool.commonPool() : null);
+        for (final Map.Entry<BoardCoord, Integer> number : numbers.entrySet()) {
+            stateOhno.setTileRequirement(number.getKey(), number.getValue());
+        }
     }
 
 }
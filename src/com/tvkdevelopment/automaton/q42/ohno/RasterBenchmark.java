@@ -0,0 +1,378 @@
+package com.tvkdevelopment.automaton.q42.ohno;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import com.tvkdevelopment.automaton.Automaton;
+import com.tvkdevelopment.automaton.Device;
+import com.tvkdevelopment.automaton.Frame;
+import com.tvkdevelopment.automaton.MemoryMonitor;
+import com.tvkdevelopment.automaton.ScreenCoord;
+import com.tvkdevelopment.automaton.q42.BoardCoord;
+import com.tvkdevelopment.automaton.q42.BoardState;
+import com.tvkdevelopment.automaton.q42.Tile;
+import com.tvkdevelopment.automaton.transport.DeviceTransport;
+
+/**
+ * Compares reading the board and its numbers through {@link Color} objects per pixel, as was done before frames could
+ * be read directly, to reading the packed pixels of a {@link Frame}. Both paths run on a generated 0h n0 board, match
+ * the sampled numbers to the same {@link DigitTemplates} and must read the same tiles and numbers. The numbers of the
+ * whole board are also read in pools of 1 thread up to a thread per core, doubling in between. Reports the time and
+ * the bytes allocated by the measuring thread per read. Run it from the repository's root so the reference numbers are
+ * found.
+ */
+public class RasterBenchmark {
+
+    /** The amount of warm-up iterations per path */
+    private static final int WARMUP = 2000;
+    /** The amount of measured iterations per path */
+    private static final int ITERATIONS = 5000;
+    /** The width of the generated screen */
+    private static final int WIDTH = 1080;
+    /** The height of the generated screen */
+    private static final int HEIGHT = 1920;
+    /** The reference number images */
+    private static final DigitTemplates NUMBERS = DigitTemplates.load("numbers", 9, 10);
+
+    /** The generated screen */
+    private static BufferedImage sScreen;
+    /** The game whose layout and character recognition are used */
+    private static Ohno sGame;
+    /** The tiles of the board */
+    private static final BoardState sState = new BoardState(9);
+    /** The blue tiles, which hold numbers */
+    private static final List<BoardCoord> sNumberTiles = new ArrayList<>();
+    /** A sink for results, so the reads aren't optimised away */
+    private static long sSink;
+
+    public static void main(final String[] args) {
+        sScreen = createScreen();
+        Automaton.setDevice(new Device(null, new ScreenTransport(sScreen)));
+        Automaton.dumpScreen();
+        sGame = new Ohno();
+        for (int y = 0; y < 9; ++y) {
+            for (int x = 0; x < 9; ++x) {
+                final ScreenCoord tile = sGame.getTileCoord(new BoardCoord(x, y));
+                sState.setTile(new BoardCoord(x, y), Tile.fromRgb(sScreen.getRGB(tile.x, tile.y)));
+                if (sState.getTile(x, y) == Tile.BLUE) {
+                    sNumberTiles.add(new BoardCoord(x, y));
+                }
+            }
+        }
+
+        // All paths must read the same values
+        boolean same = readNumbersByBoard(null) == readNumbersPerTile();
+        same &= readNumbersByBoard(ForkJoinPool.commonPool()) == readNumbersPerTile();
+        for (final BoardCoord coord : sNumberTiles) {
+            same &= readNumberWithColours(coord) == sGame.readNumber(coord);
+        }
+        same &= readBoardWithColours() == readBoardWithFrame();
+        System.out.println(sNumberTiles.size() + " numbered tiles, paths agree: " + same);
+
+        measure("Board with Color", RasterBenchmark::readBoardWithColours);
+        measure("Board with Frame", RasterBenchmark::readBoardWithFrame);
+        measure("Numbers with Color", () -> {
+            long sum = 0;
+            for (final BoardCoord coord : sNumberTiles) {
+                sum += readNumberWithColours(coord);
+            }
+            return sum;
+        });
+        measure("Numbers with Frame", RasterBenchmark::readNumbersPerTile);
+        measure("Numbers by board", () -> readNumbersByBoard(null));
+
+        // Read the numbers in parallel with pools of up to as many threads as there are cores
+        final int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1;; threads *= 2) {
+            final int poolSize = Math.min(threads, cores);
+            final ForkJoinPool pool = new ForkJoinPool(poolSize);
+            measure("Numbers by board, " + poolSize + (poolSize == 1 ? " thread" : " threads"),
+                    () -> readNumbersByBoard(pool));
+            pool.shutdown();
+            if (poolSize == cores) {
+                break;
+            }
+        }
+        System.out.println("Checksum " + sSink);
+    }
+
+    /**
+     * A read that's measured.
+     */
+    private interface Read {
+
+        /**
+         * @return A value derived from what was read
+         */
+        long run();
+
+    }
+
+    /**
+     * Measures a read and prints the time and allocated bytes per read.
+     *
+     * @param name
+     *            The name of the read
+     * @param read
+     *            The read to measure
+     */
+    private static void measure(final String name, final Read read) {
+        for (int i = 0; i < WARMUP; ++i) {
+            sSink += read.run();
+        }
+        final long allocated = MemoryMonitor.getAllocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+            sSink += read.run();
+        }
+        final long nanos = System.nanoTime() - start;
+        System.out.format("%-30s %9.1fus per read %10d bytes per read%n", name, nanos / 1e3 / ITERATIONS,
+                (MemoryMonitor.getAllocatedBytes() - allocated) / ITERATIONS);
+    }
+
+    /**
+     * Reads the tile at every tile coordinate through colours, as the device's image used to be read.
+     *
+     * @return A hash of the tiles
+     */
+    private static long readBoardWithColours() {
+        long hash = 0;
+        for (int y = 0; y < 9; ++y) {
+            for (int x = 0; x < 9; ++x) {
+                final ScreenCoord tile = sGame.getTileCoord(new BoardCoord(x, y));
+                hash = hash * 3 + Tile.fromRgb(getColour(new ScreenCoord(tile.x, tile.y))).ordinal();
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Reads the tile at every tile coordinate from the frame's packed pixels.
+     *
+     * @return A hash of the tiles
+     */
+    private static long readBoardWithFrame() {
+        final Frame frame = Automaton.getFrame();
+        long hash = 0;
+        for (int y = 0; y < 9; ++y) {
+            for (int x = 0; x < 9; ++x) {
+                final ScreenCoord tile = sGame.getTileCoord(new BoardCoord(x, y));
+                hash = hash * 3 + Tile.fromRgb(frame.getPixel(tile.x, tile.y)).ordinal();
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Reads the numbers one tile at a time.
+     *
+     * @return A hash of the numbers
+     */
+    private static long readNumbersPerTile() {
+        long hash = 0;
+        for (final BoardCoord coord : sNumberTiles) {
+            hash = hash * 10 + sGame.readNumber(coord);
+        }
+        return hash;
+    }
+
+    /**
+     * Reads the numbers of all blue tiles at once, as the board state is finalised.
+     *
+     * @param pool
+     *            The pool to read the numbers in, or null to read them on the current thread
+     *
+     * @return A hash of the numbers
+     */
+    private static long readNumbersByBoard(final ForkJoinPool pool) {
+        final Map<BoardCoord, Integer> numbers = sGame.readNumbers(Automaton.getFrame(), sNumberTiles, pool);
+        long hash = 0;
+        for (final BoardCoord coord : sNumberTiles) {
+            hash = hash * 10 + numbers.get(coord);
+        }
+        return hash;
+    }
+
+    /**
+     * Reads a number the way {@link Ohno#readNumber(BoardCoord)} did before it read frames directly, matching it the
+     * way it does now.
+     *
+     * @param coord
+     *            The coordinates on the board to read the number at
+     *
+     * @return The number that was found
+     */
+    private static int readNumberWithColours(final BoardCoord coord) {
+        final ScreenCoord screenCoord = sGame.getTileCoord(coord);
+        final int tileSize = sGame.getLayout().getTileSize();
+        final int offset = sGame.getLayout().getOffset();
+        final int approxSize = (int) (tileSize * 0.45);
+        final ScreenCoord approxCenter = new ScreenCoord(screenCoord.x - offset + tileSize / 2,
+                screenCoord.y - offset + tileSize / 2);
+        final int searchLeftStart = approxCenter.x - approxSize / 2;
+
+        int top = approxCenter.y;
+        topSearch:
+        while (true) {
+            for (int i = 0; i <= approxSize; ++i) {
+                if (getColour(new ScreenCoord(searchLeftStart + i, top)).equals(Color.WHITE)) {
+                    --top;
+                    continue topSearch;
+                }
+            }
+            ++top;
+            break;
+        }
+        int bottom = approxCenter.y;
+        bottomSearch:
+        while (true) {
+            for (int i = 0; i <= approxSize; ++i) {
+                if (getColour(new ScreenCoord(searchLeftStart + i, bottom)).equals(Color.WHITE)) {
+                    ++bottom;
+                    continue bottomSearch;
+                }
+            }
+            --bottom;
+            break;
+        }
+        final int height = bottom - top;
+
+        boolean numberDetected = false;
+        int left = -1;
+        int right = -1;
+        widthSearch:
+        for (int x = searchLeftStart;; ++x) {
+            for (int y = top; y <= bottom; ++y) {
+                if (getColour(new ScreenCoord(x, y)).equals(Color.WHITE)) {
+                    if (!numberDetected) {
+                        numberDetected = true;
+                        left = x;
+                    }
+                    continue widthSearch;
+                }
+            }
+            if (numberDetected) {
+                right = x;
+                break;
+            }
+        }
+
+        final ScreenCoord topLeft = new ScreenCoord((left + (right - left) / 2) - height / 2, top);
+        final Color[][] colours = new Color[10][10];
+        for (int y = 0; y < 10; ++y) {
+            for (int x = 0; x < 10; ++x) {
+                colours[x][y] = getColour(new ScreenCoord(topLeft.x + x * height / 9, topLeft.y + y * height / 9));
+            }
+        }
+
+        final int[] reds = new int[100];
+        for (int y = 0; y < 10; ++y) {
+            for (int x = 0; x < 10; ++x) {
+                reds[y * 10 + x] = colours[x][y].getRed();
+            }
+        }
+        return NUMBERS.match(reds).digit;
+    }
+
+    /**
+     * Reads a pixel the way the device used to: from its image into a new colour.
+     */
+    private static Color getColour(final ScreenCoord coord) {
+        return new Color(sScreen.getRGB(coord.x, coord.y));
+    }
+
+    /**
+     * @return A 0h n0 board of red and blue tiles on the reference layout, the blue ones holding white numbers
+     */
+    private static BufferedImage createScreen() {
+        final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        graphics.setColor(new Color(0x202020));
+        graphics.fillRect(0, 0, WIDTH, HEIGHT);
+
+        final int tileSize = 960 / 9;
+        graphics.setFont(new Font(Font.SANS_SERIF, Font.BOLD, tileSize / 2));
+        final Random random = new Random(42);
+        for (int y = 0; y < 9; ++y) {
+            for (int x = 0; x < 9; ++x) {
+                final int left = 55 + x * tileSize;
+                final int top = 505 + y * tileSize;
+                final boolean blue = random.nextInt(3) != 0;
+                graphics.setColor(blue ? new Color(0x1cc0e0) : new Color(0xff384b));
+                graphics.fillRoundRect(left + 3, top + 3, tileSize - 6, tileSize - 6, 12, 12);
+                if (blue) {
+                    final String number = Integer.toString(1 + random.nextInt(9));
+                    graphics.setColor(Color.WHITE);
+                    graphics.drawString(number, left + tileSize / 2 - graphics.getFontMetrics().stringWidth(number) / 2,
+                            top + tileSize / 2 + graphics.getFontMetrics().getAscent() / 2 - 4);
+                }
+            }
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    /**
+     * A transport that only shows a fixed screen.
+     */
+    private static class ScreenTransport implements DeviceTransport {
+
+        /** The screen to show */
+        private final BufferedImage mScreen;
+
+        /**
+         * Creates a transport showing a fixed screen.
+         *
+         * @param screen
+         *            The screen to show
+         */
+        ScreenTransport(final BufferedImage screen) {
+            mScreen = screen;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void tap(final ScreenCoord target) {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void tapAll(final List<ScreenCoord> targets, final int gapMs) {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void swipe(final ScreenCoord from, final ScreenCoord to) {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public BufferedImage captureScreen() {
+            return mScreen;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public List<String> shell(final String command) {
+            return new ArrayList<>();
+        }
+
+    }
+
+}
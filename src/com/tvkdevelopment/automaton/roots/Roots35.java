@@ -1,7 +1,15 @@
 package com.tvkdevelopment.automaton.roots;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import com.tvkdevelopment.automaton.Automaton;
 import com.tvkdevelopment.automaton.ScreenCoord;
+import com.tvkdevelopment.automaton.Timeline;
+import com.tvkdevelopment.automaton.gesture.MultiTouchGesture;
+import com.tvkdevelopment.automaton.gesture.TouchscreenInfo;
 
 /**
  * An automaton for the initial phase of level 35 of the game Roots.
@@ -11,11 +19,26 @@ import com.tvkdevelopment.automaton.ScreenCoord;
  */
 public class Roots35 extends Automaton {
 
+    /** Whether or not to run the script on a timeline, so that the time actions take doesn't delay later ones */
+    private static final boolean USE_TIMELINE = true;
+    /** The time reserved for a single swipe on the timeline in milliseconds, matching the old fixed swipe delay */
+    private static final int SWIPE_STEP = 500;
+    /** The time reserved for a single multi-touch gesture on the timeline in milliseconds */
+    private static final int GESTURE_STEP = 200;
+    /** The time reserved for a tap on the timeline in milliseconds, matching the old fixed tap delay */
+    private static final int TAP_STEP = 180;
+    /** Whether or not to perform independent swipes of a gesture block simultaneously using multi-touch */
+    private static final boolean USE_MULTI_TOUCH = true;
+
     /** The amount of columns in the level */
-    private static final int COLUMN_MAX = 10;
+    static final int COLUMN_MAX = 10;
     /** The amount of rows in the level */
-    private static final int ROW_MAX = 5;
+    static final int ROW_MAX = 5;
 
+    /** The width of the screen that the coordinates of the level were measured on */
+    private static final int REFERENCE_WIDTH = 1920;
+    /** The height of the screen that the coordinates of the level were measured on */
+    private static final int REFERENCE_HEIGHT = 1080;
     /** The top left screen coordinate of the level */
     private static final ScreenCoord TOP_LEFT = new ScreenCoord(150, 150);
     /** The bottom right screen coordinate of the level */
@@ -24,11 +47,42 @@ public class Roots35 extends Automaton {
     /** The screen coordinate interval between each node */
     private static final ScreenCoord INTERVAL = new ScreenCoord((BOTTOM_RIGHT.x - TOP_LEFT.x) / COLUMN_MAX,
             (BOTTOM_RIGHT.y - TOP_LEFT.y) / ROW_MAX);
+    /** The distance from a node within which a touch is considered to be on that node */
+    private static final int NODE_RADIUS = 60;
+
+    /** The swipes collected since {@link #beginGesture()} or null if swipes are performed immediately */
+    private static List<int[]> sGesture;
+    /** The touchscreen of the device, detected upon the first multi-touch gesture */
+    private static TouchscreenInfo sTouchscreen;
+    /** The timeline that the script is scheduled on or null if actions are performed immediately */
+    private static Timeline sTimeline;
+    /** The factor from coordinates on the reference screen to the device's screen */
+    private static double sScale = 1;
+    /** The offset of the scaled reference screen on the device's screen, centring it along its longer side */
+    private static ScreenCoord sOffset = new ScreenCoord(0, 0);
 
     public static void main(final String[] args) {
         System.out.println("START");
+        detectScreen();
+
+        if (USE_TIMELINE) {
+            sTimeline = new Timeline();
+            runScript();
+            final Timeline timeline = sTimeline;
+            sTimeline = null;
+            timeline.run();
+        } else {
+            runScript();
+        }
+
+        System.out.println("END");
+    }
 
-        tap(new ScreenCoord(1500, 950));
+    /**
+     * Runs the script of the level, or schedules it when a timeline is used.
+     */
+    private static void runScript() {
+        tap(scale(new ScreenCoord(1500, 950)));
         wait(800);
 
         swipe(10, 0, 8, 0);
@@ -46,6 +100,7 @@ public class Roots35 extends Automaton {
         swipe(4, 1, 3, 2);
 
         // Back up and spread
+        beginGesture();
         swipe(4, 0, 6, 0);
         swipe(6, 0, 5, 0);
         swipe(6, 0, 7, 1);
@@ -65,6 +120,7 @@ public class Roots35 extends Automaton {
         swipe(8, 3, 10, 5);
         swipe(10, 5, 9, 4);
         swipe(10, 5, 10, 4);
+        endGesture();
 
         wait(1000);
 
@@ -76,6 +132,7 @@ public class Roots35 extends Automaton {
         wait(1000);
 
         // Reinforce
+        beginGesture();
         swipe(7, 0, 5, 0);
         swipe(8, 1, 6, 0);
         swipe(7, 2, 5, 0);
@@ -87,12 +144,14 @@ public class Roots35 extends Automaton {
         swipe(8, 2, 8, 3);
         swipe(8, 0, 6, 0);
         swipe(8, 3, 6, 1);
+        endGesture();
 
         // Attack the back
         swipe(5, 0, 0, 0);
         wait(1000);
 
         // Reinforce
+        beginGesture();
         swipe(9, 0, 7, 0);
         swipe(10, 1, 10, 2);
         swipe(10, 1, 9, 1);
@@ -106,16 +165,19 @@ public class Roots35 extends Automaton {
         swipe(10, 4, 10, 5);
         swipe(9, 4, 10, 5);
         swipe(10, 5, 8, 3);
+        endGesture();
 
         // Attack the back
         swipe(5, 0, 0, 1);
         wait(1000);
 
         // Reinforce
+        beginGesture();
         swipe(10, 2, 8, 1);
         swipe(9, 1, 7, 0);
         swipe(10, 3, 9, 2);
         swipe(9, 3, 7, 2);
+        endGesture();
         wait(1000);
 
         // Attack the back
@@ -127,8 +189,6 @@ public class Roots35 extends Automaton {
         swipe(9, 2, 10, 3);
         swipe(10, 3, 8, 2);
         swipe(9, 2, 7, 1);
-
-        System.out.println("END");
     }
 
     /**
@@ -141,13 +201,99 @@ public class Roots35 extends Automaton {
      *
      * @return The screen coordinates
      */
-    private static ScreenCoord getNode(final int column, final int row) {
+    static ScreenCoord getNode(final int column, final int row) {
+        return scale(getReferenceNode(column, row));
+    }
+
+    /**
+     * Retrieves the coordinates for a node on the reference screen.
+     *
+     * @param column
+     *            The column of the node
+     * @param row
+     *            The row of the node
+     *
+     * @return The screen coordinates on the reference screen
+     */
+    private static ScreenCoord getReferenceNode(final int column, final int row) {
         final int x = TOP_LEFT.x + column * INTERVAL.x;
         final int y = TOP_LEFT.y + row * INTERVAL.y
                 + (column > COLUMN_MAX / 2 ? COLUMN_MAX - column : column) * INTERVAL.y / 2;
         return new ScreenCoord(x, y);
     }
 
+    /**
+     * Captures the screen to scale the coordinates of the level, which were measured on a screen of
+     * {@value #REFERENCE_WIDTH}x{@value #REFERENCE_HEIGHT} pixels, to the device's screen. The level is scaled to fit
+     * the screen and centred along the side that's relatively longer, as the game letterboxes it.
+     */
+    static void detectScreen() {
+        dumpScreen();
+        final int width = getDevice().getFrame().getWidth();
+        final int height = getDevice().getFrame().getHeight();
+        sScale = Math.min((double) width / REFERENCE_WIDTH, (double) height / REFERENCE_HEIGHT);
+        sOffset = new ScreenCoord((int) Math.round((width - REFERENCE_WIDTH * sScale) / 2),
+                (int) Math.round((height - REFERENCE_HEIGHT * sScale) / 2));
+    }
+
+    /**
+     * Translates a coordinate on the reference screen to the device's screen.
+     *
+     * @param reference
+     *            The coordinate on the reference screen
+     *
+     * @return The coordinate on the device's screen
+     */
+    private static ScreenCoord scale(final ScreenCoord reference) {
+        return new ScreenCoord((int) Math.round(reference.x * sScale) + sOffset.x,
+                (int) Math.round(reference.y * sScale) + sOffset.y);
+    }
+
+    /**
+     * Checks if a column and row are a node of the level. The level narrows towards its sides, so rows near the
+     * bottom only exist in the middle columns.
+     *
+     * @param column
+     *            The column of the node
+     * @param row
+     *            The row of the node
+     *
+     * @return True iff the node lies within the level
+     */
+    static boolean isNode(final int column, final int row) {
+        return getReferenceNode(column, row).y <= BOTTOM_RIGHT.y;
+    }
+
+    /**
+     * Finds the node at a screen coordinate.
+     *
+     * @param coord
+     *            The screen coordinate
+     *
+     * @return The column and row of the closest node or null if no node is close enough
+     */
+    static int[] findNode(final ScreenCoord coord) {
+        int[] closest = null;
+        final long radius = Math.round(NODE_RADIUS * sScale);
+        long closestDistance = radius * radius;
+        for (int column = 0; column <= COLUMN_MAX; ++column) {
+            for (int row = 0; row <= ROW_MAX; ++row) {
+                if (!isNode(column, row)) {
+                    continue;
+                }
+                final ScreenCoord node = getNode(column, row);
+                final long dx = node.x - coord.x;
+                final long dy = node.y - coord.y;
+                final long distance = dx * dx + dy * dy;
+                if (distance <= closestDistance) {
+                    closestDistance = distance;
+                    closest = new int[] { column, row };
+                }
+            }
+        }
+        return closest;
+    }
+
     /**
      * Performs a swipe action from one node's coordinates to another, resulting in an attack (or reinforcement)
      * 
@@ -161,8 +307,168 @@ public class Roots35 extends Automaton {
      *            The row of the receiving node
      */
     public static void swipe(final int fromColumn, final int fromRow, final int toColumn, final int toRow) {
-        System.out.println("swipe(" + fromColumn + "," + fromRow + ", " + toColumn + "," + toRow + ");");
-        swipe(getNode(fromColumn, fromRow), getNode(toColumn, toRow));
+        final String label = "swipe(" + fromColumn + "," + fromRow + ", " + toColumn + "," + toRow + ");";
+        if (sGesture != null) {
+            System.out.println(label);
+            sGesture.add(new int[] { fromColumn, fromRow, toColumn, toRow });
+            return;
+        }
+
+        final ScreenCoord from = getNode(fromColumn, fromRow);
+        final ScreenCoord to = getNode(toColumn, toRow);
+        if (sTimeline != null) {
+            sTimeline.then(label, () -> {
+                System.out.println(label);
+                swipe(from, to);
+            }, SWIPE_STEP);
+            return;
+        }
+        System.out.println(label);
+        swipe(from, to);
+    }
+
+    /**
+     * Inputs a single tap event, or schedules it when a timeline is used.
+     *
+     * @param target
+     *            The target coordinate for the tap
+     */
+    public static void tap(final ScreenCoord target) {
+        if (sTimeline != null) {
+            sTimeline.then("tap" + target, () -> Automaton.tap(target), TAP_STEP);
+            return;
+        }
+        Automaton.tap(target);
+    }
+
+    /**
+     * Waits a moment, or moves the timeline's cursor when a timeline is used.
+     *
+     * @param ms
+     *            The amount of time to wait in milliseconds
+     */
+    public static void wait(final int ms) {
+        if (sTimeline != null) {
+            sTimeline.advance(ms);
+            return;
+        }
+        Automaton.wait(ms);
+    }
+
+    /**
+     * Starts collecting swipes into a gesture instead of performing them immediately.
+     */
+    public static void beginGesture() {
+        sGesture = new ArrayList<>();
+    }
+
+    /**
+     * Performs the swipes collected since {@link #beginGesture()}. Consecutive swipes that don't share nodes are
+     * performed simultaneously with multi-touch, while the order of swipes that do is maintained.
+     */
+    public static void endGesture() {
+        final List<int[]> swipes = sGesture;
+        sGesture = null;
+
+        if (sTimeline != null) {
+            final long duration = USE_MULTI_TOUCH ? toGestures(swipes).size() * GESTURE_STEP
+                    : swipes.size() * SWIPE_STEP;
+            sTimeline.then("gesture of " + swipes.size() + " swipes", () -> performGesture(swipes), duration);
+            return;
+        }
+        performGesture(swipes);
+    }
+
+    /**
+     * Sets the touchscreen used for multi-touch gestures, so that it isn't detected during the first gesture.
+     *
+     * @param touchscreen
+     *            The touchscreen of the device
+     */
+    static void setTouchscreen(final TouchscreenInfo touchscreen) {
+        sTouchscreen = touchscreen;
+    }
+
+    /**
+     * Performs a block of swipes, simultaneously where possible when multi-touch is used.
+     *
+     * @param swipes
+     *            The swipes as from column, from row, to column and to row
+     */
+    static void performGesture(final List<int[]> swipes) {
+        if (!USE_MULTI_TOUCH) {
+            for (final int[] swipe : swipes) {
+                swipe(getNode(swipe[0], swipe[1]), getNode(swipe[2], swipe[3]));
+            }
+            return;
+        }
+
+        if (sTouchscreen == null) {
+            sTouchscreen = TouchscreenInfo.detect(getDevice());
+        }
+        for (final MultiTouchGesture gesture : toGestures(swipes)) {
+            System.out.println("gesture(" + gesture.size() + ");");
+            shell(gesture.toScript(sTouchscreen));
+        }
+    }
+
+    /**
+     * Performs a single swipe that moves as long as a recorded one did, rather than taking the fixed time of
+     * {@link Automaton#swipe(ScreenCoord, ScreenCoord)}.
+     *
+     * @param from
+     *            The coordinate for the start of the swipe
+     * @param to
+     *            The coordinate for the end of the swipe
+     * @param durationMs
+     *            The time the finger should take to move in milliseconds
+     */
+    static void performSwipe(final ScreenCoord from, final ScreenCoord to, final long durationMs) {
+        final int steps = (int) Math.max(1, durationMs / MultiTouchGesture.DEFAULT_FRAME_INTERVAL);
+        perform(new MultiTouchGesture(steps, MultiTouchGesture.DEFAULT_FRAME_INTERVAL).add(from, to));
+    }
+
+    /**
+     * Sends a multi-touch gesture to the touchscreen, detecting the touchscreen first if needs be.
+     *
+     * @param gesture
+     *            The gesture to perform
+     */
+    static void perform(final MultiTouchGesture gesture) {
+        if (sTouchscreen == null) {
+            sTouchscreen = TouchscreenInfo.detect(getDevice());
+        }
+        shell(gesture.toScript(sTouchscreen));
+    }
+
+    /**
+     * Splits swipes into multi-touch gestures. A swipe joins the current gesture unless one of its nodes is already
+     * touched by it, so swipes that depend on each other are still performed in order.
+     *
+     * @param swipes
+     *            The swipes as from column, from row, to column and to row
+     *
+     * @return The gestures to perform in order
+     */
+    static List<MultiTouchGesture> toGestures(final List<int[]> swipes) {
+        final List<MultiTouchGesture> gestures = new ArrayList<>();
+        final Set<ScreenCoord> touchedNodes = new HashSet<>();
+        MultiTouchGesture gesture = null;
+
+        for (final int[] swipe : swipes) {
+            final ScreenCoord from = getNode(swipe[0], swipe[1]);
+            final ScreenCoord to = getNode(swipe[2], swipe[3]);
+            if (gesture == null || touchedNodes.contains(from) || touchedNodes.contains(to)) {
+                gesture = new MultiTouchGesture();
+                gestures.add(gesture);
+                touchedNodes.clear();
+            }
+            gesture.add(from, to);
+            touchedNodes.add(from);
+            touchedNodes.add(to);
+        }
+
+        return gestures;
     }
 
 }
@@ -0,0 +1,341 @@
+package com.tvkdevelopment.automaton.roots;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.tvkdevelopment.automaton.Automaton;
+import com.tvkdevelopment.automaton.Frame;
+import com.tvkdevelopment.automaton.ScreenCoord;
+import com.tvkdevelopment.automaton.TimeMonitor;
+import com.tvkdevelopment.automaton.gesture.TouchscreenInfo;
+
+/**
+ * A closed-loop alternative to the script of {@link Roots35}. Every tick the screen is captured, the ownership of each
+ * node is read from the pixels around it and the player's nodes attack their closest reachable enemy or neutral node.
+ * Because decisions are based on what is on screen, lag or unexpected enemy moves only cost a tick instead of
+ * invalidating the rest of a script.
+ *
+ * Ticks start at fixed deadlines and capture only the rows holding nodes. Swipes are only sent while they fit in the
+ * tick's latency budget, so a slow capture results in fewer swipes rather than a late next tick, though the first
+ * gesture is always sent so the player keeps attacking. The optional argument is the duration to run in seconds.
+ */
+public class Roots35Controller {
+
+    /** The time between the starts of ticks in milliseconds */
+    private static final int TICK_INTERVAL = 250;
+    /** The time from the start of a tick within which all of its actions should be sent in milliseconds */
+    private static final int TICK_BUDGET = 200;
+    /** The duration to run if none is given in seconds */
+    private static final int DEFAULT_DURATION = 120;
+    /** The distance in pixels from a node's centre that is sampled to classify it */
+    private static final int SAMPLE_RADIUS = 6;
+    /** The largest column or row distance between nodes that can be swiped between */
+    private static final int MAX_REACH = 2;
+    /** The amount of ticks that a node rests after sending before it's used again */
+    private static final int SEND_COOLDOWN = 4;
+    /** The assumed time a multi-touch gesture takes before any has been measured in milliseconds */
+    private static final int INITIAL_GESTURE_COST = 150;
+
+    /** The darkest brightness, as the sum of channels, at which a node is considered present */
+    private static final int MIN_NODE_BRIGHTNESS = 120;
+    /** The smallest difference between the dominant channel and the others for a node to be owned */
+    private static final int MIN_OWNER_DOMINANCE = 40;
+
+    /**
+     * The ownership of a node as read from the screen.
+     */
+    enum Owner {
+        NONE, NEUTRAL, PLAYER, ENEMY;
+
+        /**
+         * Classifies the average colour around a node. The player's nodes are green, the enemy's red and neutral nodes
+         * grey, while the dark background means there is no node.
+         *
+         * @param red
+         *            The average red channel
+         * @param green
+         *            The average green channel
+         * @param blue
+         *            The average blue channel
+         *
+         * @return The ownership matching the colour
+         */
+        static Owner fromRgb(final int red, final int green, final int blue) {
+            if (red + green + blue < MIN_NODE_BRIGHTNESS) {
+                return NONE;
+            }
+            if (green - Math.max(red, blue) >= MIN_OWNER_DOMINANCE) {
+                return PLAYER;
+            }
+            if (red - Math.max(green, blue) >= MIN_OWNER_DOMINANCE) {
+                return ENEMY;
+            }
+            return NEUTRAL;
+        }
+    }
+
+    /** The first screen row that is sampled to classify the nodes */
+    private final int mTop;
+    /** The screen row after the last row that is sampled to classify the nodes */
+    private final int mBottom;
+    /** The tick at which each node may send again, indexed by column and row */
+    private final int[][] mCooldowns = new int[Roots35.COLUMN_MAX + 1][Roots35.ROW_MAX + 1];
+    /** The measured average time of a multi-touch gesture in milliseconds */
+    private double mGestureCost = INITIAL_GESTURE_COST;
+    /** The current tick number */
+    private int mTick;
+
+    /** The total amount of ticks */
+    private long mTicks;
+    /** The amount of ticks that ended after the next tick's deadline */
+    private long mMissedDeadlines;
+    /** The amount of swipes dropped because they didn't fit the budget */
+    private long mDroppedSwipes;
+    /** The highest latency per stage in milliseconds: capture, classify, decide and act */
+    private final long[] mMaxLatencies = new long[4];
+
+    public static void main(final String[] args) {
+        final int duration = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DURATION;
+        Roots35.setTouchscreen(TouchscreenInfo.detect(Automaton.getDevice()));
+        Roots35.detectScreen();
+        new Roots35Controller().run(duration * 1000L);
+        TimeMonitor.printElapsed();
+    }
+
+    /**
+     * Creates a controller for the level as detected on the screen by {@link Roots35#detectScreen()}.
+     */
+    public Roots35Controller() {
+        int top = Integer.MAX_VALUE;
+        int bottom = 0;
+        for (int column = 0; column <= Roots35.COLUMN_MAX; ++column) {
+            for (int row = 0; row <= Roots35.ROW_MAX; ++row) {
+                if (Roots35.isNode(column, row)) {
+                    final ScreenCoord node = Roots35.getNode(column, row);
+                    top = Math.min(top, node.y - SAMPLE_RADIUS);
+                    bottom = Math.max(bottom, node.y + SAMPLE_RADIUS + 1);
+                }
+            }
+        }
+        mTop = top;
+        mBottom = bottom;
+    }
+
+    /**
+     * Runs the control loop.
+     *
+     * @param durationMs
+     *            The time to run in milliseconds
+     */
+    public void run(final long durationMs) {
+        final long start = System.nanoTime();
+        final long end = start + durationMs * 1000000;
+        long deadline = start;
+
+        while (deadline < end) {
+            tick(deadline);
+
+            // Skip the ticks whose deadline already passed rather than running them late
+            deadline += TICK_INTERVAL * 1000000L;
+            final long now = System.nanoTime();
+            if (now > deadline) {
+                final long missed = (now - deadline) / (TICK_INTERVAL * 1000000L) + 1;
+                mMissedDeadlines += missed;
+                deadline += missed * TICK_INTERVAL * 1000000L;
+            }
+            sleepUntil(deadline);
+        }
+
+        final long elapsed = System.nanoTime() - start;
+        TimeMonitor.setMeasurement("Controller ticks per minute", mTicks * 60000000000L / elapsed);
+        TimeMonitor.setMeasurement("Controller missed deadlines", mMissedDeadlines);
+        TimeMonitor.setMeasurement("Controller dropped swipes", mDroppedSwipes);
+        TimeMonitor.setMeasurement("Controller max capture latency (ms)", mMaxLatencies[0]);
+        TimeMonitor.setMeasurement("Controller max classify latency (ms)", mMaxLatencies[1]);
+        TimeMonitor.setMeasurement("Controller max decide latency (ms)", mMaxLatencies[2]);
+        TimeMonitor.setMeasurement("Controller max act latency (ms)", mMaxLatencies[3]);
+    }
+
+    /**
+     * Runs a single tick: capture, classify, decide and act.
+     *
+     * @param tickStart
+     *            The deadline of the tick in nanoseconds
+     */
+    private void tick(final long tickStart) {
+        ++mTicks;
+        ++mTick;
+
+        TimeMonitor.start("Controller capture");
+        Automaton.dumpScreen(mTop, mBottom, null);
+        recordLatency(0, TimeMonitor.stop("Controller capture"));
+
+        TimeMonitor.start("Controller classify");
+        final Owner[][] owners = classify();
+        recordLatency(1, TimeMonitor.stop("Controller classify"));
+
+        TimeMonitor.start("Controller decide");
+        final List<int[]> swipes = decide(owners, tickStart);
+        recordLatency(2, TimeMonitor.stop("Controller decide"));
+
+        if (!swipes.isEmpty()) {
+            TimeMonitor.start("Controller act");
+            Roots35.performGesture(swipes);
+            final long actTime = TimeMonitor.stop("Controller act");
+            recordLatency(3, actTime);
+
+            final int gestures = Roots35.toGestures(swipes).size();
+            mGestureCost += ((double) actTime / gestures - mGestureCost) / 8;
+        }
+    }
+
+    /**
+     * Reads the ownership of every node from the last captured screen.
+     *
+     * @return The ownership indexed by column and row
+     */
+    private static Owner[][] classify() {
+        final Owner[][] owners = new Owner[Roots35.COLUMN_MAX + 1][Roots35.ROW_MAX + 1];
+        final Frame frame = Automaton.getFrame();
+        for (int column = 0; column <= Roots35.COLUMN_MAX; ++column) {
+            for (int row = 0; row <= Roots35.ROW_MAX; ++row) {
+                if (!Roots35.isNode(column, row)) {
+                    owners[column][row] = Owner.NONE;
+                    continue;
+                }
+                final ScreenCoord node = Roots35.getNode(column, row);
+                int red = 0;
+                int green = 0;
+                int blue = 0;
+                int count = 0;
+                for (int dy = -SAMPLE_RADIUS; dy <= SAMPLE_RADIUS; dy += SAMPLE_RADIUS) {
+                    for (int dx = -SAMPLE_RADIUS; dx <= SAMPLE_RADIUS; dx += SAMPLE_RADIUS) {
+                        final int pixel = frame.getPixel(node.x + dx, node.y + dy);
+                        red += Frame.red(pixel);
+                        green += Frame.green(pixel);
+                        blue += Frame.blue(pixel);
+                        ++count;
+                    }
+                }
+                owners[column][row] = Owner.fromRgb(red / count, green / count, blue / count);
+            }
+        }
+        return owners;
+    }
+
+    /**
+     * Chooses the swipes for this tick. Every rested node of the player attacks the closest reachable enemy node, or
+     * the closest neutral node if there is none. Swipes are dropped when their gestures wouldn't be sent within the
+     * tick's budget, except for those of the first gesture.
+     *
+     * @param owners
+     *            The ownership of every node
+     * @param tickStart
+     *            The deadline of the tick in nanoseconds
+     *
+     * @return The swipes as from column, from row, to column and to row
+     */
+    private List<int[]> decide(final Owner[][] owners, final long tickStart) {
+        final List<int[]> swipes = new ArrayList<>();
+        final Set<Integer> targeted = new HashSet<>();
+
+        for (int column = 0; column <= Roots35.COLUMN_MAX; ++column) {
+            for (int row = 0; row <= Roots35.ROW_MAX; ++row) {
+                if (owners[column][row] != Owner.PLAYER || mCooldowns[column][row] > mTick) {
+                    continue;
+                }
+                final int[] target = findTarget(owners, column, row, targeted);
+                if (target != null) {
+                    swipes.add(new int[] { column, row, target[0], target[1] });
+                    targeted.add(target[0] * (Roots35.ROW_MAX + 1) + target[1]);
+                }
+            }
+        }
+
+        // Keep the swipes whose gestures fit in the remaining budget, but always the first gesture, as dropping every
+        // swipe after a slow capture would keep the player from ever acting
+        final double remaining = TICK_BUDGET - (System.nanoTime() - tickStart) / 1e6;
+        int gestures;
+        while ((gestures = Roots35.toGestures(swipes).size()) > 1 && gestures * mGestureCost > remaining) {
+            swipes.remove(swipes.size() - 1);
+            ++mDroppedSwipes;
+        }
+
+        for (final int[] swipe : swipes) {
+            mCooldowns[swipe[0]][swipe[1]] = mTick + SEND_COOLDOWN;
+        }
+        return swipes;
+    }
+
+    /**
+     * Finds the node that a player's node should attack.
+     *
+     * @param owners
+     *            The ownership of every node
+     * @param column
+     *            The column of the attacking node
+     * @param row
+     *            The row of the attacking node
+     * @param targeted
+     *            The nodes already targeted this tick, as column times row count plus row
+     *
+     * @return The column and row of the target or null if there is none in reach
+     */
+    private static int[] findTarget(final Owner[][] owners, final int column, final int row,
+            final Set<Integer> targeted) {
+        int[] best = null;
+        int bestScore = Integer.MAX_VALUE;
+        for (int toColumn = Math.max(0, column - MAX_REACH); toColumn <= Math.min(Roots35.COLUMN_MAX,
+                column + MAX_REACH); ++toColumn) {
+            for (int toRow = Math.max(0, row - MAX_REACH); toRow <= Math.min(Roots35.ROW_MAX,
+                    row + MAX_REACH); ++toRow) {
+                final Owner owner = owners[toColumn][toRow];
+                if ((owner != Owner.ENEMY && owner != Owner.NEUTRAL)
+                        || targeted.contains(toColumn * (Roots35.ROW_MAX + 1) + toRow)) {
+                    continue;
+                }
+
+                // Enemies before neutral nodes, then the closest
+                final int score = (owner == Owner.ENEMY ? 0 : 100) + Math.abs(toColumn - column)
+                        + Math.abs(toRow - row);
+                if (score < bestScore) {
+                    bestScore = score;
+                    best = new int[] { toColumn, toRow };
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Keeps track of the highest latency of a stage.
+     *
+     * @param stage
+     *            The index of the stage
+     * @param latency
+     *            The latency of the stage this tick in milliseconds
+     */
+    private void recordLatency(final int stage, final long latency) {
+        mMaxLatencies[stage] = Math.max(mMaxLatencies[stage], latency);
+    }
+
+    /**
+     * Sleeps until the given time.
+     *
+     * @param deadline
+     *            The time to wake up in nanoseconds
+     */
+    private static void sleepUntil(final long deadline) {
+        final long remaining = deadline - System.nanoTime();
+        if (remaining > 0) {
+            try {
+                Thread.sleep(remaining / 1000000, (int) (remaining % 1000000));
+            } catch (final InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.tvkdevelopment.automaton.roots;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.tvkdevelopment.automaton.gesture.FakeInputDevice;
+import com.tvkdevelopment.automaton.gesture.FakeInputDevice.TouchFrame;
+import com.tvkdevelopment.automaton.gesture.GetEventParser;
+import com.tvkdevelopment.automaton.gesture.MultiTouchGesture;
+import com.tvkdevelopment.automaton.gesture.TouchscreenInfo;
+
+/**
+ * Replays the multi-touch gestures of a {@link Roots35} reinforcement block against a {@link FakeInputDevice} and
+ * reports their timing and whether every finger touched and ended at the intended nodes. Also checks that a finger
+ * of a recorded gesture touches down and lifts in its own frames, and that recordings
+ * parse the same with and without the device path that <code>getevent</code> leaves out for a single device. The
+ * optional argument is the assumed cost of a single <code>sendevent</code> on the device in milliseconds.
+ */
+public class Roots35GestureReplay {
+
+    /** A 1080x1920 touchscreen in landscape, whose panel range matches the display */
+    private static final TouchscreenInfo TOUCHSCREEN = new TouchscreenInfo("/dev/input/event2", 1079, 1919, 1080,
+            1920, 1);
+
+    /** The reinforcement block of the script, as from column, from row, to column and to row */
+    private static final List<int[]> SWIPES = Arrays.asList(new int[] { 9, 0, 7, 0 }, new int[] { 10, 1, 10, 2 },
+            new int[] { 10, 1, 9, 1 }, new int[] { 9, 4, 7, 2 }, new int[] { 10, 4, 10, 3 }, new int[] { 10, 4, 9, 3 },
+            new int[] { 10, 1, 10, 0 }, new int[] { 9, 0, 10, 0 }, new int[] { 10, 0, 8, 0 },
+            new int[] { 10, 4, 10, 5 }, new int[] { 9, 4, 10, 5 }, new int[] { 10, 5, 8, 3 });
+
+    /** The events of a recorded tap, as printed by <code>getevent -lt</code> after the timestamp and device path */
+    private static final String[] RECORDING_LINES = { "EV_ABS       ABS_MT_TRACKING_ID   00000031",
+            "EV_ABS       ABS_MT_POSITION_X    000001a3", "EV_ABS       ABS_MT_POSITION_Y    00000388",
+            "EV_KEY       BTN_TOUCH            DOWN", "EV_SYN       SYN_REPORT           00000000",
+            "EV_ABS       ABS_MT_TRACKING_ID   ffffffff", "EV_KEY       BTN_TOUCH            UP",
+            "EV_SYN       SYN_REPORT           00000000" };
+
+    public static void main(final String[] args) {
+        final double eventCostMs = args.length > 0 ? Double.parseDouble(args[0]) : 0;
+
+        final List<MultiTouchGesture> gestures = Roots35.toGestures(SWIPES);
+        System.out.println(SWIPES.size() + " swipes in " + gestures.size() + " gestures, sequentially "
+                + SWIPES.size() * 500 + "ms");
+
+        int swipeIndex = 0;
+        long totalNanos = 0;
+        boolean allPassed = true;
+        for (final MultiTouchGesture gesture : gestures) {
+            final FakeInputDevice device = new FakeInputDevice(eventCostMs);
+            device.replay(gesture.toScript(TOUCHSCREEN));
+            final List<TouchFrame> frames = device.getFrames();
+
+            // Check that all fingers are down together and end at their targets
+            final TouchFrame lastMove = frames.get(frames.size() - 2);
+            boolean passed = lastMove.getContactCount() == gesture.size()
+                    && frames.get(frames.size() - 1).getContactCount() == 0;
+            for (int slot = 0; slot < gesture.size(); ++slot) {
+                final int[] swipe = SWIPES.get(swipeIndex + slot);
+                final int[] from = TOUCHSCREEN.toPanel(Roots35.getNode(swipe[0], swipe[1]));
+                final int[] to = TOUCHSCREEN.toPanel(Roots35.getNode(swipe[2], swipe[3]));
+                passed &= frames.get(0).x[slot] == from[0] && frames.get(0).y[slot] == from[1];
+                passed &= lastMove.x[slot] == to[0] && lastMove.y[slot] == to[1];
+            }
+            swipeIndex += gesture.size();
+            allPassed &= passed;
+
+            // Compare the frame intervals to the intended one
+            long maxDeviation = 0;
+            for (int i = 1; i < frames.size(); ++i) {
+                final long interval = frames.get(i).time - frames.get(i - 1).time;
+                maxDeviation = Math.max(maxDeviation, Math.abs(interval - gesture.getFrameInterval() * 1000000L));
+            }
+            final long duration = frames.get(frames.size() - 1).time;
+            totalNanos += duration;
+
+            System.out.format("%s %2d fingers, %2d frames in %7.2fms, max interval deviation %6.2fms%n",
+                    passed ? "OK    " : "FAILED", gesture.size(), frames.size(), duration / 1e6, maxDeviation / 1e6);
+        }
+
+        System.out.format("Total %.2fms, %s%n", totalNanos / 1e6, allPassed ? "all passed" : "FAILURES");
+
+        // A second finger that touches down two frames after the first one and lifts two frames after it
+        final MultiTouchGesture staggered = new MultiTouchGesture()
+                .add(Roots35.getNode(9, 0), Roots35.getNode(7, 0), 0, 4)
+                .add(Roots35.getNode(10, 1), Roots35.getNode(10, 2), 2, 4);
+        final FakeInputDevice staggeredDevice = new FakeInputDevice(eventCostMs);
+        staggeredDevice.replay(staggered.toScript(TOUCHSCREEN));
+        final List<TouchFrame> staggeredFrames = staggeredDevice.getFrames();
+        final int[] contacts = new int[staggeredFrames.size()];
+        for (int i = 0; i < contacts.length; ++i) {
+            contacts[i] = staggeredFrames.get(i).getContactCount();
+        }
+        System.out.format("Staggered %s, contacts per frame %s%n",
+                Arrays.equals(contacts, new int[] { 1, 1, 2, 2, 2, 1, 1, 0 }) ? "OK" : "FAILED",
+                Arrays.toString(contacts));
+
+        final List<String> withDevice = parse(RECORDING_LINES, TOUCHSCREEN.path + ": ");
+        final List<String> withoutDevice = parse(RECORDING_LINES, "");
+        System.out.format("Recording %s, %d of %d events with device path, %d without%n",
+                withDevice.size() == RECORDING_LINES.length && withDevice.equals(withoutDevice) ? "OK" : "FAILED",
+                withDevice.size(), RECORDING_LINES.length, withoutDevice.size());
+    }
+
+    /**
+     * Parses a recording in the format of <code>getevent -lt</code>.
+     *
+     * @param lines
+     *            The events of the recording after their timestamps
+     * @param device
+     *            The device path put between the timestamp and the event
+     *
+     * @return The parsed events as readable strings
+     */
+    private static List<String> parse(final String[] lines, final String device) {
+        final StringBuilder recording = new StringBuilder();
+        for (int i = 0; i < lines.length; ++i) {
+            recording.append(String.format("[%8d.%06d] %s%s%n", 100, i * 1000, device, lines[i]));
+        }
+
+        final byte[] bytes = recording.toString().getBytes(StandardCharsets.US_ASCII);
+        final List<String> events = new ArrayList<>();
+        try {
+            new GetEventParser().parse(new ByteArrayInputStream(bytes),
+                    (time, type, code, value) -> events.add(time + " " + type + " " + code + " " + value));
+        } catch (final IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        return events;
+    }
+
+}
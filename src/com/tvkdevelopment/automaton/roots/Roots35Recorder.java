@@ -0,0 +1,178 @@
+package com.tvkdevelopment.automaton.roots;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.tvkdevelopment.automaton.Automaton;
+import com.tvkdevelopment.automaton.Device;
+import com.tvkdevelopment.automaton.Timeline;
+import com.tvkdevelopment.automaton.adb.HostCommand;
+import com.tvkdevelopment.automaton.gesture.GestureRecorder;
+import com.tvkdevelopment.automaton.gesture.GetEventParser;
+import com.tvkdevelopment.automaton.gesture.TouchscreenInfo;
+
+/**
+ * Records a human play session of Roots and replays it. Usage:
+ *
+ * <pre>
+ * record &lt;seconds&gt; &lt;script&gt;     Records the touchscreen for a while and compiles it into a script
+ * compile &lt;log&gt; &lt;script&gt;        Compiles a saved <code>getevent -lt</code> log into a script
+ * replay &lt;script&gt;               Replays a script, reporting its deviation from the recorded timing
+ * </pre>
+ */
+public class Roots35Recorder {
+
+    /** The time after the recording's duration to wait for <code>getevent</code> to end before giving up on it */
+    private static final int STOP_GRACE = 3000;
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: record <seconds> <script> | compile <log> <script> | replay <script>");
+            return;
+        }
+
+        final Device device = Automaton.getDevice();
+        final TouchscreenInfo screen = TouchscreenInfo.detect(device);
+        Roots35.detectScreen();
+
+        switch (args[0]) {
+            case "record":
+                record(device, screen, Integer.parseInt(args[1]), Paths.get(args[2]));
+                break;
+            case "compile":
+                try (final InputStream in = Files.newInputStream(Paths.get(args[1]))) {
+                    compile(in, screen, Paths.get(args[2]));
+                }
+                break;
+            case "replay":
+                replay(screen, Paths.get(args[1]));
+                break;
+            default:
+                System.out.println("Unknown command: " + args[0]);
+                break;
+        }
+    }
+
+    /**
+     * Records the touchscreen while the game is played and compiles the gestures into a script. Events are parsed as
+     * they stream in, so the recording is compiled as soon as it ends. The device ends <code>getevent</code> itself,
+     * as killing the host's shell wrapper may leave adb running and holding the output open. Should the device not
+     * end it, the output is closed and treated as ended shortly after the duration.
+     *
+     * @param device
+     *            The device to record
+     * @param screen
+     *            The touchscreen of the device
+     * @param seconds
+     *            The duration of the recording
+     * @param output
+     *            The path to write the script to
+     *
+     * @throws IOException
+     *             When recording or writing fails
+     */
+    private static void record(final Device device, final TouchscreenInfo screen, final int seconds,
+            final Path output) throws IOException {
+        final Process process = HostCommand.create(HostCommand.adb(device.getSerial()) + "shell timeout " + seconds
+                + " getevent -lt " + screen.path).start();
+
+        // Reading fails once the stopper closes the output, which then just ends the recording
+        final AtomicBoolean stopped = new AtomicBoolean();
+        final InputStream in = new FilterInputStream(process.getInputStream()) {
+            @Override
+            public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                try {
+                    return stopped.get() ? -1 : super.read(buffer, offset, length);
+                } catch (final IOException ex) {
+                    if (stopped.get()) {
+                        return -1;
+                    }
+                    throw ex;
+                }
+            }
+        };
+
+        final Thread stopper = new Thread(() -> {
+            try {
+                Thread.sleep(seconds * 1000L + STOP_GRACE);
+            } catch (final InterruptedException ex) {
+                return;
+            }
+            System.out.println("Recording didn't end on the device, closing it");
+            stopped.set(true);
+            process.destroy();
+            try {
+                process.getInputStream().close();
+            } catch (final IOException ex) {
+                ex.printStackTrace();
+            }
+        });
+        stopper.setDaemon(true);
+        stopper.start();
+
+        System.out.println("Recording " + screen.path + " for " + seconds + "s");
+        try {
+            compile(in, screen, output);
+        } finally {
+            stopper.interrupt();
+            process.destroy();
+        }
+    }
+
+    /**
+     * Parses <code>getevent -lt</code> output and writes the compiled script.
+     *
+     * @param in
+     *            The stream of <code>getevent -lt</code> output
+     * @param screen
+     *            The touchscreen that the events were recorded on
+     * @param output
+     *            The path to write the script to
+     *
+     * @throws IOException
+     *             When reading or writing fails
+     */
+    private static void compile(final InputStream in, final TouchscreenInfo screen, final Path output)
+            throws IOException {
+        final GestureRecorder recorder = new GestureRecorder();
+        final long start = System.nanoTime();
+        new GetEventParser().parse(in, recorder);
+        final long parsed = System.nanoTime();
+
+        final Roots35Script script = Roots35Script.compile(recorder.getGestures(), screen);
+        script.write(output);
+
+        System.out.format("Parsed %d events into %d gestures in %.1fms, compiled %d steps over %.1fs to %s%n",
+                recorder.getEventCount(), recorder.getGestures().size(), (parsed - start) / 1e6, script.size(),
+                script.getDuration() / 1e3, output);
+    }
+
+    /**
+     * Replays a script at its recorded timing. The timeline's report shows how far each step deviated from the
+     * recording.
+     *
+     * @param screen
+     *            The touchscreen of the device
+     * @param input
+     *            The path of the script
+     *
+     * @throws IOException
+     *             When reading fails
+     */
+    private static void replay(final TouchscreenInfo screen, final Path input) throws IOException {
+        final Roots35Script script = Roots35Script.read(input);
+        Roots35.setTouchscreen(screen);
+
+        final Timeline timeline = new Timeline();
+        script.schedule(timeline);
+
+        System.out.format("Replaying %d steps recorded over %.1fs%n", script.size(), script.getDuration() / 1e3);
+        timeline.run();
+    }
+
+}
@@ -0,0 +1,280 @@
+package com.tvkdevelopment.automaton.roots;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.tvkdevelopment.automaton.Automaton;
+import com.tvkdevelopment.automaton.ScreenCoord;
+import com.tvkdevelopment.automaton.Timeline;
+import com.tvkdevelopment.automaton.gesture.GestureRecorder.RecordedGesture;
+import com.tvkdevelopment.automaton.gesture.MultiTouchGesture;
+import com.tvkdevelopment.automaton.gesture.TouchscreenInfo;
+
+/**
+ * A compiled recording of a Roots play session. Every step is stored on a single line as its offset and duration in
+ * milliseconds followed by the action, where swipes between nodes are stored as node columns and rows so that they
+ * replay onto the nodes regardless of small deviations in the recorded positions:
+ *
+ * <pre>
+ * 0 52 tap 1500 950
+ * 812 164 swipe 10 0 8 0
+ * 905 120 drag 300 400 600 400
+ * </pre>
+ */
+public class Roots35Script {
+
+    /** The distance in pixels that a finger may move while still being considered a tap */
+    private static final int TAP_SLOP = 30;
+
+    /**
+     * A single recorded action.
+     */
+    private static class Step {
+
+        /** The offset from the start of the recording in milliseconds */
+        final long offset;
+        /** The time the finger was down in milliseconds */
+        final long duration;
+        /** The action: swipe, tap or drag */
+        final String action;
+        /** The node columns and rows for swipes or the screen coordinates for taps and drags */
+        final int[] args;
+
+        /**
+         * Creates a step.
+         *
+         * @param offset
+         *            The offset from the start of the recording in milliseconds
+         * @param duration
+         *            The time the finger was down in milliseconds
+         * @param action
+         *            The action: swipe, tap or drag
+         * @param args
+         *            The node columns and rows for swipes or the screen coordinates for taps and drags
+         */
+        Step(final long offset, final long duration, final String action, final int... args) {
+            this.offset = offset;
+            this.duration = duration;
+            this.action = action;
+            this.args = args;
+        }
+
+        /**
+         * @return The description of the step, as a line of the script without timing
+         */
+        String getLabel() {
+            final StringBuilder label = new StringBuilder(action);
+            for (final int arg : args) {
+                label.append(' ').append(arg);
+            }
+            return label.toString();
+        }
+
+    }
+
+    /** The steps of the script, ordered by offset */
+    private final List<Step> mSteps = new ArrayList<>();
+
+    /**
+     * Compiles recorded gestures into a script. Gestures starting and ending on different nodes become swipes, gestures
+     * that hardly move become taps and anything else is kept as a drag between screen coordinates.
+     *
+     * @param gestures
+     *            The recorded gestures, ordered by start time
+     * @param screen
+     *            The touchscreen that the gestures were recorded on
+     *
+     * @return The compiled script
+     */
+    public static Roots35Script compile(final List<RecordedGesture> gestures, final TouchscreenInfo screen) {
+        final Roots35Script script = new Roots35Script();
+        if (gestures.isEmpty()) {
+            return script;
+        }
+
+        final long origin = gestures.get(0).startTime;
+        for (final RecordedGesture gesture : gestures) {
+            final long offset = (gesture.startTime - origin) / 1000;
+            final long duration = (gesture.endTime - gesture.startTime) / 1000;
+            final ScreenCoord from = screen.toScreen(gesture.fromX, gesture.fromY);
+            final ScreenCoord to = screen.toScreen(gesture.toX, gesture.toY);
+            final int[] fromNode = Roots35.findNode(from);
+            final int[] toNode = Roots35.findNode(to);
+
+            if (fromNode != null && toNode != null && (fromNode[0] != toNode[0] || fromNode[1] != toNode[1])) {
+                script.mSteps.add(new Step(offset, duration, "swipe", fromNode[0], fromNode[1], toNode[0], toNode[1]));
+            } else if (Math.abs(to.x - from.x) <= TAP_SLOP && Math.abs(to.y - from.y) <= TAP_SLOP) {
+                script.mSteps.add(new Step(offset, duration, "tap", from.x, from.y));
+            } else {
+                script.mSteps.add(new Step(offset, duration, "drag", from.x, from.y, to.x, to.y));
+            }
+        }
+        return script;
+    }
+
+    /**
+     * Reads a script from a file.
+     *
+     * @param path
+     *            The path of the script
+     *
+     * @return The script
+     *
+     * @throws IOException
+     *             When reading fails
+     */
+    public static Roots35Script read(final Path path) throws IOException {
+        final Roots35Script script = new Roots35Script();
+        try (final BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                final String[] parts = line.split("\\s+");
+                final int[] args = new int[parts.length - 3];
+                for (int i = 0; i < args.length; ++i) {
+                    args[i] = Integer.parseInt(parts[i + 3]);
+                }
+                script.mSteps.add(new Step(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2], args));
+            }
+        }
+        return script;
+    }
+
+    /**
+     * Writes the script to a file.
+     *
+     * @param path
+     *            The path to write the script to
+     *
+     * @throws IOException
+     *             When writing fails
+     */
+    public void write(final Path path) throws IOException {
+        try (final BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("# offset duration action arguments, in milliseconds and node columns and rows or pixels");
+            writer.newLine();
+            for (final Step step : mSteps) {
+                writer.write(step.offset + " " + step.duration + " " + step.getLabel());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * @return The amount of steps in the script
+     */
+    public int size() {
+        return mSteps.size();
+    }
+
+    /**
+     * @return The time from the start of the first step to the end of the last in milliseconds
+     */
+    public long getDuration() {
+        long duration = 0;
+        for (final Step step : mSteps) {
+            duration = Math.max(duration, step.offset + step.duration);
+        }
+        return duration;
+    }
+
+    /**
+     * Schedules the script on a timeline at its recorded offsets, so that the timeline's lateness report is the
+     * replay's deviation from the recording. Swipes that overlapped in time were performed with several fingers and
+     * are replayed as a single multi-touch gesture, in which every finger touches down at its own recorded offset and
+     * moves for its own recorded duration, rounded to the gesture's frames. As the timeline only sees the start of such
+     * a gesture, the rounding of each later finger is added to its label. Other swipes and drags are replayed as
+     * gestures of one finger that move for their recorded duration.
+     *
+     * @param timeline
+     *            The timeline to schedule the steps on
+     */
+    public void schedule(final Timeline timeline) {
+        for (int i = 0; i < mSteps.size();) {
+            final Step step = mSteps.get(i);
+            final String label = step.getLabel();
+            final int[] args = step.args;
+
+            switch (step.action) {
+                case "swipe":
+                    // Gather the swipes that started while this block's fingers were still down
+                    long end = step.offset + step.duration;
+                    int next = i + 1;
+                    while (next < mSteps.size() && mSteps.get(next).action.equals("swipe")
+                            && mSteps.get(next).offset < end) {
+                        end = Math.max(end, mSteps.get(next).offset + mSteps.get(next).duration);
+                        ++next;
+                    }
+
+                    if (next == i + 1) {
+                        timeline.at(step.offset, label, () -> {
+                            System.out.println(label);
+                            Roots35.performSwipe(Roots35.getNode(args[0], args[1]), Roots35.getNode(args[2], args[3]),
+                                    step.duration);
+                        });
+                    } else {
+                        scheduleGesture(timeline, mSteps.subList(i, next));
+                    }
+                    i = next;
+                    continue;
+
+                case "tap":
+                    timeline.at(step.offset, label, () -> {
+                        System.out.println(label);
+                        Automaton.tap(new ScreenCoord(args[0], args[1]));
+                    });
+                    break;
+
+                case "drag":
+                    timeline.at(step.offset, label, () -> {
+                        System.out.println(label);
+                        Roots35.performSwipe(new ScreenCoord(args[0], args[1]), new ScreenCoord(args[2], args[3]),
+                                step.duration);
+                    });
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("Unknown action: " + step.action);
+            }
+            ++i;
+        }
+    }
+
+    /**
+     * Schedules overlapping swipes as a single multi-touch gesture whose fingers keep their recorded timing.
+     *
+     * @param timeline
+     *            The timeline to schedule the gesture on
+     * @param swipes
+     *            The swipe steps, ordered by offset
+     */
+    private static void scheduleGesture(final Timeline timeline, final List<Step> swipes) {
+        final int interval = MultiTouchGesture.DEFAULT_FRAME_INTERVAL;
+        final long start = swipes.get(0).offset;
+        final MultiTouchGesture gesture = new MultiTouchGesture(MultiTouchGesture.DEFAULT_STEPS, interval);
+        final StringBuilder label = new StringBuilder("gesture of " + swipes.size() + " swipes:");
+        for (final Step swipe : swipes) {
+            final int startFrame = (int) Math.round((swipe.offset - start) / (double) interval);
+            final int steps = (int) Math.max(1, swipe.duration / interval);
+            gesture.add(Roots35.getNode(swipe.args[0], swipe.args[1]), Roots35.getNode(swipe.args[2], swipe.args[3]),
+                    startFrame, steps);
+            label.append(' ').append(swipe.getLabel()).append(String.format(" (%+dms)",
+                    startFrame * interval - (swipe.offset - start)));
+        }
+        final String description = label.toString();
+        timeline.at(start, description, () -> {
+            System.out.println(description);
+            Roots35.perform(gesture);
+        });
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.tvkdevelopment.automaton.transport;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import com.tvkdevelopment.automaton.adb.HostCommand;
+
+/**
+ * A transport that starts a new ADB process for every command.
+ */
+public class AdbProcessTransport extends ShellCommandTransport {
+
+    /** The serial of the device or null to use the only connected device */
+    protected final String mSerial;
+
+    /**
+     * Creates a transport for a device.
+     *
+     * @param serial
+     *            The serial of the device or null to use the only connected device
+     */
+    public AdbProcessTransport(final String serial) {
+        mSerial = serial;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> shell(final String command) {
+        return HostCommand.run(HostCommand.adb(mSerial) + "shell " + command);
+    }
+
+    /**
+     * Pulls the screenshot to the executable's directory and reads it from there.
+     */
+    @Override
+    protected BufferedImage pullScreen(final String remotePath) {
+        final String localPath = mSerial != null ? "screen-" + mSerial + ".png" : "screen.png";
+        HostCommand.run(HostCommand.adb(mSerial) + "pull " + remotePath + " " + localPath);
+        try {
+            return ImageIO.read(new File(localPath));
+        } catch (final IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Starts an <code>adb exec-out</code> process and streams its standard output.
+     */
+    @Override
+    protected InputStream execOut(final String command) throws IOException {
+        final Process process = HostCommand.create(HostCommand.adb(mSerial) + "exec-out " + command).start();
+        return new FilterInputStream(process.getInputStream()) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                process.destroy();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.tvkdevelopment.automaton.transport;
+
+import java.util.List;
+
+import com.tvkdevelopment.automaton.adb.AdbShell;
+
+/**
+ * A transport that sends device commands through one persistent {@link AdbShell}, only starting ADB processes to
+ * capture screenshots.
+ */
+public class AdbShellTransport extends AdbProcessTransport {
+
+    /** The persistent shell session */
+    private final AdbShell mShell;
+
+    /**
+     * Creates a transport for a device.
+     *
+     * @param serial
+     *            The serial of the device or null to use the only connected device
+     */
+    public AdbShellTransport(final String serial) {
+        super(serial);
+        mShell = new AdbShell(serial);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> shell(final String command) {
+        return mShell.executeAndWait(command);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        mShell.close();
+    }
+
+}
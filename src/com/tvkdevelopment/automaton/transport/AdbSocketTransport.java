@@ -0,0 +1,72 @@
+package com.tvkdevelopment.automaton.transport;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import com.tvkdevelopment.automaton.adb.AdbClient;
+
+/**
+ * A transport that talks to the ADB server's socket through an {@link AdbClient}, never starting a process.
+ */
+public class AdbSocketTransport extends ShellCommandTransport {
+
+    /** The client talking to the ADB server */
+    protected final AdbClient mClient;
+
+    /**
+     * Creates a transport for a device connected to the local ADB server.
+     *
+     * @param serial
+     *            The serial of the device or null to use the only connected device
+     */
+    public AdbSocketTransport(final String serial) {
+        this(new AdbClient(AdbClient.DEFAULT_HOST, AdbClient.DEFAULT_PORT, serial));
+    }
+
+    /**
+     * Creates a transport using the given client.
+     *
+     * @param client
+     *            The client talking to the ADB server
+     */
+    public AdbSocketTransport(final AdbClient client) {
+        mClient = client;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> shell(final String command) {
+        final String output = mClient.shell(command);
+        return output.isEmpty() ? Collections.<String> emptyList() : Arrays.asList(output.split("\r?\n"));
+    }
+
+    /**
+     * Pulls the screenshot into memory through the sync service.
+     */
+    @Override
+    protected BufferedImage pullScreen(final String remotePath) {
+        try {
+            return ImageIO.read(new ByteArrayInputStream(mClient.pull(remotePath)));
+        } catch (final IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Opens an exec service on the ADB server, streaming the output over the socket.
+     */
+    @Override
+    protected InputStream execOut(final String command) throws IOException {
+        return mClient.openExec(command);
+    }
+
+}
@@ -0,0 +1,259 @@
+package com.tvkdevelopment.automaton.transport;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPOutputStream;
+
+import javax.imageio.ImageIO;
+
+import com.tvkdevelopment.automaton.Frame;
+import com.tvkdevelopment.automaton.RowListener;
+import com.tvkdevelopment.automaton.adb.AdbClient;
+import com.tvkdevelopment.automaton.adb.FakeAdbServer;
+
+/**
+ * Compares the end-to-end time of capturing a 1080x1920 screen in each {@link CaptureMode}. By default it runs against
+ * a {@link FakeAdbServer} serving a generated game board, which leaves out the device's encoding time but checks that
+ * every mode decodes the same pixels, and that compressed captures that fail to decode don't hang. Passing
+ * <code>device</code> as argument captures the real device's screen.
+ */
+public class CaptureBenchmark {
+
+    /** The amount of captures per mode */
+    private static final int CAPTURES = 20;
+    /** The width of the generated screen */
+    private static final int WIDTH = 1080;
+    /** The height of the generated screen */
+    private static final int HEIGHT = 1920;
+    /** The first row of the game board */
+    private static final int BOARD_TOP = 505;
+    /** The row after the last row of the game board */
+    private static final int BOARD_BOTTOM = 1465;
+    /** The longest time a failing capture may take before it's considered hanging in milliseconds */
+    private static final int FAILURE_TIMEOUT = 5000;
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("device")) {
+            benchmark(new AdbSocketTransport(new AdbClient()), null);
+            return;
+        }
+
+        final BufferedImage screen = createScreen();
+        final byte[] png = encodePng(screen);
+        final byte[] raw = encodeRaw(screen);
+        final byte[] gzip = encodeGzip(raw);
+        System.out.format("Screen sizes: PNG %d bytes, raw %d bytes, raw gzip %d bytes%n", png.length, raw.length,
+                gzip.length);
+
+        try (FakeAdbServer server = new FakeAdbServer(command -> {
+            switch (command) {
+                case "screencap -p":
+                    return png;
+                case "screencap":
+                    return raw;
+                case "screencap | gzip -1":
+                    return gzip;
+                case "getprop ro.build.version.sdk":
+                    return "30\n".getBytes(StandardCharsets.UTF_8);
+                default:
+                    return new byte[0];
+            }
+        })) {
+            benchmark(new AdbSocketTransport(server.createClient()), Frame.fromImage(screen, null).getPixels());
+        }
+
+        // A header with an unknown pixel format, followed by a few pixels
+        final byte[] badHeader = new byte[16 + 64];
+        writeIntLe(badHeader, 0, 4);
+        writeIntLe(badHeader, 4, 4);
+        writeIntLe(badHeader, 8, 99);
+        checkFailure("Bad header", encodeGzip(badHeader), null);
+
+        // A valid capture whose rows are handed to a listener that throws
+        final byte[] small = new byte[16 + 4 * 4 * 4];
+        writeIntLe(small, 0, 4);
+        writeIntLe(small, 4, 4);
+        writeIntLe(small, 8, 1);
+        checkFailure("Throwing listener", encodeGzip(small), (frame, fromRow, toRow) -> {
+            throw new IllegalStateException("Listener failed");
+        });
+    }
+
+    /**
+     * Decodes a compressed capture that must fail and prints whether it failed in time, and whether a valid capture
+     * decodes afterwards with the same decoder.
+     *
+     * @param name
+     *            The name of the failure
+     * @param gzip
+     *            The compressed capture
+     * @param listener
+     *            The listener told about converted rows or null if there is none
+     */
+    private static void checkFailure(final String name, final byte[] gzip, final RowListener listener)
+            throws IOException {
+        final RawScreenDecoder decoder = new RawScreenDecoder(16);
+        final byte[] valid = new byte[16 + 4 * 4 * 4];
+        writeIntLe(valid, 0, 4);
+        writeIntLe(valid, 4, 4);
+        writeIntLe(valid, 8, 1);
+        final byte[] validGzip = encodeGzip(valid);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        String result;
+        try {
+            final Future<String> failure = executor.submit(() -> {
+                try {
+                    decoder.decodeGzip(new ByteArrayInputStream(gzip), null, 0, 4, listener);
+                    return "FAILED decoded without error";
+                } catch (final IOException | RuntimeException ex) {
+                    decoder.decodeGzip(new ByteArrayInputStream(validGzip), null, 0, 4, null);
+                    return "OK, failed with " + ex.getMessage();
+                }
+            });
+            result = failure.get(FAILURE_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException ex) {
+            result = "FAILED hung for " + FAILURE_TIMEOUT + "ms";
+        } catch (final InterruptedException | ExecutionException ex) {
+            result = "FAILED " + ex;
+        } finally {
+            executor.shutdownNow();
+        }
+        System.out.format("%-18s %s%n", name, result);
+    }
+
+    /**
+     * Captures the screen in every mode and prints the average time per capture.
+     *
+     * @param transport
+     *            The transport to capture through
+     * @param expected
+     *            The pixels every mode should decode or null to not check them
+     */
+    private static void benchmark(final ShellCommandTransport transport, final int[] expected) {
+        for (final CaptureMode mode : CaptureMode.values()) {
+            if (mode == CaptureMode.PNG_FILE && expected != null) {
+                // The fake server has no storage that screencap can write to
+                continue;
+            }
+            transport.setCaptureMode(mode);
+
+            // Warm up and check the decoded pixels
+            Frame frame = transport.captureFrame(null);
+            final boolean correct = expected == null || Arrays.equals(frame.getPixels(), expected);
+
+            final long start = System.nanoTime();
+            for (int i = 0; i < CAPTURES; ++i) {
+                frame = transport.captureFrame(frame);
+            }
+            final double ms = (System.nanoTime() - start) / 1e6 / CAPTURES;
+            System.out.format("%-9s %8.1fms per capture%s%n", mode, ms,
+                    expected == null ? "" : correct ? "  OK" : "  FAILED pixels differ");
+
+            // Measure when the board's rows are available when only they are captured
+            if (mode == CaptureMode.RAW || mode == CaptureMode.RAW_GZIP) {
+                final long[] boardNanos = new long[1];
+                final long boardStart = System.nanoTime();
+                for (int i = 0; i < CAPTURES; ++i) {
+                    final long captureStart = System.nanoTime();
+                    frame = transport.captureRows(frame, BOARD_TOP, BOARD_BOTTOM, (f, fromRow, toRow) -> {
+                        if (toRow == BOARD_BOTTOM) {
+                            boardNanos[0] += System.nanoTime() - captureStart;
+                        }
+                    });
+                }
+                final double boardMs = (System.nanoTime() - boardStart) / 1e6 / CAPTURES;
+                System.out.format("%-9s %8.1fms per board capture, board rows ready after %.1fms%n", mode, boardMs,
+                        boardNanos[0] / 1e6 / CAPTURES);
+            }
+        }
+        transport.close();
+    }
+
+    /**
+     * @return A screen resembling a game board of coloured tiles on a plain background
+     */
+    private static BufferedImage createScreen() {
+        final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(0x202020));
+        graphics.fillRect(0, 0, WIDTH, HEIGHT);
+
+        final Random random = new Random(42);
+        final Color[] colours = { new Color(0xff384b), new Color(0x1cc0e0), new Color(0x2a2a2a) };
+        for (int row = 0; row < 8; ++row) {
+            for (int column = 0; column < 8; ++column) {
+                graphics.setColor(colours[random.nextInt(colours.length)]);
+                graphics.fillRoundRect(55 + column * 120 + 4, 505 + row * 120 + 4, 112, 112, 16, 16);
+            }
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    /**
+     * @return The image as <code>screencap -p</code> outputs it
+     */
+    private static byte[] encodePng(final BufferedImage image) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return The image as <code>screencap</code> outputs it on Android 9 and up
+     */
+    private static byte[] encodeRaw(final BufferedImage image) {
+        final byte[] raw = new byte[16 + WIDTH * HEIGHT * 4];
+        writeIntLe(raw, 0, WIDTH);
+        writeIntLe(raw, 4, HEIGHT);
+        writeIntLe(raw, 8, 1);
+        writeIntLe(raw, 12, 0);
+        int i = 16;
+        for (int y = 0; y < HEIGHT; ++y) {
+            for (int x = 0; x < WIDTH; ++x) {
+                final int rgb = image.getRGB(x, y);
+                raw[i++] = (byte) (rgb >> 16);
+                raw[i++] = (byte) (rgb >> 8);
+                raw[i++] = (byte) rgb;
+                raw[i++] = (byte) 0xff;
+            }
+        }
+        return raw;
+    }
+
+    /**
+     * @return The data as <code>gzip -1</code> outputs it
+     */
+    private static byte[] encodeGzip(final byte[] data) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes a little-endian int.
+     */
+    private static void writeIntLe(final byte[] data, final int offset, final int value) {
+        data[offset] = (byte) value;
+        data[offset + 1] = (byte) (value >> 8);
+        data[offset + 2] = (byte) (value >> 16);
+        data[offset + 3] = (byte) (value >> 24);
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.tvkdevelopment.automaton.transport;
+
+/**
+ * The ways that {@link ShellCommandTransport}s can capture the screen.
+ */
+public enum CaptureMode {
+
+    /** A PNG stored on the device's storage and then pulled */
+    PNG_FILE,
+    /** A PNG streamed into memory and decoded while it arrives */
+    PNG,
+    /** Raw pixels streamed straight into a frame, with neither side encoding or decoding an image */
+    RAW,
+    /** Raw pixels compressed with gzip on the device and inflated in parallel with converting them */
+    RAW_GZIP
+
+}
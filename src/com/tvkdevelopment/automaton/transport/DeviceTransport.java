@@ -0,0 +1,105 @@
+package com.tvkdevelopment.automaton.transport;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import com.tvkdevelopment.automaton.Frame;
+import com.tvkdevelopment.automaton.RowListener;
+import com.tvkdevelopment.automaton.ScreenCoord;
+
+/**
+ * A way of talking to an Android device. Input methods return once the device has acknowledged the event, so callers
+ * don't need to guess how long it takes to process.
+ */
+public interface DeviceTransport extends AutoCloseable {
+
+    /**
+     * Inputs a single tap event.
+     *
+     * @param target
+     *            The target coordinate for the tap
+     */
+    void tap(ScreenCoord target);
+
+    /**
+     * Inputs a sequence of tap events as one batch.
+     *
+     * @param targets
+     *            The target coordinates for the taps, in the order to tap them
+     * @param gapMs
+     *            The time between consecutive taps in milliseconds
+     */
+    void tapAll(List<ScreenCoord> targets, int gapMs);
+
+    /**
+     * Inputs a swipe event.
+     *
+     * @param from
+     *            The coordinate for the start of the swipe
+     * @param to
+     *            The coordinate for the end of the swipe
+     */
+    void swipe(ScreenCoord from, ScreenCoord to);
+
+    /**
+     * Captures the current contents of the screen.
+     *
+     * @return The screenshot
+     */
+    BufferedImage captureScreen();
+
+    /**
+     * Captures the current contents of the screen into a frame, reusing the given frame's buffer when possible.
+     *
+     * @param reuse
+     *            The frame to capture into if it has the screen's size or null to create one
+     *
+     * @return The frame holding the screenshot, which is either the reused frame or a new one
+     */
+    default Frame captureFrame(final Frame reuse) {
+        return Frame.fromImage(captureScreen(), reuse);
+    }
+
+    /**
+     * Captures a band of rows of the screen into a frame, telling the listener about the rows as they become available.
+     * Rows outside of the band may keep the reused frame's earlier contents. By default the whole screen is captured
+     * and the band is reported at once.
+     *
+     * @param reuse
+     *            The frame to capture into if it has the screen's size or null to create one
+     * @param top
+     *            The first row to capture
+     * @param bottom
+     *            The row after the last row to capture
+     * @param listener
+     *            The listener told about captured rows or null if there is none
+     *
+     * @return The frame holding the screenshot, which is either the reused frame or a new one
+     */
+    default Frame captureRows(final Frame reuse, final int top, final int bottom, final RowListener listener) {
+        final Frame frame = captureFrame(reuse);
+        final int from = Math.max(0, Math.min(top, frame.getHeight()));
+        final int to = Math.max(from, Math.min(bottom, frame.getHeight()));
+        if (listener != null && to > from) {
+            listener.onRows(frame, from, to);
+        }
+        return frame;
+    }
+
+    /**
+     * Executes a shell command on the device and waits for it to complete.
+     *
+     * @param command
+     *            The command to execute
+     *
+     * @return The lines of output that the command produced
+     */
+    List<String> shell(String command);
+
+    /**
+     * Releases the resources held by the transport.
+     */
+    @Override
+    default void close() {}
+
+}
@@ -0,0 +1,69 @@
+package com.tvkdevelopment.automaton.transport;
+
+import com.tvkdevelopment.automaton.input.InputProtocol;
+
+/**
+ * Creates device transports by name, allowing the transport to be chosen through configuration. The
+ * <code>automaton.transport</code> system property selects the transport and <code>automaton.serial</code> the device.
+ * Prefixing a name with <code>recording:</code> records and prints all calls made to that transport.
+ */
+public final class DeviceTransports {
+
+    /** The system property holding the name of the transport to use */
+    public static final String TRANSPORT_PROPERTY = "automaton.transport";
+    /** The system property holding the serial of the device to use */
+    public static final String SERIAL_PROPERTY = "automaton.serial";
+    /** The name of the transport used when none is configured */
+    public static final String DEFAULT_TRANSPORT = "shell";
+    /** The names of all available transports */
+    public static final String[] NAMES = { "process", "shell", "socket", "input-server", "null" };
+
+    private DeviceTransports() {}
+
+    /**
+     * Creates the transport configured through system properties.
+     *
+     * @param serial
+     *            The serial of the device or null to use the one configured, if any
+     *
+     * @return The configured transport
+     */
+    public static DeviceTransport fromConfig(final String serial) {
+        return create(System.getProperty(TRANSPORT_PROPERTY, DEFAULT_TRANSPORT),
+                serial != null ? serial : System.getProperty(SERIAL_PROPERTY));
+    }
+
+    /**
+     * Creates a transport by name.
+     *
+     * @param name
+     *            The name of the transport, optionally prefixed with <code>recording:</code>
+     * @param serial
+     *            The serial of the device or null to use the only connected device
+     *
+     * @return The transport
+     */
+    public static DeviceTransport create(final String name, final String serial) {
+        if (name.startsWith("recording:")) {
+            return new RecordingTransport(create(name.substring("recording:".length()), serial), true);
+        }
+
+        switch (name) {
+            case "process":
+                return new AdbProcessTransport(serial);
+            case "shell":
+                return new AdbShellTransport(serial);
+            case "socket":
+                return new AdbSocketTransport(serial);
+            case "input-server":
+                return new InputServerTransport(InputProtocol.DEFAULT_PORT, new AdbShellTransport(serial));
+            case "null":
+                return new NullTransport();
+            case "recording":
+                return new RecordingTransport(new NullTransport(), true);
+            default:
+                throw new RuntimeException("Unknown transport " + name);
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.tvkdevelopment.automaton.transport;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import com.tvkdevelopment.automaton.Frame;
+import com.tvkdevelopment.automaton.RowListener;
+import com.tvkdevelopment.automaton.ScreenCoord;
+import com.tvkdevelopment.automaton.input.InputServer;
+import com.tvkdevelopment.automaton.input.InputServerClient;
+
+/**
+ * A transport that sends taps and swipes to an {@link InputServer} on the device, leaving screen captures and shell
+ * commands to another transport.
+ */
+public class InputServerTransport implements DeviceTransport {
+
+    /** The client sending events to the input server */
+    private final InputServerClient mClient;
+    /** The transport used for everything but input events */
+    private final DeviceTransport mDelegate;
+
+    /**
+     * Creates a transport for an input server forwarded to the given local port.
+     *
+     * @param port
+     *            The port on the host that is forwarded to the input server
+     * @param delegate
+     *            The transport used for everything but input events
+     */
+    public InputServerTransport(final int port, final DeviceTransport delegate) {
+        mClient = new InputServerClient(port);
+        mDelegate = delegate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void tap(final ScreenCoord target) {
+        mClient.tap(target);
+        mClient.sync();
+    }
+
+    /**
+     * Streams the taps to the server and waits for them all to be injected.
+     */
+    @Override
+    public void tapAll(final List<ScreenCoord> targets, final int gapMs) {
+        try {
+            for (int i = 0; i < targets.size(); ++i) {
+                if (i > 0 && gapMs > 0) {
+                    Thread.sleep(gapMs);
+                }
+                mClient.tap(targets.get(i));
+            }
+        } catch (final InterruptedException ex) {
+            ex.printStackTrace();
+        }
+        mClient.sync();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void swipe(final ScreenCoord from, final ScreenCoord to) {
+        mClient.swipe(from, to);
+        mClient.sync();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BufferedImage captureScreen() {
+        return mDelegate.captureScreen();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Frame captureFrame(final Frame reuse) {
+        return mDelegate.captureFrame(reuse);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Frame captureRows(final Frame reuse, final int top, final int bottom, final RowListener listener) {
+        return mDelegate.captureRows(reuse, top, bottom, listener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> shell(final String command) {
+        return mDelegate.shell(command);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        mClient.close();
+        mDelegate.close();
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.tvkdevelopment.automaton.transport;
+
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.List;
+
+import com.tvkdevelopment.automaton.ScreenCoord;
+
+/**
+ * A transport without a device. Input events are dropped and screen captures return a fixed image, which allows
+ * automatons to run against a saved screenshot.
+ */
+public class NullTransport implements DeviceTransport {
+
+    /** The width of the blank screen used when no image is given */
+    private static final int DEFAULT_WIDTH = 1080;
+    /** The height of the blank screen used when no image is given */
+    private static final int DEFAULT_HEIGHT = 1920;
+
+    /** The image returned for every screen capture */
+    private BufferedImage mScreen;
+
+    /**
+     * Creates a transport whose screen is blank.
+     */
+    public NullTransport() {
+        this(new BufferedImage(DEFAULT_WIDTH, DEFAULT_HEIGHT, BufferedImage.TYPE_INT_RGB));
+    }
+
+    /**
+     * Creates a transport whose screen shows the given image.
+     *
+     * @param screen
+     *            The image returned for every screen capture
+     */
+    public NullTransport(final BufferedImage screen) {
+        mScreen = screen;
+    }
+
+    /**
+     * Changes the image returned for screen captures.
+     *
+     * @param screen
+     *            The image returned for every screen capture
+     */
+    public void setScreen(final BufferedImage screen) {
+        mScreen = screen;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void tap(final ScreenCoord target) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void tapAll(final List<ScreenCoord> targets, final int gapMs) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void swipe(final ScreenCoord from, final ScreenCoord to) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BufferedImage captureScreen() {
+        return mScreen;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> shell(final String command) {
+        return Collections.emptyList();
+    }
+
+}
@@ -0,0 +1,388 @@
+package com.tvkdevelopment.automaton.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import com.tvkdevelopment.automaton.Frame;
+import com.tvkdevelopment.automaton.RowListener;
+
+/**
+ * Decodes the raw output of <code>screencap</code> without a file argument: a header of width, height and pixel format
+ * as little-endian ints, followed by a colour space on Android 9 and up, and then four bytes per pixel. Pixels are
+ * converted chunk by chunk as they arrive, straight into a reusable {@link Frame}, so no full-size byte copy of the
+ * screen is ever made.
+ *
+ * Decoding can be limited to a band of rows, in which case the rows outside of it are read but not converted and keep
+ * whatever the reused frame held before. A {@link RowListener} is told about the rows of the band as soon as they are
+ * converted, so they can be processed while the rest of the screen is still arriving.
+ *
+ * Compressed output is inflated on a separate thread that hands filled chunks over to the converting thread, so
+ * reading and inflating the next chunk overlaps with converting the current one.
+ */
+class RawScreenDecoder {
+
+    /** The size of the chunks that output is read in, a multiple of the pixel size */
+    private static final int CHUNK_SIZE = 256 * 1024;
+    /** The amount of chunks in flight between the inflating and converting threads */
+    private static final int PIPELINE_CHUNKS = 4;
+
+    /** Four bytes per pixel in red, green, blue and alpha order */
+    private static final int FORMAT_RGBA_8888 = 1;
+    /** Four bytes per pixel in red, green, blue and unused order */
+    private static final int FORMAT_RGBX_8888 = 2;
+    /** Four bytes per pixel in blue, green, red and alpha order */
+    private static final int FORMAT_BGRA_8888 = 5;
+
+    /**
+     * A buffer of output passed between threads.
+     */
+    private static class Chunk {
+
+        /** The bytes of the chunk */
+        final byte[] data = new byte[CHUNK_SIZE];
+        /** The amount of valid bytes, less than the capacity only for the last chunk */
+        int length;
+
+    }
+
+    /** The size of the header before the pixels in bytes */
+    private final int mHeaderSize;
+    /** The chunk used when decoding on a single thread */
+    private final Chunk mChunk = new Chunk();
+    /** The chunks that the inflating thread may fill */
+    private final BlockingQueue<Chunk> mFree = new ArrayBlockingQueue<>(PIPELINE_CHUNKS);
+    /** The chunks filled by the inflating thread, in order */
+    private final BlockingQueue<Chunk> mFilled = new ArrayBlockingQueue<>(PIPELINE_CHUNKS + 1);
+    /** The chunk that signals that inflating failed */
+    private final Chunk mFailed = new Chunk();
+    /** The thread inflating compressed output, created when first needed */
+    private ExecutorService mInflater;
+    /** The error that made inflating fail */
+    private volatile IOException mError;
+
+    /** The frame being decoded into */
+    private Frame mFrame;
+    /** Whether or not the red and blue channels are swapped in the output */
+    private boolean mBgr;
+    /** The index of the next pixel to decode */
+    private int mPixel;
+    /** The first row to convert, as requested */
+    private int mTop;
+    /** The row after the last row to convert, as requested */
+    private int mBottom;
+    /** The listener told about converted rows or null if there is none */
+    private RowListener mListener;
+    /** The index of the first pixel to convert */
+    private int mRegionStart;
+    /** The index after the last pixel to convert */
+    private int mRegionEnd;
+    /** The first row that the listener hasn't been told about yet */
+    private int mNotifiedRow;
+
+    /**
+     * Creates a decoder.
+     *
+     * @param headerSize
+     *            The size of the header before the pixels in bytes: 12 before Android 9 and 16 from then on
+     */
+    RawScreenDecoder(final int headerSize) {
+        mHeaderSize = headerSize;
+        for (int i = 0; i < PIPELINE_CHUNKS; ++i) {
+            mFree.add(new Chunk());
+        }
+    }
+
+    /**
+     * Decodes uncompressed output.
+     *
+     * @param in
+     *            The stream of <code>screencap</code> output
+     * @param reuse
+     *            The frame to decode into if it has the screen's size or null to create one
+     * @param top
+     *            The first row to convert
+     * @param bottom
+     *            The row after the last row to convert
+     * @param listener
+     *            The listener told about converted rows or null if there is none
+     *
+     * @return The decoded frame
+     *
+     * @throws IOException
+     *             When reading fails or the output is malformed
+     */
+    Frame decode(final InputStream in, final Frame reuse, final int top, final int bottom,
+            final RowListener listener) throws IOException {
+        prepare(top, bottom, listener);
+        fill(in, mChunk);
+        begin(mChunk, reuse);
+        while (mChunk.length == CHUNK_SIZE) {
+            fill(in, mChunk);
+            convert(mChunk, 0);
+        }
+        return finish();
+    }
+
+    /**
+     * Decodes gzip compressed output, inflating on a separate thread. The listener is called on the calling thread.
+     *
+     * @param in
+     *            The stream of compressed <code>screencap</code> output
+     * @param reuse
+     *            The frame to decode into if it has the screen's size or null to create one
+     * @param top
+     *            The first row to convert
+     * @param bottom
+     *            The row after the last row to convert
+     * @param listener
+     *            The listener told about converted rows or null if there is none
+     *
+     * @return The decoded frame
+     *
+     * @throws IOException
+     *             When reading fails or the output is malformed
+     */
+    Frame decodeGzip(final InputStream in, final Frame reuse, final int top, final int bottom,
+            final RowListener listener) throws IOException {
+        prepare(top, bottom, listener);
+        if (mInflater == null) {
+            mInflater = Executors.newSingleThreadExecutor(r -> {
+                final Thread thread = new Thread(r, "Inflater");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        mError = null;
+        mInflater.execute(() -> inflate(in));
+
+        // Whether the inflating thread has handed over its last chunk, after which it won't add another one
+        boolean drained = false;
+        try {
+            boolean first = true;
+            Chunk chunk;
+            do {
+                chunk = mFilled.take();
+                if (chunk == mFailed) {
+                    drained = true;
+                    throw mError;
+                }
+                drained = chunk.length < CHUNK_SIZE;
+                try {
+                    if (first) {
+                        begin(chunk, reuse);
+                        first = false;
+                    } else {
+                        convert(chunk, 0);
+                    }
+                } finally {
+                    mFree.add(chunk);
+                }
+            } while (!drained);
+        } catch (final InterruptedException ex) {
+            throw new IOException(ex);
+        } finally {
+            if (!drained) {
+                abort(in);
+            }
+        }
+        return finish();
+    }
+
+    /**
+     * Stores the band of rows to convert for the next decode.
+     *
+     * @param top
+     *            The first row to convert
+     * @param bottom
+     *            The row after the last row to convert
+     * @param listener
+     *            The listener told about converted rows or null if there is none
+     */
+    private void prepare(final int top, final int bottom, final RowListener listener) {
+        mTop = top;
+        mBottom = bottom;
+        mListener = listener;
+    }
+
+    /**
+     * Stops the inflating thread after decoding failed before its last chunk was taken, and takes back its chunks up
+     * to that last one, so the next capture starts clean.
+     *
+     * @param in
+     *            The stream being inflated, which is closed to end inflating early
+     */
+    private void abort(final InputStream in) {
+        try {
+            in.close();
+            Chunk chunk;
+            do {
+                chunk = mFilled.take();
+                if (chunk == mFailed) {
+                    return;
+                }
+                mFree.add(chunk);
+            } while (chunk.length == CHUNK_SIZE);
+        } catch (final IOException | InterruptedException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Inflates a stream into chunks until it ends. Runs on the inflating thread.
+     *
+     * @param in
+     *            The stream of compressed output
+     */
+    private void inflate(final InputStream in) {
+        Chunk chunk = null;
+        try {
+            final GZIPInputStream gzip = new GZIPInputStream(in, CHUNK_SIZE);
+            int length;
+            do {
+                chunk = mFree.take();
+                fill(gzip, chunk);
+                length = chunk.length;
+                mFilled.add(chunk);
+                chunk = null;
+            } while (length == CHUNK_SIZE);
+        } catch (final IOException | InterruptedException ex) {
+            // Return the chunk being filled, as the converting thread never sees it
+            if (chunk != null) {
+                mFree.add(chunk);
+            }
+            mError = ex instanceof IOException ? (IOException) ex : new IOException(ex);
+            mFilled.add(mFailed);
+        }
+    }
+
+    /**
+     * Reads the header from the first chunk and converts the pixels in it.
+     *
+     * @param chunk
+     *            The first chunk of output
+     * @param reuse
+     *            The frame to decode into if it has the screen's size or null to create one
+     *
+     * @throws IOException
+     *             When the header is malformed
+     */
+    private void begin(final Chunk chunk, final Frame reuse) throws IOException {
+        if (chunk.length < mHeaderSize) {
+            throw new IOException("Screen capture ended within its header");
+        }
+        final int width = readIntLe(chunk.data, 0);
+        final int height = readIntLe(chunk.data, 4);
+        final int format = readIntLe(chunk.data, 8);
+        if (format != FORMAT_RGBA_8888 && format != FORMAT_RGBX_8888 && format != FORMAT_BGRA_8888) {
+            throw new IOException("Unsupported pixel format " + format);
+        }
+
+        mFrame = Frame.ensure(reuse, width, height);
+        mBgr = format == FORMAT_BGRA_8888;
+        mPixel = 0;
+        mNotifiedRow = Math.max(0, Math.min(mTop, height));
+        mRegionStart = mNotifiedRow * width;
+        mRegionEnd = Math.max(mNotifiedRow, Math.min(mBottom, height)) * width;
+        convert(chunk, mHeaderSize);
+    }
+
+    /**
+     * Converts the pixels of a chunk that lie within the band of rows to packed opaque ARGB and tells the listener
+     * about the rows that were completed.
+     *
+     * @param chunk
+     *            The chunk to convert
+     * @param offset
+     *            The offset of the first pixel in the chunk
+     */
+    private void convert(final Chunk chunk, final int offset) {
+        final byte[] data = chunk.data;
+        final int[] pixels = mFrame.getPixels();
+        final int first = mPixel;
+        final int last = Math.min(pixels.length, first + (chunk.length - offset) / 4);
+        final int from = Math.max(first, mRegionStart);
+        final int to = Math.min(last, mRegionEnd);
+
+        int i = offset + (from - first) * 4;
+        if (mBgr) {
+            for (int pixel = from; pixel < to; ++pixel, i += 4) {
+                pixels[pixel] = 0xff000000 | (data[i + 2] & 0xff) << 16 | (data[i + 1] & 0xff) << 8 | data[i] & 0xff;
+            }
+        } else {
+            for (int pixel = from; pixel < to; ++pixel, i += 4) {
+                pixels[pixel] = 0xff000000 | (data[i] & 0xff) << 16 | (data[i + 1] & 0xff) << 8 | data[i + 2] & 0xff;
+            }
+        }
+        mPixel = last;
+
+        // Report the rows of the band that are now complete
+        if (mListener != null) {
+            final int completed = Math.min(mRegionEnd, mPixel) / mFrame.getWidth();
+            if (completed > mNotifiedRow) {
+                mListener.onRows(mFrame, mNotifiedRow, completed);
+                mNotifiedRow = completed;
+            }
+        }
+    }
+
+    /**
+     * Checks that the whole frame was decoded.
+     *
+     * @return The decoded frame
+     *
+     * @throws IOException
+     *             When the output ended early
+     */
+    private Frame finish() throws IOException {
+        final Frame frame = mFrame;
+        mFrame = null;
+        mListener = null;
+        if (mPixel != frame.getPixels().length) {
+            throw new IOException("Screen capture ended after " + mPixel + " of " + frame.getPixels().length
+                    + " pixels");
+        }
+        return frame;
+    }
+
+    /**
+     * Reads from a stream until a chunk is full or the stream ends.
+     *
+     * @param in
+     *            The stream to read from
+     * @param chunk
+     *            The chunk to fill
+     *
+     * @throws IOException
+     *             When reading fails
+     */
+    private static void fill(final InputStream in, final Chunk chunk) throws IOException {
+        int length = 0;
+        int read;
+        while (length < CHUNK_SIZE && (read = in.read(chunk.data, length, CHUNK_SIZE - length)) != -1) {
+            length += read;
+        }
+        chunk.length = length;
+    }
+
+    /**
+     * Reads a little-endian int.
+     *
+     * @param data
+     *            The bytes to read from
+     * @param offset
+     *            The offset of the int
+     *
+     * @return The int value
+     */
+    private static int readIntLe(final byte[] data, final int offset) {
+        return data[offset] & 0xff | (data[offset + 1] & 0xff) << 8 | (data[offset + 2] & 0xff) << 16
+                | (data[offset + 3] & 0xff) << 24;
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.tvkdevelopment.automaton.transport;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.tvkdevelopment.automaton.Frame;
+import com.tvkdevelopment.automaton.RowListener;
+import com.tvkdevelopment.automaton.ScreenCoord;
+
+/**
+ * A transport that records every call, along with the time since the transport was created, before passing it on to
+ * another transport. Useful to inspect what an automaton does and when, with or without a device.
+ */
+public class RecordingTransport implements DeviceTransport {
+
+    /** The transport that calls are passed on to */
+    private final DeviceTransport mDelegate;
+    /** The creation time of the transport in nanoseconds, used as time base */
+    private final long mStartTime = System.nanoTime();
+    /** The recorded calls, each prefixed with its time in milliseconds */
+    private final List<String> mEvents = new ArrayList<>();
+    /** Whether or not to print calls as they're recorded */
+    private final boolean mPrint;
+
+    /**
+     * Creates a recording transport.
+     *
+     * @param delegate
+     *            The transport that calls are passed on to
+     * @param print
+     *            Whether or not to print calls as they're recorded
+     */
+    public RecordingTransport(final DeviceTransport delegate, final boolean print) {
+        mDelegate = delegate;
+        mPrint = print;
+    }
+
+    /**
+     * @return The recorded calls, each prefixed with its time in milliseconds
+     */
+    public synchronized List<String> getEvents() {
+        return new ArrayList<>(mEvents);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void tap(final ScreenCoord target) {
+        record("tap " + target);
+        mDelegate.tap(target);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void tapAll(final List<ScreenCoord> targets, final int gapMs) {
+        record("tapAll " + targets + " gap " + gapMs);
+        mDelegate.tapAll(targets, gapMs);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void swipe(final ScreenCoord from, final ScreenCoord to) {
+        record("swipe " + from + " " + to);
+        mDelegate.swipe(from, to);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BufferedImage captureScreen() {
+        record("captureScreen");
+        return mDelegate.captureScreen();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Frame captureFrame(final Frame reuse) {
+        record("captureScreen");
+        return mDelegate.captureFrame(reuse);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Frame captureRows(final Frame reuse, final int top, final int bottom, final RowListener listener) {
+        record("captureRows " + top + "-" + bottom);
+        return mDelegate.captureRows(reuse, top, bottom, listener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> shell(final String command) {
+        record("shell " + command);
+        return mDelegate.shell(command);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        mDelegate.close();
+    }
+
+    /**
+     * Records a call.
+     *
+     * @param event
+     *            The description of the call
+     */
+    private synchronized void record(final String event) {
+        final String line = (System.nanoTime() - mStartTime) / 1000000 + "ms " + event;
+        mEvents.add(line);
+        if (mPrint) {
+            System.out.println(line);
+        }
+    }
+
+}
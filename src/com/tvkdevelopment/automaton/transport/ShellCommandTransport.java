@@ -0,0 +1,183 @@
+package com.tvkdevelopment.automaton.transport;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import com.tvkdevelopment.automaton.Frame;
+import com.tvkdevelopment.automaton.RowListener;
+import com.tvkdevelopment.automaton.ScreenCoord;
+
+/**
+ * A base for transports that input events through the device's <code>input</code> command and capture the screen with
+ * <code>screencap</code>, leaving only running shell commands and pulling files to the implementation.
+ */
+public abstract class ShellCommandTransport implements DeviceTransport {
+
+    /** The way screenshots are captured unless set otherwise */
+    private static final CaptureMode DEFAULT_CAPTURE_MODE = CaptureMode.RAW;
+    /** The first Android SDK version whose raw screenshots have a colour space in their header */
+    private static final int SDK_RAW_COLOR_SPACE = 28;
+
+    /** The path on the device that screenshots are stored at */
+    protected static final String DEVICE_SCREEN_PATH = "/storage/emulated/0/screen.png";
+
+    /** The way screenshots are captured */
+    private CaptureMode mCaptureMode = DEFAULT_CAPTURE_MODE;
+    /** The decoder of raw screenshots, created upon the first raw capture */
+    private RawScreenDecoder mRawDecoder;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void tap(final ScreenCoord target) {
+        shell("input tap " + target.x + " " + target.y);
+    }
+
+    /**
+     * Sends all taps as a single scripted command.
+     */
+    @Override
+    public void tapAll(final List<ScreenCoord> targets, final int gapMs) {
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        final StringBuilder script = new StringBuilder();
+        for (final ScreenCoord target : targets) {
+            if (script.length() > 0) {
+                script.append(gapMs > 0 ? "; sleep " + gapMs / 1000.0 + "; " : "; ");
+            }
+            script.append("input tap ").append(target.x).append(' ').append(target.y);
+        }
+        shell(script.toString());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void swipe(final ScreenCoord from, final ScreenCoord to) {
+        shell("input touchscreen swipe " + from.x + " " + from.y + " " + to.x + " " + to.y);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BufferedImage captureScreen() {
+        return captureFrame(null).getImage();
+    }
+
+    /**
+     * Captures the screen in the transport's capture mode. Streamed screenshots never touch a file on either side,
+     * including ImageIO's disk cache, and raw screenshots are decoded straight into the reused frame. Captures are
+     * serialised, so that a background {@link com.tvkdevelopment.automaton.CaptureService} can share the transport.
+     */
+    @Override
+    public synchronized Frame captureFrame(final Frame reuse) {
+        try {
+            switch (mCaptureMode) {
+                case PNG_FILE:
+                    shell("screencap -p " + DEVICE_SCREEN_PATH);
+                    return Frame.fromImage(pullScreen(DEVICE_SCREEN_PATH), reuse);
+
+                case PNG:
+                    try (final InputStream in = execOut("screencap -p")) {
+                        return Frame.fromImage(
+                                ImageIO.read(new MemoryCacheImageInputStream(new BufferedInputStream(in))), reuse);
+                    }
+
+                case RAW:
+                case RAW_GZIP:
+                    return captureRows(reuse, 0, Integer.MAX_VALUE, null);
+
+                default:
+                    throw new IllegalStateException("Unknown capture mode " + mCaptureMode);
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Captures the screen, converting only the requested band of rows and reporting them while the rest of the screen
+     * is still arriving when the capture mode is raw.
+     */
+    @Override
+    public synchronized Frame captureRows(final Frame reuse, final int top, final int bottom,
+            final RowListener listener) {
+        try {
+            switch (mCaptureMode) {
+                case RAW:
+                    try (final InputStream in = execOut("screencap")) {
+                        return getRawDecoder().decode(in, reuse, top, bottom, listener);
+                    }
+
+                case RAW_GZIP:
+                    try (final InputStream in = execOut("screencap | gzip -1")) {
+                        return getRawDecoder().decodeGzip(in, reuse, top, bottom, listener);
+                    }
+
+                default:
+                    return DeviceTransport.super.captureRows(reuse, top, bottom, listener);
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Sets the way screenshots are captured.
+     *
+     * @param captureMode
+     *            The capture mode to use
+     */
+    public void setCaptureMode(final CaptureMode captureMode) {
+        mCaptureMode = captureMode;
+    }
+
+    /**
+     * Retrieves the decoder of raw screenshots, querying the device's SDK version for the header size first.
+     *
+     * @return The decoder of raw screenshots
+     */
+    private RawScreenDecoder getRawDecoder() {
+        if (mRawDecoder == null) {
+            final List<String> sdk = shell("getprop ro.build.version.sdk");
+            final boolean colorSpace = !sdk.isEmpty() && Integer.parseInt(sdk.get(0).trim()) >= SDK_RAW_COLOR_SPACE;
+            mRawDecoder = new RawScreenDecoder(colorSpace ? 16 : 12);
+        }
+        return mRawDecoder;
+    }
+
+    /**
+     * Loads a screenshot stored on the device.
+     *
+     * @param remotePath
+     *            The path of the screenshot on the device
+     *
+     * @return The screenshot
+     */
+    protected abstract BufferedImage pullScreen(String remotePath);
+
+    /**
+     * Runs a command on the device and streams its raw binary output, without a terminal mangling line endings.
+     *
+     * @param command
+     *            The command to run
+     *
+     * @return The stream of the command's output, which ends the command when closed
+     *
+     * @throws IOException
+     *             When the command can't be started
+     */
+    protected abstract InputStream execOut(String command) throws IOException;
+
+}
@@ -0,0 +1,69 @@
+package com.tvkdevelopment.automaton.transport;
+
+import java.util.Arrays;
+
+import com.tvkdevelopment.automaton.ScreenCoord;
+
+/**
+ * Runs the same throughput and latency benchmark on each given transport. Without arguments only the transports that
+ * need no device are benchmarked; otherwise the arguments are transport names as accepted by
+ * {@link DeviceTransports#create(String, String)}. Device transports tap the top left corner of the screen.
+ */
+public class TransportBenchmark {
+
+    /** The amount of taps sent to transports that need no device */
+    private static final int OFFLINE_EVENTS = 100000;
+    /** The amount of taps sent to transports that talk to a device */
+    private static final int DEVICE_EVENTS = 50;
+    /** The amount of screen captures taken */
+    private static final int CAPTURES = 5;
+
+    public static void main(final String[] args) {
+        final String[] names = args.length > 0 ? args : new String[] { "null", "recording" };
+
+        System.out.format("%-14s %10s %10s %10s %10s %10s%n", "Transport", "events/s", "p50 ms", "p99 ms", "max ms",
+                "capture ms");
+        for (final String name : names) {
+            final boolean offline = name.equals("null") || name.equals("recording");
+            final DeviceTransport transport = name.equals("recording")
+                    ? new RecordingTransport(new NullTransport(), false) : DeviceTransports.create(name, null);
+            benchmark(name, transport, offline ? OFFLINE_EVENTS : DEVICE_EVENTS);
+            transport.close();
+        }
+    }
+
+    /**
+     * Benchmarks a single transport and prints a line with the results.
+     *
+     * @param name
+     *            The name of the transport
+     * @param transport
+     *            The transport to benchmark
+     * @param events
+     *            The amount of taps to send
+     */
+    private static void benchmark(final String name, final DeviceTransport transport, final int events) {
+        final ScreenCoord target = new ScreenCoord(0, 0);
+        final long[] latencies = new long[events];
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < events; ++i) {
+            final long eventStart = System.nanoTime();
+            transport.tap(target);
+            latencies[i] = System.nanoTime() - eventStart;
+        }
+        final double seconds = (System.nanoTime() - start) / 1e9;
+
+        final long captureStart = System.nanoTime();
+        for (int i = 0; i < CAPTURES; ++i) {
+            transport.captureScreen();
+        }
+        final double captureMs = (System.nanoTime() - captureStart) / 1e6 / CAPTURES;
+
+        Arrays.sort(latencies);
+        System.out.format("%-14s %10.0f %10.3f %10.3f %10.3f %10.3f%n", name, events / seconds,
+                latencies[events / 2] / 1e6, latencies[events * 99 / 100] / 1e6, latencies[events - 1] / 1e6,
+                captureMs);
+    }
+
+}